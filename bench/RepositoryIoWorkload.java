@@ -0,0 +1,106 @@
+import familytree.bench.Workloads;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public class RepositoryIoWorkload implements Workloads.RepositoryIo {
+    private Path file;
+    private Database db;
+    private FamilyTreeRepository repo;
+    private List<Person> persons;
+    private long nameSeq;
+
+    @Override
+    public void open(int people, long seed) throws Exception {
+        file = Files.createTempFile("familytree-bench", ".db");
+        db = new Database(file.toString());
+        db.connect();
+        db.runMigrations();
+        repo = new FamilyTreeRepository(db);
+
+        new DatasetGenerator(seed).writeTo(db, repo, people);
+        persons = repo.loadAllPersons();
+    }
+
+    @Override
+    public Object loadAllPersons() throws Exception {
+        return repo.loadAllPersons();
+    }
+
+    @Override
+    public Object loadAllParentChildLinks() throws Exception {
+        return repo.loadAllParentChildLinks();
+    }
+
+    @Override
+    public Object loadAllUnions() throws Exception {
+        return repo.loadAllUnions();
+    }
+
+    @Override
+    public int insertPersonsSingly(int count) throws Exception {
+        for (Person p : freshPersons(count)) {
+            repo.insertPerson(p);
+        }
+        return count;
+    }
+
+    @Override
+    public int insertPersonsBulk(int count) throws Exception {
+        return repo.insertPersons(freshPersons(count)).rows();
+    }
+
+    @Override
+    public int insertLinksBulk(int count) throws Exception {
+        List<ParentChildLink> links = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Person parent = persons.get(i % persons.size());
+            Person child = persons.get((i * 31 + 7) % persons.size());
+            if (parent != child) links.add(new ParentChildLink(parent.getId(), child.getId(), false));
+        }
+        return repo.insertParentChildLinks(links).rows();
+    }
+
+    @Override
+    public int ancestorLookups(int count) throws Exception {
+        int rows = 0;
+        for (int i = 0; i < count; i++) {
+            Person p = persons.get((int) ((i * 7919L) % persons.size()));
+            rows += repo.findAncestors(p.getId(), 2, null, 10).size();
+        }
+        return rows;
+    }
+
+    @Override
+    public int personPages(int count) throws Exception {
+        return db.read(conn -> {
+            int rows = 0;
+            Person after = null;
+            for (int i = 0; i < count; i++) {
+                List<Person> page = repo.findPersonsPage(conn, PersonSort.NAME, after, 0, 20);
+                rows += page.size();
+                after = page.isEmpty() ? null : page.get(page.size() - 1);
+            }
+            return rows;
+        });
+    }
+
+    private List<Person> freshPersons(int count) {
+        List<Person> res = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Person p = new Person("Bench", "Person" + nameSeq++, Sex.UNKNOWN);
+            p.setId(new UUID(0x5EED, nameSeq));
+            res.add(p);
+        }
+        return res;
+    }
+
+    @Override
+    public void close() throws Exception {
+        db.close();
+        Files.deleteIfExists(file);
+    }
+}
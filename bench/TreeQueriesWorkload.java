@@ -0,0 +1,93 @@
+import familytree.bench.Workloads;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+public class TreeQueriesWorkload implements Workloads.TreeQueries {
+    private FamilyTree tree;
+    private UUID[] ids;
+    private UUID[] unionIds;
+    private LocalDate firstDay;
+
+    @Override
+    public void build(int people, long seed, boolean compact) {
+        DatasetGenerator.Dataset data = new DatasetGenerator(seed).generate(people);
+        tree = new FamilyTree(compact);
+        tree.ensureCapacity(people);
+        ids = new UUID[data.persons().size()];
+        firstDay = LocalDate.of(DatasetGenerator.END_YEAR, 12, 31);
+        for (int i = 0; i < ids.length; i++) {
+            Person p = tree.addPerson(data.persons().get(i));
+            ids[i] = p.getId();
+            if (p.getBirthDate() != null && p.getBirthDate().isBefore(firstDay)) firstDay = p.getBirthDate();
+        }
+        for (ParentChildLink l : data.links()) {
+            tree.tryLinkParentChild(l.getParentId(), l.getChildId(), l.isAdopted());
+        }
+        unionIds = new UUID[data.unions().size()];
+        for (int i = 0; i < unionIds.length; i++) {
+            unionIds[i] = tree.addUnion(data.unions().get(i)).getId();
+        }
+        tree.pack();
+    }
+
+    @Override
+    public int personCount() {
+        return ids.length;
+    }
+
+    @Override
+    public Object childrenOf(int person) {
+        return tree.getChildrenOf(ids[person]);
+    }
+
+    @Override
+    public Object parentsOf(int person) {
+        return tree.getParentsOf(ids[person]);
+    }
+
+    @Override
+    public Object siblingsOf(int person) {
+        return tree.getSiblingsOf(ids[person]);
+    }
+
+    @Override
+    public Object grandChildrenOf(int person) {
+        return tree.getGrandChildrenOf(ids[person]);
+    }
+
+    @Override
+    public int unionCount() {
+        return unionIds.length;
+    }
+
+    @Override
+    public Object partnersOf(int person) {
+        return tree.partnersOf(ids[person], null);
+    }
+
+    @Override
+    public Object childrenOfUnion(int union) {
+        return tree.childrenOfUnion(unionIds[union]);
+    }
+
+    @Override
+    public int dayCount() {
+        return (int) (LocalDate.of(DatasetGenerator.END_YEAR, 12, 31).toEpochDay() - firstDay.toEpochDay()) + 1;
+    }
+
+    @Override
+    public Object aliveOn(int day) {
+        return tree.aliveOn(firstDay.plusDays(day));
+    }
+
+    @Override
+    public Object unionsActiveOn(int day) {
+        return tree.unionsActiveOn(firstDay.plusDays(day));
+    }
+
+    @Override
+    public int generationOf(int person) {
+        return tree.generationOf(ids[person]);
+    }
+}
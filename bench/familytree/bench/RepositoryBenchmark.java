@@ -0,0 +1,84 @@
+package familytree.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SQLite round trips through FamilyTreeRepository: full-table loads, insert
+ * throughput for single statements versus the batched bulk path, and short
+ * per-call queries, where statement preparation is a large share of the cost.
+ * Each trial starts from a freshly generated database file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class RepositoryBenchmark {
+    private static final int INSERT_ROWS = 10_000;
+    private static final int SINGLE_INSERT_ROWS = 500;
+    private static final int LOOKUPS = 2_000;
+
+    @Param({"10000", "100000", "1000000"})
+    public int people;
+
+    private Workloads.RepositoryIo repo;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        repo = Workloads.load("RepositoryIoWorkload", Workloads.RepositoryIo.class);
+        repo.open(people, 1L);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        repo.close();
+    }
+
+    @Benchmark
+    public Object loadAllPersons() throws Exception {
+        return repo.loadAllPersons();
+    }
+
+    @Benchmark
+    public Object loadAllParentChildLinks() throws Exception {
+        return repo.loadAllParentChildLinks();
+    }
+
+    @Benchmark
+    public Object loadAllUnions() throws Exception {
+        return repo.loadAllUnions();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SINGLE_INSERT_ROWS)
+    public int insertPersonSingle() throws Exception {
+        return repo.insertPersonsSingly(SINGLE_INSERT_ROWS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INSERT_ROWS)
+    public int insertPersonsBulk() throws Exception {
+        return repo.insertPersonsBulk(INSERT_ROWS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INSERT_ROWS)
+    public int insertParentChildLinksBulk() throws Exception {
+        return repo.insertLinksBulk(INSERT_ROWS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public int ancestorLookup() throws Exception {
+        return repo.ancestorLookups(LOOKUPS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public int personPage() throws Exception {
+        return repo.personPages(LOOKUPS);
+    }
+}
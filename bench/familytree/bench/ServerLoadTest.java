@@ -0,0 +1,133 @@
+package familytree.bench;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Open-loop load test for {@code Main --serve}: requests are issued on a
+ * fixed schedule regardless of how fast responses come back, and latency is
+ * measured from the scheduled send time, so a stalled server shows up in the
+ * percentiles instead of silently lowering the request rate.
+ * <pre>
+ * java -cp target/benchmarks.jar familytree.bench.ServerLoadTest http://localhost:8080 10000 30 5
+ * </pre>
+ * Arguments: base URL, requests per second, measured seconds, warm-up seconds.
+ * The mix is person lookups, parents/children/siblings, three-generation
+ * ancestors and relationships between random people.
+ */
+public final class ServerLoadTest {
+    private static final Pattern ID = Pattern.compile("\"id\":\"([0-9a-f-]{36})\"");
+    private static final int SAMPLE_IDS = 5_000;
+
+    private ServerLoadTest() {}
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: ServerLoadTest <baseUrl> [requestsPerSecond=10000] [seconds=30] [warmupSeconds=5]");
+            System.exit(2);
+        }
+        String base = args[0].replaceAll("/+$", "");
+        int rate = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        int warmup = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+        // The client keeps its own executor: it must outlive the request executor's shutdown
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        List<String> ids = sampleIds(client, base);
+        if (ids.size() < 2) throw new IllegalStateException("Server has fewer than two people");
+
+        long period = 1_000_000_000L / rate;
+        long total = (long) rate * (warmup + seconds);
+        long measuredFrom = (long) rate * warmup;
+        long[] latencies = new long[(int) (total - measuredFrom)];
+        AtomicInteger recorded = new AtomicInteger();
+        Map<String, AtomicLong> errors = new ConcurrentHashMap<>();
+        Random random = new Random(42);
+
+        System.out.printf("%,d req/s for %d s after %d s warm-up against %s%n", rate, seconds, warmup, base);
+        long start = System.nanoTime() + 10_000_000;
+        for (long i = 0; i < total; i++) {
+            long scheduled = start + i * period;
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+            URI uri = URI.create(base + path(random, ids));
+            boolean measured = i >= measuredFrom;
+            executor.execute(() -> {
+                try {
+                    HttpResponse<Void> r = client.send(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.discarding());
+                    if (r.statusCode() != 200) error(errors, "HTTP " + r.statusCode());
+                } catch (Exception e) {
+                    error(errors, e.getClass().getSimpleName() + ": " + e.getMessage());
+                }
+                if (measured) latencies[recorded.getAndIncrement()] = System.nanoTime() - scheduled;
+            });
+        }
+        long sendEnd = System.nanoTime();
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        int n = recorded.get();
+        long[] sorted = Arrays.copyOf(latencies, n);
+        Arrays.sort(sorted);
+        double elapsed = (sendEnd - start) / 1e9;
+        long errorCount = errors.values().stream().mapToLong(AtomicLong::get).sum();
+        System.out.printf("sent %,d requests in %.1f s (%,.0f req/s), %,d errors %s%n",
+                total, elapsed, total / elapsed, errorCount, errors.isEmpty() ? "" : errors);
+        System.out.printf("latency ms: p50 %.3f  p90 %.3f  p99 %.3f  p99.9 %.3f  max %.3f  (%,d measured)%n",
+                percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+                percentile(sorted, 0.999), n == 0 ? 0 : sorted[n - 1] / 1e6, n);
+    }
+
+    private static void error(Map<String, AtomicLong> errors, String kind) {
+        errors.computeIfAbsent(kind, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    private static String path(Random random, List<String> ids) {
+        String id = ids.get(random.nextInt(ids.size()));
+        int pick = random.nextInt(100);
+        if (pick < 30) return "/persons/" + id;
+        if (pick < 45) return "/persons/" + id + "/children";
+        if (pick < 60) return "/persons/" + id + "/parents";
+        if (pick < 75) return "/persons/" + id + "/siblings";
+        if (pick < 90) return "/persons/" + id + "/ancestors?depth=3";
+        return "/relationship?a=" + id + "&b=" + ids.get(random.nextInt(ids.size()));
+    }
+
+    private static List<String> sampleIds(HttpClient client, String base) throws Exception {
+        HttpResponse<String> r = client.send(
+                HttpRequest.newBuilder(URI.create(base + "/persons?limit=" + SAMPLE_IDS)).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (r.statusCode() != 200) throw new IllegalStateException("GET /persons: HTTP " + r.statusCode());
+        List<String> ids = new ArrayList<>();
+        Matcher m = ID.matcher(r.body());
+        while (m.find()) ids.add(m.group(1));
+        return ids;
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)] / 1e6;
+    }
+}
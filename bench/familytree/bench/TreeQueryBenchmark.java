@@ -0,0 +1,89 @@
+package familytree.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/** In-memory FamilyTree lookups against a synthetic tree; each call picks a random person. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class TreeQueryBenchmark {
+    @Param({"10000", "100000", "1000000"})
+    public int people;
+
+    @Param({"false", "true"})
+    public boolean compact;
+
+    private Workloads.TreeQueries tree;
+    private int size;
+    private int unions;
+    private int days;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private final SplittableRandom random = new SplittableRandom(42);
+
+        int next(int bound) {
+            return random.nextInt(bound);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        tree = Workloads.load("TreeQueriesWorkload", Workloads.TreeQueries.class);
+        tree.build(people, 1L, compact);
+        size = tree.personCount();
+        unions = tree.unionCount();
+        days = tree.dayCount();
+    }
+
+    @Benchmark
+    public Object childrenOf(Cursor c) {
+        return tree.childrenOf(c.next(size));
+    }
+
+    @Benchmark
+    public Object parentsOf(Cursor c) {
+        return tree.parentsOf(c.next(size));
+    }
+
+    @Benchmark
+    public Object siblingsOf(Cursor c) {
+        return tree.siblingsOf(c.next(size));
+    }
+
+    @Benchmark
+    public Object grandChildrenOf(Cursor c) {
+        return tree.grandChildrenOf(c.next(size));
+    }
+
+    @Benchmark
+    public Object partnersOf(Cursor c) {
+        return tree.partnersOf(c.next(size));
+    }
+
+    @Benchmark
+    public Object childrenOfUnion(Cursor c) {
+        return tree.childrenOfUnion(c.next(unions));
+    }
+
+    @Benchmark
+    public Object aliveOn(Cursor c) {
+        return tree.aliveOn(c.next(days));
+    }
+
+    @Benchmark
+    public Object unionsActiveOn(Cursor c) {
+        return tree.unionsActiveOn(c.next(days));
+    }
+
+    @Benchmark
+    public int generationOf(Cursor c) {
+        return tree.generationOf(c.next(size));
+    }
+}
@@ -0,0 +1,53 @@
+package familytree.bench;
+
+/**
+ * JMH refuses benchmark classes in the default package, and named packages
+ * cannot see the application's default-package classes. The benchmarks
+ * therefore drive the application through these interfaces, implemented by
+ * default-package classes in bench/ and loaded by name.
+ */
+public final class Workloads {
+    private Workloads() {}
+
+    public interface TreeQueries {
+        void build(int people, long seed, boolean compact);
+        int personCount();
+        Object childrenOf(int person);
+        Object parentsOf(int person);
+        Object siblingsOf(int person);
+        Object grandChildrenOf(int person);
+        int unionCount();
+        Object partnersOf(int person);
+        Object childrenOfUnion(int union);
+        /** Days from the first birth to the end of the dataset. */
+        int dayCount();
+        Object aliveOn(int day);
+        Object unionsActiveOn(int day);
+        int generationOf(int person);
+    }
+
+    public interface RepositoryIo {
+        void open(int people, long seed) throws Exception;
+        Object loadAllPersons() throws Exception;
+        Object loadAllParentChildLinks() throws Exception;
+        Object loadAllUnions() throws Exception;
+        /** Inserts count fresh people one statement (and transaction) at a time. */
+        int insertPersonsSingly(int count) throws Exception;
+        /** Inserts count fresh people through the batched bulk path. */
+        int insertPersonsBulk(int count) throws Exception;
+        int insertLinksBulk(int count) throws Exception;
+        /** Runs count short lookups (two generations of ancestors), one query per call. */
+        int ancestorLookups(int count) throws Exception;
+        /** Walks count keyset pages of 20 people in name order, one query per page. */
+        int personPages(int count) throws Exception;
+        void close() throws Exception;
+    }
+
+    static <T> T load(String className, Class<T> type) {
+        try {
+            return type.cast(Class.forName(className).getDeclaredConstructor().newInstance());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot load workload " + className, e);
+        }
+    }
+}
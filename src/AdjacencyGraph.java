@@ -0,0 +1,99 @@
+import java.util.Arrays;
+
+/**
+ * Growable per-node edge arrays. Cheap to append to, which suits the
+ * interactive GUI, at the cost of two small arrays per linked person.
+ */
+final class AdjacencyGraph implements PersonGraph {
+    private int[][] out = new int[16][];
+    private int[] outSize = new int[16];
+    private int[][] in = new int[16][];
+    private int[] inSize = new int[16];
+    private int edges;
+
+    @Override
+    public void addEdge(int parent, int child, boolean adopted) {
+        ensureNode(Math.max(parent, child));
+        append(out, outSize, parent, PersonGraph.edge(child, adopted));
+        append(in, inSize, child, PersonGraph.edge(parent, adopted));
+        edges++;
+    }
+
+    @Override
+    public int removeEdges(int parent, int child) {
+        if (Math.max(parent, child) >= out.length) return 0;
+        int removed = remove(out, outSize, parent, child);
+        remove(in, inSize, child, parent);
+        edges -= removed;
+        return removed;
+    }
+
+    // Per-node lists are shared: appends only write past the sizes this copy holds,
+    // and a full list is replaced rather than grown in place
+    @Override
+    public AdjacencyGraph copy() {
+        AdjacencyGraph c = new AdjacencyGraph();
+        c.out = out.clone();
+        c.outSize = outSize.clone();
+        c.in = in.clone();
+        c.inSize = inSize.clone();
+        c.edges = edges;
+        return c;
+    }
+
+    @Override
+    public int[] children(int node) {
+        return slice(out, outSize, node);
+    }
+
+    @Override
+    public int[] parents(int node) {
+        return slice(in, inSize, node);
+    }
+
+    @Override
+    public int edgeCount() {
+        return edges;
+    }
+
+    private void ensureNode(int node) {
+        if (node < out.length) return;
+        int cap = Math.max(node + 1, out.length + (out.length >> 1));
+        out = Arrays.copyOf(out, cap);
+        outSize = Arrays.copyOf(outSize, cap);
+        in = Arrays.copyOf(in, cap);
+        inSize = Arrays.copyOf(inSize, cap);
+    }
+
+    private static void append(int[][] lists, int[] sizes, int node, int value) {
+        int[] list = lists[node];
+        int n = sizes[node];
+        if (list == null) {
+            list = lists[node] = new int[2];
+        } else if (n == list.length) {
+            list = lists[node] = Arrays.copyOf(list, n << 1);
+        }
+        list[n] = value;
+        sizes[node] = n + 1;
+    }
+
+    // Copies rather than compacts in place: other versions may share the list
+    private static int remove(int[][] lists, int[] sizes, int node, int other) {
+        int n = sizes[node];
+        int[] list = lists[node];
+        int[] kept = new int[n];
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            if (PersonGraph.node(list[i]) != other) kept[k++] = list[i];
+        }
+        if (k == n) return 0;
+        lists[node] = k == 0 ? null : kept;
+        sizes[node] = k;
+        return n - k;
+    }
+
+    private static int[] slice(int[][] lists, int[] sizes, int node) {
+        if (node >= lists.length || sizes[node] == 0) return NONE;
+        return Arrays.copyOf(lists[node], sizes[node]);
+    }
+}
@@ -0,0 +1,10 @@
+public record BulkInsertResult(int rows, long elapsedNanos) {
+    public double rowsPerSecond() {
+        return elapsedNanos == 0 ? rows : rows * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%,d rows in %,d ms (%,.0f rows/s)", rows, elapsedNanos / 1_000_000, rowsPerSecond());
+    }
+}
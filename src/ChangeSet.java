@@ -0,0 +1,48 @@
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * The rows named by change log entries after fromSeq, read back as they are
+ * now. Applying it to a tree that reflects fromSeq brings the tree up to
+ * toSeq; because rows are re-read rather than replayed, applying a change set
+ * twice or to a slightly newer tree is harmless.
+ * <p>
+ * A change set that {@link #needsReload()} carries no rows: the log no longer
+ * reaches back to fromSeq, it is too long to be worth applying, a person was
+ * deleted, or rows were bulk loaded without logging.
+ *
+ * @param links     for every parent/child pair in {@code linkPairs}, the links it has now
+ * @param linkPairs pairs whose links were written; the adoption flag is not meaningful
+ */
+public record ChangeSet(long fromSeq, long toSeq, boolean needsReload,
+                        List<Person> persons, List<UnionRecord> unions, Set<UUID> removedUnions,
+                        List<ParentChildLink> linkPairs, List<ParentChildLink> links) {
+
+    static ChangeSet none(long seq) {
+        return new ChangeSet(seq, seq, false, List.of(), List.of(), Set.of(), List.of(), List.of());
+    }
+
+    static ChangeSet reload(long fromSeq) {
+        return new ChangeSet(fromSeq, fromSeq, true, List.of(), List.of(), Set.of(), List.of(), List.of());
+    }
+
+    public boolean isEmpty() {
+        return !needsReload && toSeq == fromSeq;
+    }
+
+    /** People, unions and link pairs touched. */
+    public int size() {
+        return persons.size() + unions.size() + removedUnions.size() + linkPairs.size();
+    }
+
+    /** People first, so new links and unions find their ends. */
+    public void applyTo(FamilyTree tree) {
+        if (needsReload) throw new IllegalStateException("Changes after " + fromSeq + " need a full reload");
+        persons.forEach(tree::addPerson);
+        for (ParentChildLink pair : linkPairs) tree.unlinkParentChild(pair.getParentId(), pair.getChildId());
+        for (ParentChildLink l : links) tree.tryLinkParentChild(l.getParentId(), l.getChildId(), l.isAdopted());
+        removedUnions.forEach(tree::removeUnion);
+        unions.forEach(tree::addUnion);
+    }
+}
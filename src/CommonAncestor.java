@@ -0,0 +1,3 @@
+/** An ancestor shared by two people, with its distance in generations from each. */
+public record CommonAncestor(Person ancestor, int generationsFromA, int generationsFromB) {
+}
@@ -0,0 +1,62 @@
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * A FamilyTree shared between threads. Readers take the current version with
+ * {@link #snapshot()}, a single volatile read, and query it without locks; it
+ * never changes underneath them. Writers apply a batch to a private copy,
+ * one writer at a time, and publish it as the next version in one step, so no
+ * reader ever sees half a batch.
+ * <p>
+ * Each update copies the tree's index arrays, so updates should be batched:
+ * a background import publishes every few thousand rows, not every row.
+ */
+public final class ConcurrentFamilyTree {
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile FamilyTree current;
+
+    /** Takes ownership of tree; the caller must not change it afterwards. */
+    public ConcurrentFamilyTree(FamilyTree tree) {
+        replace(tree);
+    }
+
+    /** The latest published version; read-only. */
+    public FamilyTree snapshot() {
+        return current;
+    }
+
+    /**
+     * Applies batch to a copy of the latest version and publishes the result.
+     * If batch throws, nothing is published.
+     */
+    public FamilyTree update(Consumer<? super FamilyTree> batch) {
+        writeLock.lock();
+        try {
+            FamilyTree next = current.copy();
+            batch.accept(next);
+            return publish(next);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /** Publishes a freshly built tree, e.g. after a full reload; takes ownership of it. */
+    public FamilyTree replace(FamilyTree tree) {
+        Objects.requireNonNull(tree, "tree");
+        if (tree.isReadOnly()) throw new IllegalArgumentException("Tree is already published");
+        writeLock.lock();
+        try {
+            return publish(tree);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private FamilyTree publish(FamilyTree next) {
+        FamilyTree prev = current;
+        next.freeze(prev == null ? 1 : prev.version() + 1);
+        current = next;
+        return next;
+    }
+}
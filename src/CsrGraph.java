@@ -0,0 +1,244 @@
+import java.util.Arrays;
+
+/**
+ * Compressed sparse row layout: one offsets/targets array pair per direction,
+ * about 8 bytes per edge in total. New edges, and removals of packed ones, are
+ * buffered and scanned until the buffers grow past {@link #SCAN_LIMIT}, then
+ * merged in one O(n + e) pass.
+ */
+final class CsrGraph implements PersonGraph {
+    static final int SCAN_LIMIT = 1024;
+
+    private int nodes;            // nodes covered by the offset arrays
+    private int[] outOff = {0};
+    private int[] outTgt = NONE;
+    private int[] inOff = {0};
+    private int[] inTgt = NONE;
+
+    private int[] pendParent = new int[16];
+    private int[] pendChild = new int[16];  // encoded with the adoption flag
+    private int pending;
+
+    // Packed parent -> child pairs removed since the last pack, and how many edges they cover
+    private int[] dropParent = new int[16];
+    private int[] dropChild = new int[16];
+    private int drops;
+    private int droppedEdges;
+
+    CsrGraph() {}
+
+    /** Adopts prebuilt arrays, e.g. read from a snapshot; offsets have nodes + 1 entries. */
+    CsrGraph(int nodes, int[] outOff, int[] outTgt, int[] inOff, int[] inTgt) {
+        this.nodes = nodes;
+        this.outOff = outOff;
+        this.outTgt = outTgt;
+        this.inOff = inOff;
+        this.inTgt = inTgt;
+    }
+
+    // The CSR arrays are never written after pack() builds them, so copies share them
+    @Override
+    public CsrGraph copy() {
+        CsrGraph c = new CsrGraph(nodes, outOff, outTgt, inOff, inTgt);
+        c.pendParent = pendParent.clone();
+        c.pendChild = pendChild.clone();
+        c.pending = pending;
+        c.dropParent = dropParent.clone();
+        c.dropChild = dropChild.clone();
+        c.drops = drops;
+        c.droppedEdges = droppedEdges;
+        return c;
+    }
+
+    @Override
+    public void addEdge(int parent, int child, boolean adopted) {
+        if (pending == pendParent.length) {
+            pendParent = Arrays.copyOf(pendParent, pending << 1);
+            pendChild = Arrays.copyOf(pendChild, pending << 1);
+        }
+        pendParent[pending] = parent;
+        pendChild[pending] = PersonGraph.edge(child, adopted);
+        pending++;
+    }
+
+    @Override
+    public int removeEdges(int parent, int child) {
+        int removed = 0;
+        for (int i = 0; i < pending; i++) {
+            if (pendParent[i] == parent && PersonGraph.node(pendChild[i]) == child) removed++;
+            else if (removed > 0) {
+                pendParent[i - removed] = pendParent[i];
+                pendChild[i - removed] = pendChild[i];
+            }
+        }
+        pending -= removed;
+        if (parent < nodes && !isDropped(parent, child)) {
+            int packed = 0;
+            for (int i = outOff[parent]; i < outOff[parent + 1]; i++) {
+                if (PersonGraph.node(outTgt[i]) == child) packed++;
+            }
+            if (packed > 0) {
+                if (drops == dropParent.length) {
+                    dropParent = Arrays.copyOf(dropParent, drops << 1);
+                    dropChild = Arrays.copyOf(dropChild, drops << 1);
+                }
+                dropParent[drops] = parent;
+                dropChild[drops] = child;
+                drops++;
+                droppedEdges += packed;
+                removed += packed;
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public void seal() {
+        if (pending + drops > SCAN_LIMIT) pack();
+    }
+
+    @Override
+    public int[] children(int node) {
+        if (pending + drops > SCAN_LIMIT) pack();
+        int[] res = base(outOff, outTgt, node);
+        if (drops > 0) res = withoutDropped(res, node, true);
+        for (int i = 0; i < pending; i++) {
+            if (pendParent[i] == node) res = add(res, pendChild[i]);
+        }
+        return res;
+    }
+
+    @Override
+    public int[] parents(int node) {
+        if (pending + drops > SCAN_LIMIT) pack();
+        int[] res = base(inOff, inTgt, node);
+        if (drops > 0) res = withoutDropped(res, node, false);
+        for (int i = 0; i < pending; i++) {
+            if (PersonGraph.node(pendChild[i]) == node) {
+                res = add(res, PersonGraph.edge(pendParent[i], PersonGraph.adopted(pendChild[i])));
+            }
+        }
+        return res;
+    }
+
+    @Override
+    public int edgeCount() {
+        return outTgt.length - droppedEdges + pending;
+    }
+
+    @Override
+    public void pack() {
+        if (drops > 0) applyDrops();
+        if (pending == 0) return;
+        int n = nodes;
+        for (int i = 0; i < pending; i++) {
+            n = Math.max(n, Math.max(pendParent[i], PersonGraph.node(pendChild[i])) + 1);
+        }
+        int e = outTgt.length + pending;
+
+        int[] newOutOff = new int[n + 1];
+        int[] newInOff = new int[n + 1];
+        for (int v = 0; v < nodes; v++) {
+            newOutOff[v + 1] = outOff[v + 1] - outOff[v];
+            newInOff[v + 1] = inOff[v + 1] - inOff[v];
+        }
+        for (int i = 0; i < pending; i++) {
+            newOutOff[pendParent[i] + 1]++;
+            newInOff[PersonGraph.node(pendChild[i]) + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            newOutOff[v + 1] += newOutOff[v];
+            newInOff[v + 1] += newInOff[v];
+        }
+
+        int[] newOutTgt = new int[e];
+        int[] newInTgt = new int[e];
+        int[] outPos = Arrays.copyOf(newOutOff, n);
+        int[] inPos = Arrays.copyOf(newInOff, n);
+        for (int v = 0; v < nodes; v++) {
+            int len = outOff[v + 1] - outOff[v];
+            System.arraycopy(outTgt, outOff[v], newOutTgt, outPos[v], len);
+            outPos[v] += len;
+            len = inOff[v + 1] - inOff[v];
+            System.arraycopy(inTgt, inOff[v], newInTgt, inPos[v], len);
+            inPos[v] += len;
+        }
+        for (int i = 0; i < pending; i++) {
+            int p = pendParent[i];
+            int c = PersonGraph.node(pendChild[i]);
+            newOutTgt[outPos[p]++] = pendChild[i];
+            newInTgt[inPos[c]++] = PersonGraph.edge(p, PersonGraph.adopted(pendChild[i]));
+        }
+
+        nodes = n;
+        outOff = newOutOff;
+        outTgt = newOutTgt;
+        inOff = newInOff;
+        inTgt = newInTgt;
+        pendParent = new int[16];
+        pendChild = new int[16];
+        pending = 0;
+    }
+
+    private void applyDrops() {
+        long[] dropped = new long[drops];
+        for (int i = 0; i < drops; i++) dropped[i] = key(dropParent[i], dropChild[i]);
+        Arrays.sort(dropped);
+        int e = outTgt.length - droppedEdges;
+        int[] newOutOff = new int[nodes + 1];
+        int[] newInOff = new int[nodes + 1];
+        int[] newOutTgt = new int[e];
+        int[] newInTgt = new int[e];
+        int o = 0, in = 0;
+        for (int v = 0; v < nodes; v++) {
+            for (int i = outOff[v]; i < outOff[v + 1]; i++) {
+                if (Arrays.binarySearch(dropped, key(v, PersonGraph.node(outTgt[i]))) < 0) newOutTgt[o++] = outTgt[i];
+            }
+            for (int i = inOff[v]; i < inOff[v + 1]; i++) {
+                if (Arrays.binarySearch(dropped, key(PersonGraph.node(inTgt[i]), v)) < 0) newInTgt[in++] = inTgt[i];
+            }
+            newOutOff[v + 1] = o;
+            newInOff[v + 1] = in;
+        }
+        outOff = newOutOff;
+        outTgt = newOutTgt;
+        inOff = newInOff;
+        inTgt = newInTgt;
+        dropParent = new int[16];
+        dropChild = new int[16];
+        drops = 0;
+        droppedEdges = 0;
+    }
+
+    private boolean isDropped(int parent, int child) {
+        for (int i = 0; i < drops; i++) {
+            if (dropParent[i] == parent && dropChild[i] == child) return true;
+        }
+        return false;
+    }
+
+    // edges comes from base(), a fresh copy, so it is filtered in place
+    private int[] withoutDropped(int[] edges, int node, boolean outgoing) {
+        int k = 0;
+        for (int e : edges) {
+            int other = PersonGraph.node(e);
+            if (!(outgoing ? isDropped(node, other) : isDropped(other, node))) edges[k++] = e;
+        }
+        return k == edges.length ? edges : Arrays.copyOf(edges, k);
+    }
+
+    private static long key(int parent, int child) {
+        return (long) parent << 32 | child;
+    }
+
+    private int[] base(int[] off, int[] tgt, int node) {
+        if (node >= nodes || off[node] == off[node + 1]) return NONE;
+        return Arrays.copyOfRange(tgt, off[node], off[node + 1]);
+    }
+
+    private static int[] add(int[] arr, int value) {
+        int[] res = Arrays.copyOf(arr, arr.length + 1);
+        res[arr.length] = value;
+        return res;
+    }
+}
@@ -0,0 +1,3 @@
+/** Identity of a database file and its last change log seq; equal values mean no rows changed in between. */
+public record DataVersion(String databaseId, long version) {
+}
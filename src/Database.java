@@ -1,86 +1,631 @@
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * The SQLite file: one writer connection plus a bounded pool of read-only
+ * connections. The database runs in WAL mode, so pooled readers proceed in
+ * parallel with each other and with the writer. Each connection keeps its
+ * prepared statements (see {@link #prepare}), so SQLite parses and plans a
+ * repository query once per connection rather than once per call.
+ */
 public class Database implements AutoCloseable {
+    public static final int DEFAULT_READ_POOL_SIZE = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+    public static final int STATEMENT_CACHE_SIZE = 64;
+    /** Change log entries kept; followers further behind reload in full. */
+    public static final int CHANGE_LOG_RETENTION = 100_000;
+    private static final int CHANGE_LOG_PRUNE_EVERY = 1_000;
+
+    @FunctionalInterface
+    public interface SqlFunction<T> {
+        T apply(Connection conn) throws SQLException;
+    }
+
+    private final String filePath;
     private final String url;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ReadConnectionPool readPool;
+    private final Map<Connection, StatementCache> statementCaches = new ConcurrentHashMap<>();
     private Connection conn;
 
     public Database(String filePath) {
+        this(filePath, DEFAULT_READ_POOL_SIZE);
+    }
+
+    public Database(String filePath, int readPoolSize) {
+        this.filePath = filePath;
         this.url = "jdbc:sqlite:" + filePath;
+        this.readPool = new ReadConnectionPool(this::openReadConnection, readPoolSize);
+    }
+
+    public String getFilePath() {
+        return filePath;
     }
 
     public void connect() throws SQLException {
         if (conn == null || conn.isClosed()) {
-            try {
-                Class.forName("org.sqlite.JDBC");  // <-- required for driver registration
-            } catch (ClassNotFoundException e) {
-                throw new SQLException("SQLite JDBC driver not found", e);
-            }
-
+            loadDriver();
             conn = DriverManager.getConnection(url);
             try (Statement st = conn.createStatement()) {
+                st.execute("PRAGMA journal_mode = WAL");
+                st.execute("PRAGMA synchronous = NORMAL"); // durable at checkpoints; never corrupts in WAL mode
                 st.execute("PRAGMA foreign_keys = ON");
+                // INSERT OR REPLACE must fire the delete trigger that keeps PersonFts in sync
+                st.execute("PRAGMA recursive_triggers = ON");
+                st.execute("PRAGMA cache_size = -65536"); // 64 MiB
+                configure(st);
             }
         }
     }
 
+    // Shared by the writer and every reader
+    private static void configure(Statement st) throws SQLException {
+        st.execute("PRAGMA busy_timeout = 5000");
+        st.execute("PRAGMA temp_store = MEMORY");
+        st.execute("PRAGMA mmap_size = 268435456"); // 256 MiB of the file read through the page cache, no copies
+    }
 
+    /**
+     * The writer connection. Repository writes go through {@link #write};
+     * code using the connection directly must not share it across threads.
+     */
     public Connection getConnection() {
         return conn;
     }
 
+    /** Runs work on the writer connection, one writer at a time. */
+    public <T> T write(SqlFunction<T> work) throws SQLException {
+        writeLock.lock();
+        try {
+            return work.apply(conn);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /** Runs work on a pooled read-only connection, waiting for one if all are busy. */
+    public <T> T read(SqlFunction<T> work) throws SQLException {
+        Connection c = readPool.acquire();
+        try {
+            return work.apply(c);
+        } finally {
+            readPool.release(c);
+        }
+    }
+
+    /**
+     * The cached prepared statement for sql on conn, with its parameters
+     * cleared. The statement stays owned by the cache: close the ResultSet,
+     * not the statement. Works on any connection to this database, including
+     * ones from {@link #openReadConnection}; the cache goes with the connection.
+     */
+    public PreparedStatement prepare(Connection conn, String sql) throws SQLException {
+        StatementCache cache = statementCaches.get(conn);
+        if (cache == null) cache = statementCache(conn);
+        return cache.prepare(sql);
+    }
+
+    private StatementCache statementCache(Connection c) throws SQLException {
+        if (c.isClosed()) throw new SQLException("Connection is closed");
+        // New connections are rare; forget those closed since, whose statements the driver has finalized
+        statementCaches.values().removeIf(cache -> isClosed(cache.connection()));
+        return statementCaches.computeIfAbsent(c, k -> new StatementCache(k, STATEMENT_CACHE_SIZE));
+    }
+
+    private static boolean isClosed(Connection c) {
+        try {
+            return c.isClosed();
+        } catch (SQLException ex) {
+            return true;
+        }
+    }
+
+    /** Opens an extra read-only connection outside the pool; the caller owns and closes it. */
+    public Connection openReadConnection() throws SQLException {
+        loadDriver();
+        Properties props = new Properties();
+        props.setProperty("open_mode", "1"); // SQLITE_OPEN_READONLY
+        Connection c = DriverManager.getConnection(url, props);
+        try (Statement st = c.createStatement()) {
+            st.execute("PRAGMA cache_size = -16384"); // 16 MiB
+            configure(st);
+        } catch (SQLException ex) {
+            c.close();
+            throw ex;
+        }
+        return c;
+    }
+
+    private static void loadDriver() throws SQLException {
+        try {
+            Class.forName("org.sqlite.JDBC");  // <-- required for driver registration
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("SQLite JDBC driver not found", e);
+        }
+    }
+
+    /** Layout recorded in PRAGMA user_version: 0 is the original TEXT layout, 1 the compact one. */
+    public static final int SCHEMA_VERSION = 1;
+    private static final int MIGRATION_CHUNK = 50_000;
+
+    @FunctionalInterface
+    public interface MigrationProgress {
+        void update(String table, long rowsCopied, long rowsTotal);
+
+        /** Non-empty values of table.column that could not be converted and were left empty; examples holds a few. */
+        default void unconverted(String table, String column, long count, List<String> examples) {}
+    }
+
     public void runMigrations() throws SQLException {
+        runMigrations((table, copied, total) -> {});
+    }
+
+    public void runMigrations(MigrationProgress progress) throws SQLException {
+        if (userVersion() < 1 && tableExists("Person")) {
+            migrateToCompactLayout(progress);
+        }
+        try (Statement st = conn.createStatement()) {
+            st.execute(personTableSql("Person"));
+            st.execute(unionTableSql("UnionRecord"));
+            st.execute(linkTableSql("ParentChildLink"));
+            st.execute("CREATE INDEX IF NOT EXISTS idx_person_familyName ON Person(familyName)");
+            st.execute("CREATE INDEX IF NOT EXISTS idx_pcl_parent ON ParentChildLink(parent)");
+            st.execute("CREATE INDEX IF NOT EXISTS idx_pcl_child  ON ParentChildLink(child)");
+            st.execute("CREATE INDEX IF NOT EXISTS idx_union_partnerA ON UnionRecord(partnerA)");
+            st.execute("CREATE INDEX IF NOT EXISTS idx_union_partnerB ON UnionRecord(partnerB)");
+            // Keyset pagination for the person list; expressions must match PersonSort
+            st.execute("CREATE INDEX IF NOT EXISTS idx_person_sort_name ON Person(COALESCE(familyName, ''), COALESCE(givenName, ''), id)");
+            st.execute("CREATE INDEX IF NOT EXISTS idx_person_sort_birth ON Person(" + PersonSort.BIRTH_DATE.keySql() + ")");
+            // Timeline queries; expressions must match DateSpan's queries
+            for (DateSpan span : DateSpan.values()) {
+                for (String sql : span.indexSql()) st.execute(sql);
+            }
+        }
+        migrateNameSearch();
+        migrateDataVersion();
+        migrateChangeLog();
+        try (Statement st = conn.createStatement()) {
+            st.execute("PRAGMA user_version = " + SCHEMA_VERSION);
+        }
+    }
+
+    // Compact layout: ids are 16-byte BLOBs and dates INTEGER codes (see SqlCodec).
+    // Person keeps its rowid for the full-text index; the narrow link and union
+    // tables are WITHOUT ROWID so the primary key is the table, not a second index.
+    private static String personTableSql(String name) {
+        return """
+            CREATE TABLE IF NOT EXISTS %s (
+              id                 BLOB NOT NULL PRIMARY KEY CHECK (length(id) = 16),
+              givenName          TEXT,
+              familyName         TEXT,
+              middleNames        TEXT,
+              sex                TEXT NOT NULL DEFAULT 'UNKNOWN',
+              birthDate          INTEGER,
+              deathDate          INTEGER,
+              birthPlace         TEXT,
+              notes              TEXT,
+              familyNameSoundex  TEXT,
+              CHECK (sex IN ('MALE','FEMALE','UNKNOWN','OTHER'))
+            )
+        """.formatted(name);
+    }
+
+    private static String unionTableSql(String name) {
+        return """
+            CREATE TABLE IF NOT EXISTS %s (
+              id         BLOB NOT NULL PRIMARY KEY,
+              type       TEXT NOT NULL,
+              partnerA   BLOB,
+              partnerB   BLOB,
+              startDate  INTEGER,
+              endDate    INTEGER,
+              location   TEXT,
+              notes      TEXT,
+              FOREIGN KEY (partnerA) REFERENCES Person(id) ON DELETE SET NULL ON UPDATE CASCADE,
+              FOREIGN KEY (partnerB) REFERENCES Person(id) ON DELETE SET NULL ON UPDATE CASCADE
+            ) WITHOUT ROWID
+        """.formatted(name);
+    }
+
+    private static String linkTableSql(String name) {
+        return """
+            CREATE TABLE IF NOT EXISTS %s (
+              id          BLOB NOT NULL PRIMARY KEY,
+              parent      BLOB NOT NULL,
+              child       BLOB NOT NULL,
+              isAdoptive  INTEGER NOT NULL DEFAULT 0,
+              notes       TEXT,
+              FOREIGN KEY (parent) REFERENCES Person(id) ON DELETE CASCADE ON UPDATE CASCADE,
+              FOREIGN KEY (child)  REFERENCES Person(id) ON DELETE CASCADE ON UPDATE CASCADE,
+              CHECK (isAdoptive IN (0,1)),
+              CHECK (parent <> child)
+            ) WITHOUT ROWID
+        """.formatted(name);
+    }
+
+    /**
+     * Version 0 to 1, in place. Each table is copied into a compact twin in
+     * committed chunks of rowids, with the last copied rowid recorded so an
+     * interrupted run resumes where it stopped; the tables are then swapped in
+     * one transaction. Indexes, triggers and the full-text index are recreated
+     * by the rest of runMigrations.
+     * <p>
+     * A row whose id or references are not UUIDs, or whose id another row
+     * already has, cannot be copied. If there are any, the twins are dropped
+     * and the migration fails naming them, leaving the version 0 tables as
+     * they were. Dates that cannot be read are left empty and reported
+     * through {@link MigrationProgress#unconverted}.
+     */
+    private void migrateToCompactLayout(MigrationProgress progress) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        try (Statement st = conn.createStatement()) {
+            st.execute("PRAGMA foreign_keys = OFF"); // the twins reference Person before it is swapped
+            try {
+                st.execute(personTableSql("Person_v1"));
+                st.execute(unionTableSql("UnionRecord_v1"));
+                st.execute(linkTableSql("ParentChildLink_v1"));
+                st.execute("CREATE TABLE IF NOT EXISTS SchemaMigration (tableName TEXT PRIMARY KEY, lastRowid INTEGER NOT NULL)");
+
+                String soundex = columnExists("Person", "familyNameSoundex") ? "familyNameSoundex" : "NULL";
+                String personIds = validIds("id");
+                String unionIds = validIds("id", "partnerA?", "partnerB?");
+                String linkIds = validIds("id", "parent", "child");
+                copyInChunks("Person", "Person_v1", """
+                    INSERT OR IGNORE INTO Person_v1 (rowid, id, givenName, familyName, middleNames, sex,
+                                                     birthDate, deathDate, birthPlace, notes, familyNameSoundex)
+                    SELECT rowid, %s, givenName, familyName, middleNames, sex, %s, %s, birthPlace, notes, %s
+                    FROM Person WHERE %s
+                """.formatted(blobId("id"), epochDate("birthDate"), epochDate("deathDate"), soundex, personIds), progress);
+                copyInChunks("UnionRecord", "UnionRecord_v1", """
+                    INSERT OR IGNORE INTO UnionRecord_v1 (id, type, partnerA, partnerB, startDate, endDate, location, notes)
+                    SELECT %s, type, %s, %s, %s, %s, location, notes
+                    FROM UnionRecord WHERE %s
+                """.formatted(blobId("id"), blobId("partnerA"), blobId("partnerB"), epochDate("startDate"), epochDate("endDate"), unionIds), progress);
+                copyInChunks("ParentChildLink", "ParentChildLink_v1", """
+                    INSERT OR IGNORE INTO ParentChildLink_v1 (id, parent, child, isAdoptive, notes)
+                    SELECT %s, %s, %s, isAdoptive, notes
+                    FROM ParentChildLink WHERE %s
+                """.formatted(blobId("id"), blobId("parent"), blobId("child"), linkIds), progress);
+
+                // Nothing is swapped while a row would be lost; starting over after a fix copies everything again
+                List<String> skipped = new ArrayList<>();
+                skipped(st, "Person", "Person_v1", personIds, skipped);
+                skipped(st, "UnionRecord", "UnionRecord_v1", unionIds, skipped);
+                skipped(st, "ParentChildLink", "ParentChildLink_v1", linkIds, skipped);
+                if (!skipped.isEmpty()) {
+                    st.execute("DROP TABLE ParentChildLink_v1");
+                    st.execute("DROP TABLE UnionRecord_v1");
+                    st.execute("DROP TABLE Person_v1");
+                    st.execute("DROP TABLE SchemaMigration");
+                    throw new SQLException("Cannot convert to the compact layout without losing rows, so nothing was changed. "
+                            + "Fix or delete these rows and start again: " + String.join("; ", skipped));
+                }
+                unconvertedDates(st, "Person", "birthDate", progress);
+                unconvertedDates(st, "Person", "deathDate", progress);
+                unconvertedDates(st, "UnionRecord", "startDate", progress);
+                unconvertedDates(st, "UnionRecord", "endDate", progress);
+
+                conn.setAutoCommit(false);
+                st.execute("DROP TABLE IF EXISTS PersonFts");
+                st.execute("DROP TABLE ParentChildLink");
+                st.execute("DROP TABLE UnionRecord");
+                st.execute("DROP TABLE Person");
+                st.execute("ALTER TABLE Person_v1 RENAME TO Person");
+                st.execute("ALTER TABLE UnionRecord_v1 RENAME TO UnionRecord");
+                st.execute("ALTER TABLE ParentChildLink_v1 RENAME TO ParentChildLink");
+                st.execute("DROP TABLE SchemaMigration");
+                conn.commit();
+            } catch (SQLException ex) {
+                if (!conn.getAutoCommit()) conn.rollback();
+                throw ex;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+                st.execute("PRAGMA foreign_keys = ON");
+            }
+        }
+    }
+
+    // insertSelect must end in a WHERE clause; the rowid range is appended to it
+    private void copyInChunks(String table, String target, String insertSelect, MigrationProgress progress) throws SQLException {
+        long total, maxRowid, last, copied;
+        try (Statement st = conn.createStatement()) {
+            try (ResultSet rs = st.executeQuery("SELECT COUNT(*), COALESCE(MIN(rowid), 1) - 1, COALESCE(MAX(rowid), 0) FROM " + table)) {
+                rs.next();
+                total = rs.getLong(1);
+                last = rs.getLong(2);
+                maxRowid = rs.getLong(3);
+            }
+            try (ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM " + target)) {
+                rs.next();
+                copied = rs.getLong(1);
+            }
+        }
+        try (PreparedStatement ps = conn.prepareStatement("SELECT lastRowid FROM SchemaMigration WHERE tableName = ?")) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) last = rs.getLong(1);
+            }
+        }
+
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (PreparedStatement copy = conn.prepareStatement(insertSelect + " AND rowid > ? AND rowid <= ?");
+             PreparedStatement mark = conn.prepareStatement("INSERT OR REPLACE INTO SchemaMigration (tableName, lastRowid) VALUES (?, ?)")) {
+            progress.update(table, copied, total);
+            while (last < maxRowid) {
+                long upTo = last < maxRowid - MIGRATION_CHUNK ? last + MIGRATION_CHUNK : maxRowid;
+                copy.setLong(1, last);
+                copy.setLong(2, upTo);
+                copied += copy.executeUpdate();
+                mark.setString(1, table);
+                mark.setLong(2, upTo);
+                mark.executeUpdate();
+                conn.commit();
+                last = upTo;
+                progress.update(table, copied, total);
+            }
+        } catch (SQLException ex) {
+            conn.rollback();
+            throw ex;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    // Compares a copied table with its source; describes the rows left behind, if any
+    private static void skipped(Statement st, String table, String target, String validIds, List<String> out) throws SQLException {
+        long source, copied;
+        try (ResultSet rs = st.executeQuery("SELECT (SELECT COUNT(*) FROM " + table + "), (SELECT COUNT(*) FROM " + target + ")")) {
+            rs.next();
+            source = rs.getLong(1);
+            copied = rs.getLong(2);
+        }
+        if (source == copied) return;
+        List<String> ids = new ArrayList<>();
+        try (ResultSet rs = st.executeQuery("""
+                SELECT id FROM %1$s
+                WHERE (%2$s) IS NOT 1 OR %3$s IN (SELECT %3$s FROM %1$s GROUP BY 1 HAVING COUNT(*) > 1)
+                LIMIT 10
+            """.formatted(table, validIds, blobId("id")))) {
+            while (rs.next()) ids.add(rs.getString(1));
+        }
+        out.add(String.format("%s: %,d of %,d rows, e.g. ids %s", table, source - copied, source, ids));
+    }
+
+    private static void unconvertedDates(Statement st, String table, String column, MigrationProgress progress) throws SQLException {
+        String where = " FROM " + table + " WHERE " + column + " IS NOT NULL AND " + epochDate(column) + " IS NULL";
+        long count;
+        try (ResultSet rs = st.executeQuery("SELECT COUNT(*)" + where)) {
+            rs.next();
+            count = rs.getLong(1);
+        }
+        if (count == 0) return;
+        List<String> examples = new ArrayList<>();
+        try (ResultSet rs = st.executeQuery("SELECT DISTINCT " + column + where + " LIMIT 5")) {
+            while (rs.next()) examples.add(rs.getString(1));
+        }
+        progress.unconverted(table, column, count, examples);
+    }
+
+    // Version 0 stored ids as canonical UUID text and dates as ISO text
+    private static String blobId(String column) {
+        return "unhex(replace(" + column + ", '-', ''))";
+    }
+
+    // True where every column holds a UUID; a trailing '?' marks a column that may be NULL
+    private static String validIds(String... columns) {
+        List<String> terms = new ArrayList<>();
+        for (String c : columns) {
+            boolean nullable = c.endsWith("?");
+            String column = nullable ? c.substring(0, c.length() - 1) : c;
+            String valid = "length(" + blobId(column) + ") = 16";
+            terms.add(nullable ? "(" + column + " IS NULL OR " + valid + ")" : valid);
+        }
+        return String.join(" AND ", terms);
+    }
+
+    // yyyy-MM-dd, or yyyy-MM and yyyy for partial dates, each matched exactly:
+    // julianday() alone reads '1900' as a Julian day number. Anything else,
+    // including impossible days such as 1900-02-30, becomes NULL.
+    private static String epochDate(String column) {
+        String code = "(CAST(julianday(%s) - 2440587.5 AS INTEGER) << 2 | %d)";
+        String month = column + " || '-01'", year = column + " || '-01-01'";
+        return """
+            (CASE
+               WHEN %1$s GLOB '[0-9][0-9][0-9][0-9]-[0-9][0-9]-[0-9][0-9]' AND date(%1$s) = %1$s THEN %2$s
+               WHEN %1$s GLOB '[0-9][0-9][0-9][0-9]-[0-9][0-9]' AND date(%3$s) = %3$s THEN %4$s
+               WHEN %1$s GLOB '[0-9][0-9][0-9][0-9]' THEN %5$s
+             END)""".formatted(column, code.formatted(column, SqlCodec.DAY), month,
+                code.formatted(month, SqlCodec.MONTH), code.formatted(year, SqlCodec.YEAR));
+    }
+
+    private int userVersion() throws SQLException {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    // Name search: FTS5 over the text columns plus a Soundex key on familyName
+    private void migrateNameSearch() throws SQLException {
+        boolean ftsExists = tableExists("PersonFts");
         try (Statement st = conn.createStatement()) {
+            if (!columnExists("Person", "familyNameSoundex")) {
+                st.execute("ALTER TABLE Person ADD COLUMN familyNameSoundex TEXT");
+            }
+            st.execute("CREATE INDEX IF NOT EXISTS idx_person_familySoundex ON Person(familyNameSoundex)");
             st.execute("""
-                CREATE TABLE IF NOT EXISTS Person (
-                  id           TEXT PRIMARY KEY,
-                  givenName    TEXT,
-                  familyName   TEXT,
-                  middleNames  TEXT,
-                  sex          TEXT NOT NULL DEFAULT 'UNKNOWN',
-                  birthDate    TEXT,
-                  deathDate    TEXT,
-                  birthPlace   TEXT,
-                  notes        TEXT,
-                  CHECK (sex IN ('MALE','FEMALE','UNKNOWN','OTHER'))
+                CREATE VIRTUAL TABLE IF NOT EXISTS PersonFts USING fts5(
+                  givenName, middleNames, familyName, birthPlace, notes,
+                  content = 'Person', content_rowid = 'rowid',
+                  tokenize = 'unicode61 remove_diacritics 2', prefix = '2 3'
                 )
             """);
             st.execute("""
-                CREATE TABLE IF NOT EXISTS UnionRecord (
-                  id         TEXT PRIMARY KEY,
-                  type       TEXT NOT NULL,
-                  partnerA   TEXT,
-                  partnerB   TEXT,
-                  startDate  TEXT,
-                  endDate    TEXT,
-                  location   TEXT,
-                  notes      TEXT,
-                  FOREIGN KEY (partnerA) REFERENCES Person(id) ON DELETE SET NULL ON UPDATE CASCADE,
-                  FOREIGN KEY (partnerB) REFERENCES Person(id) ON DELETE SET NULL ON UPDATE CASCADE
+                CREATE TRIGGER IF NOT EXISTS trg_person_fts_insert AFTER INSERT ON Person BEGIN
+                  INSERT INTO PersonFts(rowid, givenName, middleNames, familyName, birthPlace, notes)
+                  VALUES (new.rowid, new.givenName, new.middleNames, new.familyName, new.birthPlace, new.notes);
+                END
+            """);
+            st.execute("""
+                CREATE TRIGGER IF NOT EXISTS trg_person_fts_delete AFTER DELETE ON Person BEGIN
+                  INSERT INTO PersonFts(PersonFts, rowid, givenName, middleNames, familyName, birthPlace, notes)
+                  VALUES ('delete', old.rowid, old.givenName, old.middleNames, old.familyName, old.birthPlace, old.notes);
+                END
+            """);
+            st.execute("""
+                CREATE TRIGGER IF NOT EXISTS trg_person_fts_update AFTER UPDATE ON Person BEGIN
+                  INSERT INTO PersonFts(PersonFts, rowid, givenName, middleNames, familyName, birthPlace, notes)
+                  VALUES ('delete', old.rowid, old.givenName, old.middleNames, old.familyName, old.birthPlace, old.notes);
+                  INSERT INTO PersonFts(rowid, givenName, middleNames, familyName, birthPlace, notes)
+                  VALUES (new.rowid, new.givenName, new.middleNames, new.familyName, new.birthPlace, new.notes);
+                END
+            """);
+            if (!ftsExists) st.execute("INSERT INTO PersonFts(PersonFts) VALUES ('rebuild')");
+        }
+        backfillSoundex();
+    }
+
+    // Identity of the file, so caches built from the database (tree snapshots)
+    // can tell it from another; how far it has changed is the change log's last
+    // seq. Earlier versions kept a counter here bumped by a trigger set of its
+    // own; dropping those gives the file a new identity, since a counter value
+    // could otherwise pass for a seq.
+    private void migrateDataVersion() throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("""
+                CREATE TABLE IF NOT EXISTS DataVersion (
+                  id          INTEGER PRIMARY KEY CHECK (id = 1),
+                  databaseId  TEXT NOT NULL
                 )
             """);
+            st.execute("INSERT OR IGNORE INTO DataVersion (id, databaseId) VALUES (1, lower(hex(randomblob(16))))");
+            if (columnExists("DataVersion", "version")) {
+                for (String table : new String[]{"Person", "ParentChildLink", "UnionRecord"}) {
+                    for (String op : new String[]{"INSERT", "UPDATE", "DELETE"}) {
+                        st.execute("DROP TRIGGER IF EXISTS trg_" + table.toLowerCase() + "_version_" + op.toLowerCase());
+                    }
+                }
+                st.execute("ALTER TABLE DataVersion DROP COLUMN version");
+                st.execute("UPDATE DataVersion SET databaseId = lower(hex(randomblob(16)))");
+            }
+        }
+    }
+
+    // Change data capture: every row written to the three tables appends its key
+    // under a new seq, so an in-memory tree can catch up by re-reading just those
+    // rows (see FamilyTreeRepository#changesSince). Links are logged by their
+    // parent/child pair, which is how the tree knows them; an update logs both
+    // the old and the new key. A row with tableName '*' means rows were written
+    // without the triggers and followers must reload everything.
+    private void migrateChangeLog() throws SQLException {
+        // Triggers missing from an existing log were dropped for a bulk load that never
+        // put them back; followers cannot know what went in meanwhile
+        boolean missedChanges = tableExists("ChangeLog") && changeTriggerCount() < 9;
+        try (Statement st = conn.createStatement()) {
             st.execute("""
-                CREATE TABLE IF NOT EXISTS ParentChildLink (
-                  id          TEXT PRIMARY KEY,
-                  parent      TEXT NOT NULL,
-                  child       TEXT NOT NULL,
-                  isAdoptive  INTEGER NOT NULL DEFAULT 0,
-                  notes       TEXT,
-                  FOREIGN KEY (parent) REFERENCES Person(id) ON DELETE CASCADE ON UPDATE CASCADE,
-                  FOREIGN KEY (child)  REFERENCES Person(id) ON DELETE CASCADE ON UPDATE CASCADE,
-                  CHECK (isAdoptive IN (0,1)),
-                  CHECK (parent <> child)
+                CREATE TABLE IF NOT EXISTS ChangeLog (
+                  seq        INTEGER PRIMARY KEY AUTOINCREMENT,
+                  tableName  TEXT NOT NULL,
+                  entityId   BLOB,
+                  parent     BLOB,
+                  child      BLOB
                 )
             """);
-            st.execute("CREATE INDEX IF NOT EXISTS idx_person_familyName ON Person(familyName)");
-            st.execute("CREATE INDEX IF NOT EXISTS idx_pcl_parent ON ParentChildLink(parent)");
-            st.execute("CREATE INDEX IF NOT EXISTS idx_pcl_child  ON ParentChildLink(child)");
-            st.execute("CREATE INDEX IF NOT EXISTS idx_union_partnerA ON UnionRecord(partnerA)");
-            st.execute("CREATE INDEX IF NOT EXISTS idx_union_partnerB ON UnionRecord(partnerB)");
+            for (String table : new String[]{"Person", "UnionRecord"}) {
+                String log = "INSERT INTO ChangeLog (tableName, entityId) ";
+                createChangeTrigger(st, table, "INSERT", log + "VALUES ('" + table + "', new.id);");
+                createChangeTrigger(st, table, "UPDATE", log + "VALUES ('" + table + "', new.id); "
+                        + log + "SELECT '" + table + "', old.id WHERE old.id <> new.id;");
+                createChangeTrigger(st, table, "DELETE", log + "VALUES ('" + table + "', old.id);");
+            }
+            String log = "INSERT INTO ChangeLog (tableName, parent, child) ";
+            createChangeTrigger(st, "ParentChildLink", "INSERT", log + "VALUES ('ParentChildLink', new.parent, new.child);");
+            createChangeTrigger(st, "ParentChildLink", "UPDATE", log + "VALUES ('ParentChildLink', new.parent, new.child); "
+                    + log + "SELECT 'ParentChildLink', old.parent, old.child WHERE old.parent <> new.parent OR old.child <> new.child;");
+            createChangeTrigger(st, "ParentChildLink", "DELETE", log + "VALUES ('ParentChildLink', old.parent, old.child);");
+            if (missedChanges) st.execute("INSERT INTO ChangeLog (tableName) VALUES ('*')");
+            st.execute("DELETE FROM ChangeLog WHERE seq <= (SELECT MAX(seq) FROM ChangeLog) - " + CHANGE_LOG_RETENTION);
+            // Pruned as it grows too, a range delete on the key every CHANGE_LOG_PRUNE_EVERY entries
+            st.execute("CREATE TRIGGER IF NOT EXISTS trg_changelog_prune AFTER INSERT ON ChangeLog"
+                    + " WHEN new.seq % " + CHANGE_LOG_PRUNE_EVERY + " = 0"
+                    + " BEGIN DELETE FROM ChangeLog WHERE seq <= new.seq - " + CHANGE_LOG_RETENTION + "; END");
+        }
+    }
+
+    private int changeTriggerCount() throws SQLException {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM sqlite_master WHERE type = 'trigger' AND name LIKE 'trg_%_changelog_%'")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static void createChangeTrigger(Statement st, String table, String op, String body) throws SQLException {
+        st.execute("CREATE TRIGGER IF NOT EXISTS trg_" + table.toLowerCase() + "_changelog_" + op.toLowerCase()
+                + " AFTER " + op + " ON " + table + " BEGIN " + body + " END");
+    }
+
+    private void backfillSoundex() throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (PreparedStatement select = conn.prepareStatement(
+                     "SELECT rowid, familyName FROM Person WHERE familyNameSoundex IS NULL");
+             PreparedStatement update = conn.prepareStatement(
+                     "UPDATE Person SET familyNameSoundex = ? WHERE rowid = ?")) {
+            // Collect first: updating rows the open SELECT filters on would disturb its cursor
+            List<Long> rowIds = new ArrayList<>();
+            List<String> keys = new ArrayList<>();
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    String key = Phonetics.soundex(rs.getString(2));
+                    rowIds.add(rs.getLong(1));
+                    keys.add(key == null ? "" : key);
+                }
+            }
+            for (int i = 0; i < rowIds.size(); i++) {
+                update.setString(1, keys.get(i));
+                update.setLong(2, rowIds.get(i));
+                update.addBatch();
+                if (i % 1000 == 999) update.executeBatch();
+            }
+            update.executeBatch();
+            conn.commit();
+        } catch (SQLException ex) {
+            conn.rollback();
+            throw ex;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private boolean tableExists(String name) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT 1 FROM sqlite_master WHERE name = ?")) {
+            ps.setString(1, name);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private boolean columnExists(String table, String column) throws SQLException {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("name"))) return true;
+            }
+            return false;
         }
     }
 
     @Override
     public void close() {
+        statementCaches.values().forEach(StatementCache::close);
+        statementCaches.clear();
+        readPool.close();
         if (conn != null) {
             try { conn.close(); } catch (Exception ignored) {}
         }
@@ -0,0 +1,298 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Synthetic genealogy for load tests and benchmarks. The same seed and size
+ * always produce the same people, unions and links (ids included), and a
+ * smaller dataset is a prefix of a larger one from the same seed.
+ *
+ * <p>Founders are born 1600-1750 and their descendants are generated depth
+ * first, so only the current line of descent is held in memory. Lifespans
+ * include childhood mortality; unions start in adulthood, may end in divorce
+ * (more often after 1950) and widowed or divorced people may remarry; children
+ * are born while both parents are alive and the mother is of child-bearing
+ * age, with larger families before 1900; about 1.5% of children are adopted.
+ * Names and places are drawn from skewed distributions and children mostly
+ * stay in their parents' place. Nobody is born after {@link #END_YEAR}.
+ */
+public class DatasetGenerator {
+    public static final int END_YEAR = 2025;
+    private static final int CHUNK_SIZE = 10_000;
+
+    private static final String[] MALE_NAMES = {"John", "William", "James", "George", "Thomas", "Henry", "Charles", "Joseph",
+            "Robert", "Edward", "Richard", "Samuel", "Frederick", "Walter", "Arthur", "Albert", "Peter", "Hans", "Karl",
+            "Michael", "David", "Daniel", "Paul", "Matthew"};
+    private static final String[] FEMALE_NAMES = {"Mary", "Elizabeth", "Anna", "Sarah", "Margaret", "Emma", "Alice",
+            "Catherine", "Jane", "Ellen", "Martha", "Ann", "Hannah", "Maria", "Louise", "Clara", "Rose", "Grace",
+            "Frances", "Helen", "Ruth", "Susan", "Laura", "Julia"};
+    private static final String[] FAMILY_NAMES = {"Smith", "Jones", "Brown", "Taylor", "Williams", "Wilson", "Johnson",
+            "Davies", "Miller", "Schmidt", "Schneider", "Fischer", "Weber", "Meyer", "Walker", "Wright", "Thompson",
+            "Evans", "Roberts", "Clark", "Lewis", "Young", "Hall", "Allen", "King", "Baker", "Green", "Hill", "Moore",
+            "Wood", "Murphy", "Kelly", "O'Brien", "Walsh", "Byrne", "Becker", "Hoffmann", "Koch", "Richter", "Klein",
+            "Martin", "Bernard", "Dubois", "Moreau", "Laurent", "Rossi", "Russo", "Ferrari", "Esposito", "Novak"};
+    private static final String[] PLACES = {"London", "Manchester", "Birmingham", "Leeds", "York", "Dublin", "Cork",
+            "Glasgow", "Edinburgh", "Berlin", "Hamburg", "Munich", "Cologne", "Paris", "Lyon", "Milan", "Naples",
+            "Prague", "Boston", "New York", "Philadelphia", "Chicago", "Toronto", "Sydney", "Melbourne"};
+
+    // Children per union, 0..9
+    private static final double[] CHILDREN_CDF_BEFORE_1900 = {0.06, 0.12, 0.22, 0.34, 0.47, 0.60, 0.72, 0.83, 0.92, 1.0};
+    private static final double[] CHILDREN_CDF_AFTER_1900 = {0.12, 0.30, 0.62, 0.82, 0.91, 0.95, 0.98, 0.99, 0.995, 1.0};
+
+    public record Dataset(List<Person> persons, List<UnionRecord> unions, List<ParentChildLink> links) {}
+
+    public record Result(int persons, int unions, int links, long elapsedNanos) {
+        @Override
+        public String toString() {
+            return String.format("Generated %,d people, %,d unions, %,d links in %,d ms",
+                    persons, unions, links, elapsedNanos / 1_000_000);
+        }
+    }
+
+    private interface Sink {
+        void flush(List<Person> persons, List<UnionRecord> unions, List<ParentChildLink> links) throws SQLException;
+    }
+
+    // A person whose own unions and children are still to be generated
+    private record Member(UUID id, Sex sex, int birthYear, int deathYear, String familyName, int place) {}
+
+    private final long seed;
+
+    public DatasetGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /** Generates the whole dataset in memory. */
+    public Dataset generate(int people) {
+        List<Person> persons = new ArrayList<>(people);
+        List<UnionRecord> unions = new ArrayList<>(people / 3);
+        List<ParentChildLink> links = new ArrayList<>(people * 2);
+        try {
+            run(people, (p, u, l) -> {
+                persons.addAll(p);
+                unions.addAll(u);
+                links.addAll(l);
+            });
+        } catch (SQLException e) {
+            throw new IllegalStateException(e); // the in-memory sink never throws
+        }
+        return new Dataset(persons, unions, links);
+    }
+
+    /**
+     * Streams the dataset into an empty database through the repository's
+     * bulk inserts. Secondary indexes, triggers and the full-text table are
+     * dropped first and rebuilt in one pass by {@link Database#runMigrations()}
+     * at the end, which is far cheaper than maintaining them row by row.
+     * Durability and foreign key checks are relaxed for the duration; the
+     * data is consistent by construction.
+     */
+    public Result writeTo(Database db, FamilyTreeRepository repo, int people) throws SQLException {
+        return db.write(conn -> writeTo(conn, db, repo, people));
+    }
+
+    private Result writeTo(Connection conn, Database db, FamilyTreeRepository repo, int people) throws SQLException {
+        long start = System.nanoTime();
+        if (repo.countPersons(conn) > 0) {
+            throw new SQLException("Refusing to generate into a database that already has people");
+        }
+        int[] counts = new int[3];
+        try (Statement st = conn.createStatement()) {
+            dropDerivedSchema(conn);
+            st.execute("PRAGMA foreign_keys = OFF");
+            st.execute("PRAGMA synchronous = OFF");
+            st.execute("PRAGMA cache_size = -1048576"); // 1 GiB: random-UUID primary keys touch pages all over
+            try {
+                run(people, (p, u, l) -> {
+                    repo.insertPersons(p);
+                    repo.insertUnions(u);
+                    repo.insertParentChildLinks(l);
+                    counts[0] += p.size();
+                    counts[1] += u.size();
+                    counts[2] += l.size();
+                });
+                db.runMigrations(); // logs a '*' as it puts the triggers back
+            } finally {
+                st.execute("PRAGMA cache_size = -65536");
+                st.execute("PRAGMA synchronous = NORMAL");
+                st.execute("PRAGMA foreign_keys = ON");
+            }
+            st.execute("ANALYZE");
+            st.execute("PRAGMA wal_checkpoint(TRUNCATE)"); // fold the bulk load into the main file, shrink the log
+        }
+        return new Result(counts[0], counts[1], counts[2], System.nanoTime() - start);
+    }
+
+    private static void dropDerivedSchema(Connection conn) throws SQLException {
+        List<String> drops = new ArrayList<>();
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("""
+                 SELECT type, name FROM sqlite_master
+                 WHERE (type = 'index' AND sql IS NOT NULL) OR type = 'trigger'
+             """)) {
+            while (rs.next()) drops.add("DROP " + rs.getString(1).toUpperCase() + " IF EXISTS \"" + rs.getString(2) + "\"");
+        }
+        drops.add("DROP TABLE IF EXISTS PersonFts");
+        try (Statement st = conn.createStatement()) {
+            for (String sql : drops) st.execute(sql);
+        }
+    }
+
+    private void run(int people, Sink sink) throws SQLException {
+        Run r = new Run(people, sink);
+        while (!r.full()) {
+            r.founder();
+        }
+        r.flush(true);
+    }
+
+    private final class Run {
+        private final SplittableRandom random = new SplittableRandom(seed);
+        private final int limit;
+        private final Sink sink;
+        private final List<Person> persons = new ArrayList<>(CHUNK_SIZE);
+        private final List<UnionRecord> unions = new ArrayList<>();
+        private final List<ParentChildLink> links = new ArrayList<>(CHUNK_SIZE * 2);
+        private final Deque<Member> pending = new ArrayDeque<>();
+        private int personCount; // already flushed
+        private long idSequence;
+
+        Run(int limit, Sink sink) {
+            this.limit = limit;
+            this.sink = sink;
+            this.idSequence = random.nextLong() >>> 24; // 40-bit start leaves room for far more ids than any run creates
+        }
+
+        boolean full() {
+            return personCount + persons.size() >= limit;
+        }
+
+        void founder() throws SQLException {
+            Sex sex = random.nextBoolean() ? Sex.MALE : Sex.FEMALE;
+            pending.push(person(sex, 1600 + random.nextInt(151), pick(FAMILY_NAMES), random.nextInt(PLACES.length), 0));
+            while (!pending.isEmpty() && !full()) {
+                family(pending.pop());
+                flush(false);
+            }
+            pending.clear();
+        }
+
+        // Unions and children of one lineage member; children are pushed for later expansion
+        private void family(Member m) {
+            if (m.deathYear - m.birthYear < 16) return;
+            if (random.nextDouble() >= 0.85) return; // never partnered
+            int year = m.birthYear + 18 + random.nextInt(m.sex == Sex.FEMALE ? 12 : 16);
+            List<Member> children = new ArrayList<>();
+            for (int union = 0; union < 3 && year < Math.min(m.deathYear, END_YEAR) && !full(); union++) {
+                Sex partnerSex = m.sex == Sex.MALE ? Sex.FEMALE : Sex.MALE;
+                int partnerBirth = Math.max(m.birthYear - 8, Math.min(year - 16, m.birthYear + random.nextInt(13) - 6));
+                int place = random.nextDouble() < 0.8 ? m.place : random.nextInt(PLACES.length);
+                Member partner = person(partnerSex, partnerBirth, pick(FAMILY_NAMES), place, year + 1);
+                if (full()) return;
+
+                int end = Math.min(Math.min(m.deathYear, partner.deathYear), END_YEAR);
+                if (end <= year) end = year + 1;
+                boolean divorced = random.nextDouble() < (year >= 1950 ? 0.3 : 0.04);
+                if (divorced) end = Math.min(end, year + 2 + random.nextInt(18));
+
+                UnionRecord u = new UnionRecord(unionType(year), m.id, partner.id, date(year));
+                u.setId(uuid());
+                if (divorced && end < END_YEAR) u.setEndDate(date(end));
+                u.setLocation(PLACES[place]);
+                unions.add(u);
+
+                Member mother = m.sex == Sex.FEMALE ? m : partner;
+                String familyName = m.sex == Sex.MALE ? m.familyName : partner.familyName;
+                int lastBirth = Math.min(end, mother.birthYear + 45);
+                int birth = year + 1 + random.nextInt(2);
+                int count = sampleChildren(year);
+                for (int c = 0; c < count && birth <= lastBirth && birth <= END_YEAR && !full(); c++) {
+                    Sex sex = random.nextBoolean() ? Sex.MALE : Sex.FEMALE;
+                    Member child = person(sex, birth, familyName, random.nextDouble() < 0.9 ? place : random.nextInt(PLACES.length), 0);
+                    boolean adopted = random.nextDouble() < 0.015;
+                    links.add(new ParentChildLink(uuid(), m.id, child.id, adopted));
+                    links.add(new ParentChildLink(uuid(), partner.id, child.id, adopted));
+                    children.add(child);
+                    birth += 1 + random.nextInt(4);
+                }
+
+                if (end >= m.deathYear || random.nextDouble() >= 0.5) break; // no remarriage
+                year = end + 1 + random.nextInt(5);
+            }
+            // Push in reverse so the eldest child's line is expanded first
+            for (int i = children.size() - 1; i >= 0; i--) pending.push(children.get(i));
+        }
+
+        private Member person(Sex sex, int birthYear, String familyName, int place, int aliveUntil) {
+            Person p = new Person(pick(sex == Sex.MALE ? MALE_NAMES : FEMALE_NAMES), familyName, sex);
+            p.setId(uuid());
+            if (random.nextDouble() < 0.3) p.setMiddleNames(pick(sex == Sex.MALE ? MALE_NAMES : FEMALE_NAMES));
+            p.setBirthDate(date(birthYear));
+            p.setBirthPlace(PLACES[place]);
+            int deathYear = Math.max(birthYear + lifespan(birthYear), aliveUntil);
+            if (deathYear <= END_YEAR) {
+                LocalDate death = date(deathYear);
+                p.setDeathDate(death.isBefore(p.getBirthDate()) ? p.getBirthDate() : death);
+            }
+            persons.add(p);
+            return new Member(p.getId(), sex, birthYear, deathYear, familyName, place);
+        }
+
+        private int lifespan(int birthYear) {
+            double childMortality = birthYear < 1900 ? 0.2 : birthYear < 1950 ? 0.06 : 0.01;
+            if (random.nextDouble() < childMortality) return random.nextInt(16);
+            int mean = birthYear < 1900 ? 62 : 74;
+            return Math.max(16, Math.min(105, (int) Math.round(mean + 12 * random.nextGaussian())));
+        }
+
+        private int sampleChildren(int year) {
+            double[] cdf = year < 1900 ? CHILDREN_CDF_BEFORE_1900 : CHILDREN_CDF_AFTER_1900;
+            double x = random.nextDouble();
+            for (int i = 0; i < cdf.length; i++) {
+                if (x < cdf[i]) return i;
+            }
+            return cdf.length - 1;
+        }
+
+        private UnionType unionType(int year) {
+            double x = random.nextDouble();
+            if (year < 1970) return x < 0.98 ? UnionType.MARRIAGE : UnionType.PARTNERSHIP;
+            return x < 0.7 ? UnionType.MARRIAGE : x < 0.8 ? UnionType.CIVIL_UNION : UnionType.PARTNERSHIP;
+        }
+
+        // Skewed towards the front of the array, like real name frequencies
+        private String pick(String[] values) {
+            double u = random.nextDouble();
+            return values[(int) (values.length * u * u)];
+        }
+
+        private LocalDate date(int year) {
+            return LocalDate.ofYearDay(year, 1 + random.nextInt(365));
+        }
+
+        // Version 7 layout: a 48-bit sequence in place of the timestamp, then seeded random bits.
+        // Ids ascend in creation order, so primary key inserts append instead of splitting pages
+        private UUID uuid() {
+            long msb = (++idSequence << 16) | 0x7000L | (random.nextInt() & 0xFFFL);
+            long lsb = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+            return new UUID(msb, lsb);
+        }
+
+        void flush(boolean all) throws SQLException {
+            if (!all && persons.size() < CHUNK_SIZE) return;
+            sink.flush(persons, unions, links);
+            personCount += persons.size();
+            persons.clear();
+            unions.clear();
+            links.clear();
+        }
+    }
+}
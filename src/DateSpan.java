@@ -0,0 +1,62 @@
+/**
+ * Date spans of people and unions as SQL expressions over inclusive epoch
+ * days, with the same rules as {@link Person#isAliveOn} and
+ * {@link UnionRecord#isActiveOn}; the matching expression indexes are created
+ * in Database.
+ * <p>
+ * A B-tree cannot seek on start and end at once, so spans up to
+ * {@link Person#MAX_LIFESPAN_DAYS} long are found through a window of that
+ * width on the start index, and longer ones (open-ended unions, mostly)
+ * through a partial index holding only them. Either way the rows read are
+ * the rows returned plus the short spans in the window that ended too early.
+ */
+enum DateSpan {
+    LIFESPAN("Person", "lifespan",
+            "COALESCE(birthDate >> 2, (deathDate >> 2) - " + Person.MAX_LIFESPAN_DAYS + ")",
+            "COALESCE(deathDate >> 2, (birthDate >> 2) + " + Person.MAX_LIFESPAN_DAYS + ")"),
+    UNION("UnionRecord", "union_span",
+            "COALESCE(startDate >> 2, " + IntervalIndex.OPEN_START + ")",
+            "COALESCE((endDate >> 2) - 1, " + IntervalIndex.OPEN_END + ")"); // ends the day before endDate
+
+    private final String table;
+    private final String indexName;
+    private final String start;
+    private final String end;
+
+    DateSpan(String table, String indexName, String start, String end) {
+        this.table = table;
+        this.indexName = indexName;
+        this.start = start;
+        this.end = end;
+    }
+
+    private String length() {
+        return "(" + end + ") - (" + start + ")";
+    }
+
+    /** The windowed start index and the partial index of long spans. */
+    String[] indexSql() {
+        return new String[]{
+                "CREATE INDEX IF NOT EXISTS idx_" + indexName + " ON " + table + "(" + start + ", " + end + ")",
+                "CREATE INDEX IF NOT EXISTS idx_" + indexName + "_long ON " + table + "(" + start + ")"
+                        + " WHERE " + length() + " > " + Person.MAX_LIFESPAN_DAYS
+        };
+    }
+
+    /**
+     * Rows of the table whose span shares a day with [?1, ?2], selecting
+     * columns; each row once. Binds the first and last day as epoch days.
+     * The indexes are named because the planner, seeing most unions open-ended,
+     * would otherwise scan the long spans through the full start index.
+     */
+    String overlapSql(String columns) {
+        return """
+            SELECT %1$s FROM %2$s INDEXED BY idx_%7$s
+             WHERE %3$s BETWEEN ?1 - %6$d AND ?2 AND %4$s >= ?1 AND %5$s BETWEEN 0 AND %6$d
+            UNION ALL
+            SELECT %1$s FROM %2$s INDEXED BY idx_%7$s_long
+             WHERE %5$s > %6$d AND %3$s <= ?2 AND %4$s >= ?1
+            LIMIT ?3
+        """.formatted(columns, table, start, end, length(), Person.MAX_LIFESPAN_DAYS, indexName);
+    }
+}
@@ -0,0 +1,378 @@
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.IntStream;
+
+/**
+ * Record linkage over a {@link FamilyTree}: finds people recorded twice,
+ * typically after merging GEDCOM files from several sources.
+ * <p>
+ * Comparing every pair is quadratic, so people are first blocked: each gets a
+ * key of family-name Soundex, given-name Soundex and birth year, the keys are
+ * sorted once, and only people in the same name block born within
+ * {@link #setYearWindow year window} of each other are compared. People with
+ * no birth date are compared with their whole block if it is small. People
+ * whose names have no latin letters have no key and are never compared.
+ * <p>
+ * Pairs are scored in parallel on the common fork-join pool, blocks split
+ * between tasks. The score is a weighted mean over the evidence present on
+ * both sides: Jaro-Winkler similarity of the names, agreement of birth and
+ * death dates and birth place, and how many parents, children and spouses
+ * match (the same person, or same names and close birth years). An unknown
+ * birth date counts as half agreement, so two undated namesakes need more
+ * evidence than their names. Conflicting sexes rule a pair out.
+ */
+public final class DuplicateFinder {
+    public static final double DEFAULT_THRESHOLD = 0.85;
+    public static final int DEFAULT_YEAR_WINDOW = 2;
+    /** Largest block whose undated members are compared with everyone in it. */
+    static final int MAX_UNDATED_BLOCK = 256;
+
+    // Sort key: familySoundex(14) givenSoundex(14) birthYear(12) ordinal(24)
+    private static final int ORD_BITS = 24;
+    private static final int YEAR_BITS = 12;
+    private static final int NO_YEAR = (1 << YEAR_BITS) - 1;
+    private static final long NO_KEY = -1;
+    private static final int LEAF_SIZE = 1 << 12;
+
+    private static final double W_GIVEN = 3, W_FAMILY = 2, W_MIDDLE = 1;
+    private static final double W_BIRTH = 3, W_DEATH = 1.5, W_PLACE = 1, W_RELATIVES = 4;
+    private static final double W_OPTIONAL = W_MIDDLE + W_DEATH + W_PLACE + W_RELATIVES;
+
+    private static final Metrics.Timer FIND = Metrics.timer("duplicates.find");
+
+    private final FamilyTree tree;
+    private double threshold = DEFAULT_THRESHOLD;
+    private int yearWindow = DEFAULT_YEAR_WINDOW;
+
+    public DuplicateFinder(FamilyTree tree) {
+        this.tree = tree;
+    }
+
+    public double getThreshold() { return threshold; }
+    public void setThreshold(double threshold) {
+        if (threshold < 0 || threshold > 1) throw new IllegalArgumentException("threshold must be in 0..1: " + threshold);
+        this.threshold = threshold;
+    }
+
+    public int getYearWindow() { return yearWindow; }
+    public void setYearWindow(int yearWindow) {
+        if (yearWindow < 0) throw new IllegalArgumentException("yearWindow must not be negative: " + yearWindow);
+        this.yearWindow = yearWindow;
+    }
+
+    /** Up to limit pairs scoring at least the threshold, best first. */
+    public List<MergeCandidate> find(int limit) {
+        int n = tree.personCount();
+        if (n >= 1 << ORD_BITS) throw new IllegalArgumentException("Too many people for duplicate search: " + n);
+        long t = Metrics.start();
+        Search search = new Search(n);
+        List<MergeCandidate> found = search.sorted.length == 0
+                ? new ArrayList<>()
+                : ForkJoinPool.commonPool().invoke(search.new ScoreTask(0, search.sorted.length));
+        found.sort(Comparator.comparingDouble(MergeCandidate::score).reversed());
+        List<MergeCandidate> res = found.size() > limit ? new ArrayList<>(found.subList(0, limit)) : found;
+        FIND.stop(t, found.size());
+        return res;
+    }
+
+    // Per-call state: keys, folded names and places by ordinal, spouse lists, sorted keys
+    private final class Search {
+        final long[] keys;          // block << YEAR_BITS | year, or NO_KEY
+        final String[] given;
+        final String[] family;
+        final String[] place;
+        final int[] spouseStart;
+        final int[] spouses;
+        final long[] sorted;
+        final Map<String, String> folded = new ConcurrentHashMap<>();
+        final PersonGraph graph = tree.graph();
+
+        Search(int n) {
+            keys = new long[n];
+            given = new String[n];
+            family = new String[n];
+            place = new String[n];
+            IntStream.range(0, n).parallel().forEach(ord -> {
+                Person p = tree.person(ord);
+                String fs = Phonetics.soundex(p.getFamilyName());
+                String gs = Phonetics.soundex(p.getGivenName());
+                if (fs == null || gs == null) {
+                    keys[ord] = NO_KEY;
+                    return;
+                }
+                keys[ord] = ((long) code(fs) << 14 | code(gs)) << YEAR_BITS | year(p.getBirthDate());
+                given[ord] = fold(p.getGivenName());
+                family[ord] = fold(p.getFamilyName());
+                place[ord] = present(p.getBirthPlace()) ? fold(p.getBirthPlace()) : null;
+            });
+
+            // Spouses as CSR arrays: count per person, prefix sums, fill
+            spouseStart = new int[n + 1];
+            List<int[]> pairs = new ArrayList<>();
+            for (UnionRecord u : tree.listUnions()) {
+                int a = u.getPartnerA() == null ? -1 : tree.ordinalOf(u.getPartnerA());
+                int b = u.getPartnerB() == null ? -1 : tree.ordinalOf(u.getPartnerB());
+                if (a < 0 || b < 0 || a == b) continue;
+                pairs.add(new int[]{a, b});
+                spouseStart[a + 1]++;
+                spouseStart[b + 1]++;
+            }
+            for (int i = 0; i < n; i++) spouseStart[i + 1] += spouseStart[i];
+            spouses = new int[spouseStart[n]];
+            int[] fill = Arrays.copyOf(spouseStart, n);
+            for (int[] pair : pairs) {
+                spouses[fill[pair[0]]++] = pair[1];
+                spouses[fill[pair[1]]++] = pair[0];
+            }
+
+            sorted = IntStream.range(0, n)
+                    .filter(ord -> keys[ord] != NO_KEY)
+                    .mapToLong(ord -> keys[ord] << ORD_BITS | ord)
+                    .toArray();
+            Arrays.parallelSort(sorted);
+        }
+
+        final class ScoreTask extends RecursiveTask<List<MergeCandidate>> {
+            private final int lo, hi;
+
+            ScoreTask(int lo, int hi) {
+                this.lo = lo;
+                this.hi = hi;
+            }
+
+            @Override
+            protected List<MergeCandidate> compute() {
+                int mid = hi - lo > LEAF_SIZE ? blockBoundary(lo + (hi - lo) / 2) : -1;
+                if (mid <= lo || mid >= hi) {
+                    List<MergeCandidate> res = new ArrayList<>();
+                    for (int s = lo, e; s < hi; s = e) {
+                        e = s + 1;
+                        while (e < hi && block(sorted[e]) == block(sorted[s])) e++;
+                        scoreBlock(s, e, res);
+                    }
+                    return res;
+                }
+                ScoreTask left = new ScoreTask(lo, mid);
+                left.fork();
+                List<MergeCandidate> res = new ScoreTask(mid, hi).compute();
+                res.addAll(left.join());
+                return res;
+            }
+
+            // First index at or after i that starts a block, so no block is split between tasks
+            private int blockBoundary(int i) {
+                while (i < hi && block(sorted[i]) == block(sorted[i - 1])) i++;
+                return i;
+            }
+        }
+
+        void scoreBlock(int s, int e, List<MergeCandidate> out) {
+            int undated = e;
+            while (undated > s && year(sorted[undated - 1]) == NO_YEAR) undated--;
+            for (int i = s; i < undated; i++) {
+                int yi = year(sorted[i]);
+                for (int j = i + 1; j < undated && year(sorted[j]) - yi <= yearWindow; j++) {
+                    consider(ord(sorted[i]), ord(sorted[j]), out);
+                }
+            }
+            if (undated == e || e - s > MAX_UNDATED_BLOCK) return;
+            for (int i = undated; i < e; i++) {
+                for (int j = s; j < e; j++) {
+                    if (j < undated || j > i) consider(ord(sorted[i]), ord(sorted[j]), out);
+                }
+            }
+        }
+
+        void consider(int a, int b, List<MergeCandidate> out) {
+            Person pa = tree.person(a);
+            Person pb = tree.person(b);
+            if (conflicting(pa.getSex(), pb.getSex())) return;
+
+            double sum = W_GIVEN * jaroWinkler(given[a], given[b]) + W_FAMILY * jaroWinkler(family[a], family[b]);
+            // Half credit for an unknown birth date, so matching names alone never reach the threshold
+            sum += W_BIRTH * (pa.getBirthDate() == null || pb.getBirthDate() == null
+                    ? 0.5 : birthAgreement(pa.getBirthDate(), pb.getBirthDate()));
+            double weights = W_GIVEN + W_FAMILY + W_BIRTH;
+            // Even full agreement on everything else cannot lift this pair to the threshold
+            if ((sum + W_OPTIONAL) / (weights + W_OPTIONAL) < threshold) return;
+
+            int[] parentsA = graph.parents(a), parentsB = graph.parents(b);
+            int[] childrenA = graph.children(a), childrenB = graph.children(b);
+            if (directlyRelated(a, b, parentsA, childrenA)) return;
+            if (present(pa.getMiddleNames()) && present(pb.getMiddleNames())) {
+                sum += W_MIDDLE * jaroWinkler(fold(pa.getMiddleNames()), fold(pb.getMiddleNames()));
+                weights += W_MIDDLE;
+            }
+            if (pa.getDeathDate() != null && pb.getDeathDate() != null) {
+                int dy = Math.abs(pa.getDeathDate().getYear() - pb.getDeathDate().getYear());
+                sum += W_DEATH * (dy == 0 ? 1 : dy == 1 ? 0.5 : 0);
+                weights += W_DEATH;
+            }
+            if (place[a] != null && place[b] != null) {
+                sum += W_PLACE * (samePlace(place[a], place[b]) ? 1 : 0);
+                weights += W_PLACE;
+            }
+            int comparable = 0, shared = 0;
+            if (parentsA.length > 0 && parentsB.length > 0) {
+                comparable += Math.min(parentsA.length, parentsB.length);
+                shared += matching(parentsA, 0, parentsA.length, parentsB, 0, parentsB.length, true);
+            }
+            if (childrenA.length > 0 && childrenB.length > 0) {
+                comparable += Math.min(childrenA.length, childrenB.length);
+                shared += matching(childrenA, 0, childrenA.length, childrenB, 0, childrenB.length, true);
+            }
+            int sa = spouseStart[a], sb = spouseStart[b];
+            int na = spouseStart[a + 1] - sa, nb = spouseStart[b + 1] - sb;
+            if (na > 0 && nb > 0) {
+                comparable += Math.min(na, nb);
+                shared += matching(spouses, sa, na, spouses, sb, nb, false);
+            }
+            if (comparable > 0) {
+                sum += W_RELATIVES * Math.min(1.0, (double) shared / comparable);
+                weights += W_RELATIVES;
+            }
+
+            double score = sum / weights;
+            if (score >= threshold) out.add(new MergeCandidate(pa, pb, score, shared));
+        }
+
+        // Edges are encoded (ordinal << 1 | adopted) when taken from the graph
+        private int matching(int[] xs, int xFrom, int xLen, int[] ys, int yFrom, int yLen, boolean edges) {
+            int count = 0;
+            for (int i = xFrom; i < xFrom + xLen; i++) {
+                int x = edges ? PersonGraph.node(xs[i]) : xs[i];
+                for (int j = yFrom; j < yFrom + yLen; j++) {
+                    int y = edges ? PersonGraph.node(ys[j]) : ys[j];
+                    if (x == y || sameKey(x, y)) {
+                        count++;
+                        break;
+                    }
+                }
+            }
+            return count;
+        }
+
+        private boolean sameKey(int x, int y) {
+            long kx = keys[x], ky = keys[y];
+            if (kx == NO_KEY || ky == NO_KEY || kx >>> YEAR_BITS != ky >>> YEAR_BITS) return false;
+            int yx = (int) (kx & NO_YEAR), yy = (int) (ky & NO_YEAR);
+            return yx == NO_YEAR || yy == NO_YEAR || Math.abs(yx - yy) <= yearWindow;
+        }
+
+        private boolean directlyRelated(int a, int b, int[] parentsA, int[] childrenA) {
+            for (int e : parentsA) if (PersonGraph.node(e) == b) return true;
+            for (int e : childrenA) if (PersonGraph.node(e) == b) return true;
+            for (int i = spouseStart[a]; i < spouseStart[a + 1]; i++) if (spouses[i] == b) return true;
+            return false;
+        }
+
+        String fold(String s) {
+            String f = folded.get(s);
+            return f != null ? f : folded.computeIfAbsent(s, DuplicateFinder::foldName);
+        }
+    }
+
+    // 1 January usually stands for a year-only date; two different full dates in one year disagree
+    private static double birthAgreement(LocalDate a, LocalDate b) {
+        if (a.equals(b)) return 1;
+        int dy = Math.abs(a.getYear() - b.getYear());
+        if (dy == 0) return a.getDayOfYear() == 1 || b.getDayOfYear() == 1 ? 0.8 : 0.4;
+        return Math.max(0, 0.6 - 0.15 * dy);
+    }
+
+    private static boolean conflicting(Sex a, Sex b) {
+        return (a == Sex.MALE && b == Sex.FEMALE) || (a == Sex.FEMALE && b == Sex.MALE);
+    }
+
+    private static boolean present(String s) {
+        return s != null && !s.isBlank();
+    }
+
+    // "London" matches "London, England"
+    private static boolean samePlace(String a, String b) {
+        if (a.length() > b.length()) return samePlace(b, a);
+        return b.startsWith(a) && (a.length() == b.length() || b.charAt(a.length()) == ' ');
+    }
+
+    private static int block(long sortKey) {
+        return (int) (sortKey >>> (ORD_BITS + YEAR_BITS));
+    }
+
+    private static int year(long sortKey) {
+        return (int) (sortKey >>> ORD_BITS) & NO_YEAR;
+    }
+
+    private static int ord(long sortKey) {
+        return (int) sortKey & ((1 << ORD_BITS) - 1);
+    }
+
+    private static int year(LocalDate date) {
+        return date == null ? NO_YEAR : Math.max(0, Math.min(NO_YEAR - 1, date.getYear()));
+    }
+
+    // Soundex "S530" as a number below 26 * 7^3, so two fit in 28 bits
+    private static int code(String soundex) {
+        return (soundex.charAt(0) - 'A') * 343 + (soundex.charAt(1) - '0') * 49
+                + (soundex.charAt(2) - '0') * 7 + (soundex.charAt(3) - '0');
+    }
+
+    // Lower case without diacritics or punctuation, single spaces
+    static String foldName(String s) {
+        if (s == null) return "";
+        String d = Normalizer.normalize(s, Normalizer.Form.NFD).toLowerCase(Locale.ROOT);
+        StringBuilder sb = new StringBuilder(d.length());
+        for (int i = 0; i < d.length(); i++) {
+            char c = d.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(c);
+            } else if (Character.getType(c) != Character.NON_SPACING_MARK && sb.length() > 0 && sb.charAt(sb.length() - 1) != ' ') {
+                sb.append(' ');
+            }
+        }
+        int end = sb.length();
+        while (end > 0 && sb.charAt(end - 1) == ' ') end--;
+        return sb.substring(0, end);
+    }
+
+    /** Jaro-Winkler similarity in 0..1; only the first 64 characters of each string count. */
+    static double jaroWinkler(String s, String t) {
+        if (s.equals(t)) return s.isEmpty() ? 0 : 1;
+        int n = Math.min(s.length(), 64), m = Math.min(t.length(), 64);
+        if (n == 0 || m == 0) return 0;
+        int range = Math.max(0, Math.max(n, m) / 2 - 1);
+        long matchedS = 0, matchedT = 0;
+        int matches = 0;
+        for (int i = 0; i < n; i++) {
+            int from = Math.max(0, i - range), to = Math.min(m, i + range + 1);
+            for (int j = from; j < to; j++) {
+                if ((matchedT & 1L << j) == 0 && s.charAt(i) == t.charAt(j)) {
+                    matchedS |= 1L << i;
+                    matchedT |= 1L << j;
+                    matches++;
+                    break;
+                }
+            }
+        }
+        if (matches == 0) return 0;
+        int transpositions = 0;
+        for (int i = 0, j = 0; i < n; i++) {
+            if ((matchedS & 1L << i) == 0) continue;
+            while ((matchedT & 1L << j) == 0) j++;
+            if (s.charAt(i) != t.charAt(j)) transpositions++;
+            j++;
+        }
+        double jaro = ((double) matches / n + (double) matches / m + (matches - transpositions / 2.0) / matches) / 3;
+        int prefix = 0;
+        while (prefix < Math.min(4, Math.min(n, m)) && s.charAt(prefix) == t.charAt(prefix)) prefix++;
+        return jaro + prefix * 0.1 * (1 - jaro);
+    }
+}
@@ -1,94 +1,876 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.LocalDate;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+/**
+ * People, unions and parent/child links in memory. A tree is single-threaded
+ * while it is being built; once published by {@link ConcurrentFamilyTree} it
+ * is read-only and safe to query from any number of threads.
+ */
 public class FamilyTree {
-    private final Map<UUID, Person> persons = new HashMap<>();
+    private static final VarHandle PERSON_SLOT = MethodHandles.arrayElementVarHandle(Person[].class);
+    private static final VarHandle KINSHIP;
+
+    static {
+        try {
+            KINSHIP = MethodHandles.lookup().findVarHandle(FamilyTree.class, "kinship", Kinship.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static final Metrics.Timer PARENTS = Metrics.timer("tree.parentsOf");
+    private static final Metrics.Timer CHILDREN = Metrics.timer("tree.childrenOf");
+    private static final Metrics.Timer SIBLINGS = Metrics.timer("tree.siblingsOf");
+    private static final Metrics.Timer GRANDCHILDREN = Metrics.timer("tree.grandChildrenOf");
+    private static final Metrics.Timer RELATIONSHIP = Metrics.timer("tree.relationshipBetween");
+    private static final Metrics.Timer ALIVE = Metrics.timer("tree.aliveBetween");
+    private static final Metrics.Timer UNIONS_ACTIVE = Metrics.timer("tree.unionsActiveBetween");
+    private static final Metrics.Timer CHECK_LINK = Metrics.timer("tree.checkLink");
+    private static final Metrics.Cache DECODED = Metrics.cache("tree.decodedPersons");
+
+    // Every person gets a dense ordinal; the graph stores edges between ordinals.
+    private final UuidIndex ordinals;
+    private Person[] people = new Person[16];
+    private int personCount;
+    private final PersonGraph graph;
     private final Map<UUID, UnionRecord> unions = new HashMap<>();
-    private final List<ParentChildLink> parentChildLinks = new ArrayList<>();
+
+    // Set when opened from a snapshot: people and unions are decoded on first use
+    private IntFunction<Person> personSource;
+    private volatile Supplier<Collection<UnionRecord>> unionSource;
+
+    // Unions by partner ordinal, each array sorted by start date; built on first
+    // use, then kept current by addUnion. Arrays are replaced, never modified.
+    private volatile UnionRecord[][] unionsByPartner;
+    private int unresolvedPartners;
+
+    // Timeline indexes over lifespans and union spans, in epoch days, built on
+    // first use. Later changes go to a short overlay that queries scan; past
+    // IntervalIndex.SCAN_LIMIT the index is dropped and the next query rebuilds it.
+    // Overlays are replaced, never modified, so copies can share them.
+    private volatile IntervalIndex lifespans;                  // payload: person ordinal
+    private int[] lifespanOverlay = PersonGraph.NONE;          // sorted ordinals changed since the build
+    private volatile UnionSpans unionSpans;
+    private Map<UUID, UnionRecord> unionOverlay = Map.of();    // changed since the build; removed ones map to null
+
+    private record UnionSpans(IntervalIndex index, UnionRecord[] unions) {}
+
+    // Ancestors-first order of everyone, built by the first checked link and then
+    // kept current by every link; null until then, or while the links have a cycle
+    private volatile TopologicalOrder order;
+    private int cyclicVersion = -1;         // linkVersion at which building the order found a cycle
+
+    // Generation of everyone, built on first use, then kept current by every change
+    // to people and links; dropped when it cannot be (a cycle) and rebuilt on the next query
+    private volatile GenerationIndex generations;
+
+    // Derived indexes, rebuilt lazily after links change
+    private int linkVersion;
+    private volatile Kinship kinship;
+
+    private record Kinship(KinshipIndex index, int linkVersion) {}
+
+    private boolean readOnly;
+    private long version;
+
+    public FamilyTree() {
+        this(false);
+    }
+
+    /**
+     * @param compactStorage keep parent/child edges in CSR int arrays instead of
+     *                       per-person lists; best for large, mostly bulk-loaded trees
+     */
+    public FamilyTree(boolean compactStorage) {
+        this.ordinals = new UuidIndex();
+        this.graph = compactStorage ? new CsrGraph() : new AdjacencyGraph();
+    }
+
+    /** Wraps already-built indexes; used by {@link TreeSnapshot}. */
+    FamilyTree(UuidIndex ordinals, int personCount, PersonGraph graph,
+               IntFunction<Person> personSource, Supplier<Collection<UnionRecord>> unionSource) {
+        this.ordinals = ordinals;
+        this.personCount = personCount;
+        this.people = new Person[Math.max(16, personCount)];
+        this.graph = graph;
+        this.personSource = personSource;
+        this.unionSource = unionSource;
+    }
+
+    /**
+     * A writable copy for the next version. Arrays are copied, but Person and
+     * UnionRecord objects are shared, so changes must replace them rather than
+     * mutate them in place.
+     */
+    FamilyTree copy() {
+        FamilyTree c = new FamilyTree(ordinals.copy(), personCount, graph.copy(), personSource, unionSource);
+        if (personSource == null) {
+            System.arraycopy(people, 0, c.people, 0, personCount);
+        } else {
+            for (int i = 0; i < personCount; i++) c.people[i] = (Person) PERSON_SLOT.getAcquire(people, i);
+        }
+        if (c.unionSource == null) c.unions.putAll(unions);
+        UnionRecord[][] index = unionsByPartner;
+        if (index != null) {
+            c.unionsByPartner = index.clone();
+            c.unresolvedPartners = unresolvedPartners;
+        }
+        c.lifespans = lifespans;
+        c.lifespanOverlay = lifespanOverlay;
+        c.unionSpans = unionSpans;
+        c.unionOverlay = unionOverlay;
+        TopologicalOrder o = order;
+        if (o != null) c.order = o.copy();
+        GenerationIndex g = generations;
+        if (g != null) c.generations = g.copy();
+        c.cyclicVersion = cyclicVersion;
+        c.linkVersion = linkVersion;
+        c.version = version;
+        return c;
+    }
+
+    /**
+     * Makes the tree immutable as the given version. A few buffered links may
+     * stay unpacked, so publishing a small change does not rebuild the graph.
+     */
+    void freeze(long version) {
+        graph.seal();
+        this.version = version;
+        this.readOnly = true;
+    }
+
+    /** True for trees published by {@link ConcurrentFamilyTree}; they reject changes. */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /** Number of updates published before this tree; 0 for one that was never shared. */
+    public long version() {
+        return version;
+    }
+
+    private void checkWritable() {
+        if (readOnly) throw new IllegalStateException("Read-only snapshot; change it through ConcurrentFamilyTree.update");
+    }
+
+    /** Pre-sizes person storage before a bulk load. */
+    public void ensureCapacity(int expectedPersons) {
+        checkWritable();
+        ordinals.ensureCapacity(expectedPersons);
+        if (expectedPersons > people.length) people = Arrays.copyOf(people, expectedPersons);
+    }
 
     // People
     public Person addPerson(Person person) {
         Objects.requireNonNull(person, "person");
-        persons.put(person.getId(), person);
+        checkWritable();
+        int ord = ordinals.get(person.getId());
+        if (ord < 0) {
+            ord = personCount++;
+            if (ord == people.length) people = Arrays.copyOf(people, ord + (ord >> 1));
+            ordinals.put(person.getId(), ord);
+            if (order != null) order.addNode(ord);
+            if (generations != null) generations.addNode(ord);
+            // A union indexed earlier may name this person; rebuild rather than search for it
+            if (unresolvedPartners > 0) unionsByPartner = null;
+        }
+        Person previous = people[ord];
+        if (lifespans != null && (previous == null || span(previous) != span(person))) lifespanChanged(ord);
+        people[ord] = person;
         return person;
     }
 
     public Optional<Person> findPerson(UUID id) {
-        return Optional.ofNullable(persons.get(id));
+        int ord = ordinals.get(id);
+        return ord < 0 ? Optional.empty() : Optional.of(person(ord));
     }
 
     public Collection<Person> listPeople() {
-        return Collections.unmodifiableCollection(persons.values());
+        if (personSource == null) return Collections.unmodifiableList(Arrays.asList(people).subList(0, personCount));
+        return new AbstractList<>() {
+            @Override
+            public Person get(int index) {
+                Objects.checkIndex(index, personCount);
+                return person(index);
+            }
+
+            @Override
+            public int size() {
+                return personCount;
+            }
+        };
+    }
+
+    int personCount() {
+        return personCount;
+    }
+
+    /** Dense ordinal of the person with this id, or -1. */
+    int ordinalOf(UUID id) {
+        return ordinals.get(id);
+    }
+
+    Person person(int ord) {
+        Person p = (Person) PERSON_SLOT.getAcquire(people, ord);
+        if (personSource == null) return p;
+        if (p != null) {
+            DECODED.hit();
+            return p;
+        }
+        DECODED.miss();
+        // Concurrent readers may decode the same person; the first one published wins
+        p = personSource.apply(ord);
+        Person won = (Person) PERSON_SLOT.compareAndExchangeRelease(people, ord, null, p);
+        return won != null ? won : p;
+    }
+
+    PersonGraph graph() {
+        return graph;
     }
 
     // Unions
     public UnionRecord addUnion(UnionRecord union) {
         Objects.requireNonNull(union, "union");
-        unions.put(union.getId(), union);
+        checkWritable();
+        loadUnions();
+        UnionRecord previous = unions.put(union.getId(), union);
+        UnionRecord[][] index = unionsByPartner;
+        if (index != null) {
+            if (previous != null) unindex(index, previous);
+            unionsByPartner = index(index, union);
+        }
+        if (unionSpans != null) unionChanged(union.getId(), union);
         return union;
     }
 
+    public Optional<UnionRecord> removeUnion(UUID id) {
+        checkWritable();
+        loadUnions();
+        UnionRecord removed = unions.remove(id);
+        UnionRecord[][] index = unionsByPartner;
+        if (removed != null && index != null) unindex(index, removed);
+        if (removed != null && unionSpans != null) unionChanged(id, null);
+        return Optional.ofNullable(removed);
+    }
+
     public Optional<UnionRecord> findUnion(UUID id) {
+        loadUnions();
         return Optional.ofNullable(unions.get(id));
     }
 
     public Collection<UnionRecord> listUnions() {
+        loadUnions();
         return Collections.unmodifiableCollection(unions.values());
     }
 
+    /** The person's unions, earliest start first (unknown start last). */
+    public List<UnionRecord> unionsOf(UUID personId) {
+        int ord = ordinals.get(personId);
+        UnionRecord[] us = ord < 0 ? null : unionsAt(partnerIndex(), ord);
+        return us == null ? new ArrayList<>() : new ArrayList<>(Arrays.asList(us));
+    }
+
+    /**
+     * The person's partners: all of them, in union order, when atDate is null;
+     * otherwise those in a union {@link UnionRecord#isActiveOn active} on that
+     * date with both partners alive.
+     */
+    public List<Person> partnersOf(UUID personId, LocalDate atDate) {
+        List<Person> res = new ArrayList<>();
+        int ord = ordinals.get(personId);
+        UnionRecord[] us = ord < 0 ? null : unionsAt(partnerIndex(), ord);
+        if (us == null || (atDate != null && diedBefore(person(ord), atDate))) return res;
+        for (UnionRecord u : us) {
+            if (atDate != null && !u.isActiveOn(atDate)) continue;
+            UUID other = personId.equals(u.getPartnerA()) ? u.getPartnerB() : u.getPartnerA();
+            int o = other == null ? -1 : ordinals.get(other);
+            if (o < 0 || o == ord) continue;
+            Person p = person(o);
+            if (atDate != null && diedBefore(p, atDate)) continue;
+            if (!res.contains(p)) res.add(p);
+        }
+        return res;
+    }
+
+    /**
+     * Children of both partners of the union; for a union with one known
+     * partner, that partner's children. Walks the children of the partner with
+     * fewer of them and keeps those whose parents include the other.
+     */
+    public List<Person> childrenOfUnion(UUID unionId) {
+        List<Person> res = new ArrayList<>();
+        UnionRecord u = findUnion(unionId).orElse(null);
+        if (u == null) return res;
+        int a = u.getPartnerA() == null ? -1 : ordinals.get(u.getPartnerA());
+        int b = u.getPartnerB() == null ? -1 : ordinals.get(u.getPartnerB());
+        if (a < 0 && b < 0) return res;
+        int[] fewer, other;
+        int partner = -1;
+        if (a < 0 || b < 0) {
+            fewer = graph.children(Math.max(a, b));
+        } else {
+            fewer = graph.children(a);
+            partner = b;
+            if ((other = graph.children(b)).length < fewer.length) {
+                fewer = other;
+                partner = a;
+            }
+        }
+        BitSet seen = new BitSet(); // a child linked twice (born and adopted) is listed once
+        for (int e : fewer) {
+            int child = PersonGraph.node(e);
+            if (seen.get(child)) continue;
+            seen.set(child);
+            if (partner < 0) {
+                res.add(person(child));
+                continue;
+            }
+            for (int up : graph.parents(child)) {
+                if (PersonGraph.node(up) == partner) {
+                    res.add(person(child));
+                    break;
+                }
+            }
+        }
+        return res;
+    }
+
+    /** The union between two of the child's parents, the earliest if there are several. */
+    public Optional<UnionRecord> parentsUnionOf(UUID childId) {
+        int child = ordinals.get(childId);
+        if (child < 0) return Optional.empty();
+        int[] parents = graph.parents(child);
+        UnionRecord[][] index = partnerIndex();
+        UnionRecord earliest = null;
+        for (int up : parents) {
+            int node = PersonGraph.node(up);
+            UnionRecord[] us = unionsAt(index, node);
+            if (us == null) continue;
+            for (UnionRecord u : us) {
+                if (earliest != null && !startsAfter(earliest, u)) break; // the rest start no earlier
+                if (withOtherParent(u, node, parents)) {
+                    earliest = u;
+                    break;
+                }
+            }
+        }
+        return Optional.ofNullable(earliest);
+    }
+
+    // A parent linked twice (born and adopted) is still one parent
+    private boolean withOtherParent(UnionRecord u, int node, int[] parents) {
+        for (int other : parents) {
+            int o = PersonGraph.node(other);
+            if (o != node && isPartner(u, o)) return true;
+        }
+        return false;
+    }
+
+    private boolean isPartner(UnionRecord u, int ord) {
+        return (u.getPartnerA() != null && ordinals.get(u.getPartnerA()) == ord)
+                || (u.getPartnerB() != null && ordinals.get(u.getPartnerB()) == ord);
+    }
+
+    private static boolean diedBefore(Person p, LocalDate date) {
+        return p.getDeathDate() != null && p.getDeathDate().isBefore(date);
+    }
+
+    private static UnionRecord[] unionsAt(UnionRecord[][] index, int ord) {
+        return ord < index.length ? index[ord] : null;
+    }
+
+    private UnionRecord[][] partnerIndex() {
+        UnionRecord[][] index = unionsByPartner;
+        if (index != null) return index;
+        loadUnions();
+        synchronized (unions) {
+            index = unionsByPartner;
+            if (index == null) {
+                index = new UnionRecord[personCount][];
+                unresolvedPartners = 0;
+                for (UnionRecord u : unions.values()) index = index(index, u);
+                unionsByPartner = index;
+            }
+        }
+        return index;
+    }
+
+    // Adds u under each known partner, growing index if people were added since; returns the index
+    private UnionRecord[][] index(UnionRecord[][] index, UnionRecord u) {
+        if (index.length < personCount) index = Arrays.copyOf(index, Math.max(personCount, index.length + (index.length >> 1)));
+        int a = partnerOrdinal(u.getPartnerA());
+        int b = partnerOrdinal(u.getPartnerB());
+        if (a >= 0) index[a] = insertByStart(index[a], u);
+        if (b >= 0 && b != a) index[b] = insertByStart(index[b], u);
+        return index;
+    }
+
+    private int partnerOrdinal(UUID id) {
+        if (id == null) return -1;
+        int ord = ordinals.get(id);
+        if (ord < 0) unresolvedPartners++;
+        return ord;
+    }
+
+    private void unindex(UnionRecord[][] index, UnionRecord u) {
+        for (UUID partner : new UUID[]{u.getPartnerA(), u.getPartnerB()}) {
+            int ord = partner == null ? -1 : ordinals.get(partner);
+            UnionRecord[] us = ord < 0 ? null : unionsAt(index, ord);
+            if (us == null) continue;
+            UnionRecord[] kept = Arrays.stream(us).filter(x -> !x.getId().equals(u.getId())).toArray(UnionRecord[]::new);
+            index[ord] = kept.length == 0 ? null : kept;
+        }
+    }
+
+    private static UnionRecord[] insertByStart(UnionRecord[] us, UnionRecord u) {
+        if (us == null) return new UnionRecord[]{u};
+        int at = us.length;
+        while (at > 0 && startsAfter(us[at - 1], u)) at--;
+        UnionRecord[] res = new UnionRecord[us.length + 1];
+        System.arraycopy(us, 0, res, 0, at);
+        res[at] = u;
+        System.arraycopy(us, at, res, at + 1, us.length - at);
+        return res;
+    }
+
+    // Unknown start dates sort last
+    private static boolean startsAfter(UnionRecord x, UnionRecord y) {
+        if (y.getStartDate() == null) return false;
+        return x.getStartDate() == null || x.getStartDate().isAfter(y.getStartDate());
+    }
+
+    private void loadUnions() {
+        if (unionSource == null) return;
+        synchronized (unions) {
+            Supplier<Collection<UnionRecord>> source = unionSource;
+            if (source == null) return;
+            for (UnionRecord u : source.get()) {
+                unions.put(u.getId(), u);
+            }
+            unionSource = null;
+        }
+    }
+
+    // Timeline
+    /** People {@link Person#isAliveOn alive} on date, in no particular order. */
+    public List<Person> aliveOn(LocalDate date) {
+        return aliveBetween(date, date);
+    }
+
+    /**
+     * People alive on at least one day from {@code from} to {@code to},
+     * inclusive, in no particular order. People with no dates, or a death
+     * before their birth, are never included.
+     */
+    public List<Person> aliveBetween(LocalDate from, LocalDate to) {
+        int lo = day(from), hi = day(to);
+        long t = Metrics.start();
+        List<Person> res = new ArrayList<>();
+        IntervalIndex index = lifespanIndex();
+        int[] overlay = lifespanOverlay;
+        index.overlapping(lo, hi, ord -> {
+            if (Arrays.binarySearch(overlay, ord) < 0) res.add(person(ord));
+        });
+        for (int ord : overlay) {
+            Person p = person(ord);
+            if (overlaps(span(p), lo, hi)) res.add(p);
+        }
+        ALIVE.stop(t, res.size());
+        return res;
+    }
+
+    /** Unions {@link UnionRecord#isActiveOn active} on date, in no particular order. */
+    public List<UnionRecord> unionsActiveOn(LocalDate date) {
+        return unionsActiveBetween(date, date);
+    }
+
+    /**
+     * Unions active on at least one day from {@code from} to {@code to},
+     * inclusive, in no particular order. A union with no start date counts
+     * as begun forever ago, one with no end date as still going.
+     */
+    public List<UnionRecord> unionsActiveBetween(LocalDate from, LocalDate to) {
+        int lo = day(from), hi = day(to);
+        long t = Metrics.start();
+        List<UnionRecord> res = new ArrayList<>();
+        UnionSpans spans = unionSpanIndex();
+        Map<UUID, UnionRecord> overlay = unionOverlay;
+        spans.index().overlapping(lo, hi, i -> {
+            UnionRecord u = spans.unions()[i];
+            if (!overlay.containsKey(u.getId())) res.add(u);
+        });
+        for (UnionRecord u : overlay.values()) {
+            if (u != null && overlaps(span(u), lo, hi)) res.add(u);
+        }
+        UNIONS_ACTIVE.stop(t, res.size());
+        return res;
+    }
+
+    private IntervalIndex lifespanIndex() {
+        IntervalIndex index = lifespans;
+        if (index != null) return index;
+        synchronized (ordinals) {
+            index = lifespans;
+            if (index == null) {
+                int[] start = new int[personCount], end = new int[personCount], ords = new int[personCount];
+                int n = 0;
+                for (int ord = 0; ord < personCount; ord++) {
+                    long s = span(person(ord));
+                    if (s == NO_SPAN) continue;
+                    start[n] = (int) (s >> 32);
+                    end[n] = (int) s;
+                    ords[n++] = ord;
+                }
+                lifespans = index = new IntervalIndex(start, end, ords, n);
+            }
+        }
+        return index;
+    }
+
+    private UnionSpans unionSpanIndex() {
+        UnionSpans spans = unionSpans;
+        if (spans != null) return spans;
+        loadUnions();
+        synchronized (ordinals) {
+            spans = unionSpans;
+            if (spans == null) {
+                UnionRecord[] all = unions.values().toArray(new UnionRecord[0]);
+                int[] start = new int[all.length], end = new int[all.length], pos = new int[all.length];
+                int n = 0;
+                for (int i = 0; i < all.length; i++) {
+                    long s = span(all[i]);
+                    if (s == NO_SPAN) continue;
+                    start[n] = (int) (s >> 32);
+                    end[n] = (int) s;
+                    pos[n++] = i;
+                }
+                unionSpans = spans = new UnionSpans(new IntervalIndex(start, end, pos, n), all);
+            }
+        }
+        return spans;
+    }
+
+    private void lifespanChanged(int ord) {
+        int[] overlay = lifespanOverlay;
+        int at = Arrays.binarySearch(overlay, ord);
+        if (at >= 0) return;
+        if (overlay.length == IntervalIndex.SCAN_LIMIT) {
+            lifespans = null;
+            lifespanOverlay = PersonGraph.NONE;
+            return;
+        }
+        at = -at - 1;
+        int[] next = new int[overlay.length + 1];
+        System.arraycopy(overlay, 0, next, 0, at);
+        next[at] = ord;
+        System.arraycopy(overlay, at, next, at + 1, overlay.length - at);
+        lifespanOverlay = next;
+    }
+
+    private void unionChanged(UUID id, UnionRecord union) {
+        if (unionOverlay.size() == IntervalIndex.SCAN_LIMIT && !unionOverlay.containsKey(id)) {
+            unionSpans = null;
+            unionOverlay = Map.of();
+            return;
+        }
+        Map<UUID, UnionRecord> next = new HashMap<>(unionOverlay);
+        next.put(id, union);
+        unionOverlay = next;
+    }
+
+    // Spans are packed start << 32 | end (low 32 bits), both inclusive epoch days;
+    // NO_SPAN is the empty span [1, 0], which no real span can pack to
+    private static final long NO_SPAN = 1L << 32;
+
+    private static long span(Person p) {
+        LocalDate first = p.lifeStart();
+        if (first == null) return NO_SPAN;
+        return span(day(first), day(p.lifeEnd()));
+    }
+
+    private static long span(UnionRecord u) {
+        int start = u.getStartDate() == null ? IntervalIndex.OPEN_START : day(u.getStartDate());
+        int end = u.getEndDate() == null ? IntervalIndex.OPEN_END : day(u.getEndDate()) - 1; // ends the day before endDate
+        return span(start, end);
+    }
+
+    private static long span(int start, int end) {
+        return end < start ? NO_SPAN : (long) start << 32 | (end & 0xFFFFFFFFL);
+    }
+
+    private static boolean overlaps(long span, int lo, int hi) {
+        return span != NO_SPAN && (int) (span >> 32) <= hi && (int) span >= lo;
+    }
+
+    // Real dates stay clear of the open-end sentinels
+    private static int day(LocalDate date) {
+        return (int) Math.max(IntervalIndex.OPEN_START + 1L, Math.min(IntervalIndex.OPEN_END - 1L, date.toEpochDay()));
+    }
+
     // Parent-child
+    /**
+     * Links parent to child after {@link #checkLink checking} that the link
+     * keeps the tree consistent.
+     */
     public ParentChildLink linkParentChild(UUID parentId, UUID childId, boolean adopted) {
-        if (!persons.containsKey(parentId)) throw new IllegalArgumentException("Unknown parentId: " + parentId);
-        if (!persons.containsKey(childId)) throw new IllegalArgumentException("Unknown childId: " + childId);
-        ParentChildLink link = new ParentChildLink(parentId, childId, adopted);
-        parentChildLinks.add(link);
-        return link;
+        checkWritable();
+        checkLink(parentId, childId, adopted);
+        tryLinkParentChild(parentId, childId, adopted);
+        return new ParentChildLink(parentId, childId, adopted);
+    }
+
+    /**
+     * Throws IllegalArgumentException if linking parent to child would make
+     * someone their own ancestor, give the child a third biological parent, or
+     * name a parent born after the child. The ancestor check looks only at
+     * the people between the two in a maintained topological order, so it
+     * does not walk the whole lineage. Changes nothing; safe on published trees.
+     */
+    public void checkLink(UUID parentId, UUID childId, boolean adopted) {
+        int parent = ordinals.get(parentId);
+        int child = ordinals.get(childId);
+        if (parent < 0) throw new IllegalArgumentException("Unknown parentId: " + parentId);
+        if (child < 0) throw new IllegalArgumentException("Unknown childId: " + childId);
+        Person p = person(parent), c = person(child);
+        if (parent == child) throw new IllegalArgumentException(p + " cannot be their own parent");
+        if (p.getBirthDate() != null && c.getBirthDate() != null && p.getBirthDate().isAfter(c.getBirthDate())) {
+            throw new IllegalArgumentException(p + " was born after " + c);
+        }
+        if (!adopted && biologicalParents(child, parent) >= 2) {
+            throw new IllegalArgumentException(c + " already has two biological parents");
+        }
+        long t = Metrics.start();
+        TopologicalOrder o = topologicalOrder();
+        boolean cycle = o != null ? o.reaches(graph, child, parent) : reachesByScan(child, parent);
+        CHECK_LINK.stop(t);
+        if (cycle) throw new IllegalArgumentException(c + " is already an ancestor of " + p);
+    }
+
+    /** Bulk-load variant of linkParentChild: skips links to unknown people instead of throwing, and checks nothing. */
+    public boolean tryLinkParentChild(UUID parentId, UUID childId, boolean adopted) {
+        int parent = ordinals.get(parentId);
+        int child = ordinals.get(childId);
+        checkWritable();
+        if (parent < 0 || child < 0) return false;
+        TopologicalOrder o = order;
+        if (o != null && !o.addEdge(graph, parent, child)) order = null;
+        graph.addEdge(parent, child, adopted);
+        GenerationIndex g = generations;
+        if (g != null && !g.edgeAdded(graph, parent, child)) generations = null;
+        linkVersion++;
+        return true;
+    }
+
+    // Distinct biological parents of child other than except
+    private int biologicalParents(int child, int except) {
+        int[] parents = graph.parents(child);
+        int n = 0;
+        for (int i = 0; i < parents.length; i++) {
+            int up = PersonGraph.node(parents[i]);
+            if (PersonGraph.adopted(parents[i]) || up == except) continue;
+            boolean repeated = false;
+            for (int j = 0; j < i && !repeated; j++) {
+                repeated = !PersonGraph.adopted(parents[j]) && PersonGraph.node(parents[j]) == up;
+            }
+            if (!repeated) n++;
+        }
+        return n;
+    }
+
+    private TopologicalOrder topologicalOrder() {
+        TopologicalOrder o = order;
+        if (o != null || cyclicVersion == linkVersion) return o;
+        synchronized (ordinals) {
+            o = order;
+            if (o == null && cyclicVersion != linkVersion) {
+                o = TopologicalOrder.of(graph, personCount);
+                if (o == null) cyclicVersion = linkVersion;
+                order = o;
+            }
+        }
+        return o;
+    }
+
+    // Without an order (the links already hold a cycle) fall back to a full walk down from `from`
+    private boolean reachesByScan(int from, int to) {
+        BitSet seen = new BitSet();
+        int[] stack = new int[16];
+        int n = 0;
+        stack[n++] = from;
+        seen.set(from);
+        while (n > 0) {
+            int node = stack[--n];
+            if (node == to) return true;
+            for (int e : graph.children(node)) {
+                int down = PersonGraph.node(e);
+                if (seen.get(down)) continue;
+                seen.set(down);
+                if (n == stack.length) stack = Arrays.copyOf(stack, n << 1);
+                stack[n++] = down;
+            }
+        }
+        return false;
+    }
+
+    /** Removes every link from parent to child; returns how many there were. */
+    public int unlinkParentChild(UUID parentId, UUID childId) {
+        checkWritable();
+        int parent = ordinals.get(parentId);
+        int child = ordinals.get(childId);
+        if (parent < 0 || child < 0) return 0;
+        int removed = graph.removeEdges(parent, child);
+        if (removed == 0) return 0;
+        GenerationIndex g = generations;
+        if (g != null && !g.edgesRemoved(graph, parent, child)) generations = null;
+        linkVersion++;
+        return removed;
+    }
+
+    public int linkCount() {
+        return graph.edgeCount();
+    }
+
+    /** Merges buffered links into the compact layout; call after a bulk load. Published trees are left as sealed. */
+    public void pack() {
+        if (!readOnly) graph.pack();
     }
 
     public List<Person> getParentsOf(UUID childId) {
-        return parentChildLinks.stream()
-                .filter(l -> l.getChildId().equals(childId))
-                .map(ParentChildLink::getParentId)
-                .map(persons::get)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
+        long t = Metrics.start();
+        int child = ordinals.get(childId);
+        List<Person> res = child < 0 ? new ArrayList<>() : toPersons(graph.parents(child));
+        PARENTS.stop(t, res.size());
+        return res;
     }
 
     public List<Person> getChildrenOf(UUID parentId) {
-        return parentChildLinks.stream()
-                .filter(l -> l.getParentId().equals(parentId))
-                .map(ParentChildLink::getChildId)
-                .map(persons::get)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
+        long t = Metrics.start();
+        int parent = ordinals.get(parentId);
+        List<Person> res = parent < 0 ? new ArrayList<>() : toPersons(graph.children(parent));
+        CHILDREN.stop(t, res.size());
+        return res;
     }
 
     // Convenience queries
     public List<Person> getSiblingsOf(UUID personId) {
-        Set<UUID> parentIds = parentChildLinks.stream()
-                .filter(l -> l.getChildId().equals(personId))
-                .map(ParentChildLink::getParentId)
-                .collect(Collectors.toSet());
-
-        Set<UUID> siblingIds = parentChildLinks.stream()
-                .filter(l -> parentIds.contains(l.getParentId()))
-                .map(ParentChildLink::getChildId)
-                .filter(id -> !id.equals(personId))
-                .collect(Collectors.toSet());
+        long t = Metrics.start();
+        int self = ordinals.get(personId);
+        List<Person> res = new ArrayList<>();
+        if (self < 0) return res;
 
-        return siblingIds.stream()
-                .map(persons::get)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
+        Set<Integer> seen = new HashSet<>();
+        seen.add(self);
+        for (int up : graph.parents(self)) {
+            for (int down : graph.children(PersonGraph.node(up))) {
+                int sibling = PersonGraph.node(down);
+                if (seen.add(sibling)) res.add(person(sibling));
+            }
+        }
+        SIBLINGS.stop(t, res.size());
+        return res;
     }
 
     // Grandchildren
     public List<Person> getGrandChildrenOf(UUID grandParentId) {
+        long t = Metrics.start();
         List<Person> grandchildren = new ArrayList<>();
         List<Person> children = getChildrenOf(grandParentId);
         for (Person child : children) {
             grandchildren.addAll(getChildrenOf(child.getId()));
         }
+        GRANDCHILDREN.stop(t, grandchildren.size());
         return grandchildren;
     }
+
+    // Generations
+    /**
+     * The person's generation counted from the roots of the tree: 0 for
+     * someone with no recorded parents, otherwise one more than their
+     * latest-generation parent. -1 for an unknown id, or for someone on or
+     * below a parent/child cycle. After the first call, a lookup is two array
+     * reads, cheap enough for every repaint.
+     */
+    public int generationOf(UUID personId) {
+        int ord = ordinals.get(personId);
+        return ord < 0 ? GenerationIndex.NONE : generationIndex().generationOf(ord);
+    }
+
+    /** Number of generations; the latest is one less. */
+    public int generationCount() {
+        return generationIndex().count();
+    }
+
+    /** People in the given {@link #generationOf generation}, in no particular order. */
+    public Stream<Person> peopleInGeneration(int generation) {
+        IntStream.Builder ords = IntStream.builder();
+        generationIndex().forEach(generation, ords);
+        return ords.build().mapToObj(this::person);
+    }
+
+    private GenerationIndex generationIndex() {
+        GenerationIndex g = generations;
+        if (g != null) return g;
+        synchronized (ordinals) {
+            g = generations;
+            if (g == null) generations = g = GenerationIndex.of(graph, personCount);
+        }
+        return g;
+    }
+
+    // Lineage traversals: lazy, breadth-first, one entry per person with its generation distance
+    public Stream<LineageEntry> ancestorsOf(UUID personId, int maxDepth) {
+        return lineage(personId, graph::parents, maxDepth);
+    }
+
+    public Stream<LineageEntry> descendantsOf(UUID personId, int maxDepth) {
+        return lineage(personId, graph::children, maxDepth);
+    }
+
+    private Stream<LineageEntry> lineage(UUID personId, IntFunction<int[]> step, int maxDepth) {
+        int start = ordinals.get(personId);
+        if (start < 0) return Stream.empty();
+        Iterator<LineageEntry> it = new LineageIterator(start, step, this::person, maxDepth);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    // Relationships
+    /**
+     * Names how {@code a} is related to {@code b} through their closest common
+     * ancestors, e.g. "2nd cousin once removed" or "adoptive great-aunt".
+     * Empty when they share no ancestor within {@link KinshipIndex#MAX_GENERATIONS}.
+     */
+    public Optional<Relationship> relationshipBetween(UUID a, UUID b) {
+        int oa = ordinals.get(a);
+        int ob = ordinals.get(b);
+        if (oa < 0 || ob < 0) return Optional.empty();
+        long t = Metrics.start();
+        int[] c = kinshipIndex().closest(oa, ob);
+        RELATIONSHIP.stop(t);
+        if (c == null) return Optional.empty();
+        return Optional.of(new Relationship(person(oa), person(ob), c[0], c[1], c[4] == 1, c[3] == 1));
+    }
+
+    private KinshipIndex kinshipIndex() {
+        Kinship k = kinship;
+        if (k != null && k.linkVersion() == linkVersion) return k.index();
+        // Concurrent readers may build it at once; the first one installed is the one everyone uses
+        Kinship built = new Kinship(new KinshipIndex(graph, personCount), linkVersion);
+        Kinship won = (Kinship) KINSHIP.compareAndExchange(this, k, built);
+        return won == k || won.linkVersion() != linkVersion ? built.index() : won.index();
+    }
+
+    private List<Person> toPersons(int[] edges) {
+        List<Person> res = new ArrayList<>(edges.length);
+        for (int e : edges) {
+            res.add(person(PersonGraph.node(e)));
+        }
+        return res;
+    }
 }
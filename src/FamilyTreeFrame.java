@@ -6,21 +6,169 @@ import java.util.List;
 import java.util.Objects;
 
 public class FamilyTreeFrame extends JFrame {
-    private final FamilyTree tree;
+    private final ConcurrentFamilyTree tree;
     private final FamilyTreeRepository repo;
 
-    private final DefaultListModel<Person> personListModel = new DefaultListModel<>();
-    private final JList<Person> personList = new JList<>(personListModel);
+    private final PagedPersonListModel personListModel;
+    private final DefaultListModel<Person> searchResultsModel = new DefaultListModel<>();
+    private final JList<Person> personList = new JList<>();
+    private final JComboBox<PersonSort> sortBox = new JComboBox<>(PersonSort.values());
     private final JTextArea detailsArea = new JTextArea();
+    private final JPanel buttonPanel = new JPanel();
+    private final JProgressBar progressBar = new JProgressBar();
+    private final JTextField searchField = new JTextField();
+    private final Timer searchTimer = new Timer(250, e -> runSearch());
+    private final Timer syncTimer = new Timer(SYNC_INTERVAL_MS, e -> syncInBackground());
+    private TreeSync sync;
+    private boolean syncing;
+
+    private static final int SEARCH_LIMIT = 200;
+    private static final int SYNC_INTERVAL_MS = 2000;
 
     private static final DateTimeFormatter DATE_FMT = DateTimeFormatter.ISO_DATE;
 
-    public FamilyTreeFrame(FamilyTree tree, FamilyTreeRepository repo) {
+    public FamilyTreeFrame(FamilyTree tree, FamilyTreeRepository repo, PagedPersonListModel people) {
         super("Family Tree");
-        this.tree = Objects.requireNonNull(tree, "tree");
+        this.tree = new ConcurrentFamilyTree(Objects.requireNonNull(tree, "tree"));
         this.repo = Objects.requireNonNull(repo, "repo");
+        this.personListModel = Objects.requireNonNull(people, "people");
         initUi();
-        loadPeople();
+        personList.setModel(personListModel);
+    }
+
+    // --- Background schema migration, then the startup load; the list fills once the schema is current ---
+    public void migrateInBackground(Database db, Database.MigrationProgress log) {
+        setButtonsEnabled(false);
+        progressBar.setVisible(true);
+        progressBar.setStringPainted(true);
+        progressBar.setString("Migrating database...");
+        detailsArea.setText("Migrating database...");
+
+        new SwingWorker<Void, Object[]>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                long start = System.nanoTime();
+                db.runMigrations(new Database.MigrationProgress() {
+                    @Override
+                    public void update(String table, long rowsCopied, long rowsTotal) {
+                        log.update(table, rowsCopied, rowsTotal);
+                        publish(new Object[]{table, rowsCopied, rowsTotal});
+                    }
+
+                    @Override
+                    public void unconverted(String table, String column, long count, List<String> examples) {
+                        log.unconverted(table, column, count, examples);
+                    }
+                });
+                Metrics.timer("startup.migrate").record(System.nanoTime() - start);
+                return null;
+            }
+
+            @Override
+            protected void process(List<Object[]> chunks) {
+                Object[] last = chunks.get(chunks.size() - 1);
+                long done = (Long) last[1], total = (Long) last[2];
+                progressBar.setValue(total == 0 ? 100 : (int) (done * 100 / total));
+                progressBar.setString(String.format("Migrating %s... %,d / %,d rows", last[0], done, total));
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    get();
+                    loadPeople();
+                    loadInBackground(db);
+                } catch (Exception ex) {
+                    Throwable cause = ex.getCause() == null ? ex : ex.getCause();
+                    progressBar.setVisible(false);
+                    detailsArea.setText("Error migrating database: " + cause.getMessage());
+                    Metrics.error("ui.migrate", cause);
+                }
+            }
+        }.execute();
+    }
+
+    // --- Background startup load; the window stays usable for viewing while it runs ---
+    public void loadInBackground(Database db) {
+        sync = new TreeSync(db, repo, tree);
+        setButtonsEnabled(false);
+        progressBar.setVisible(true);
+        progressBar.setStringPainted(true);
+        progressBar.setString("Loading family tree...");
+        detailsArea.setText("Loading family tree...");
+
+        new SwingWorker<FamilyTree, long[]>() {
+            @Override
+            protected FamilyTree doInBackground() throws Exception {
+                FamilyTree loaded = sync.load((done, total) -> publish(new long[]{done, total}));
+                loaded.generationCount(); // builds the generation index here rather than in the first repaint
+                return loaded;
+            }
+
+            @Override
+            protected void process(List<long[]> chunks) {
+                long[] last = chunks.get(chunks.size() - 1);
+                int pct = last[1] == 0 ? 100 : (int) (last[0] * 100 / last[1]);
+                progressBar.setValue(pct);
+                progressBar.setString(String.format("Loading family tree... %,d / %,d rows", last[0], last[1]));
+            }
+
+            @Override
+            protected void done() {
+                progressBar.setVisible(false);
+                setButtonsEnabled(true);
+                try {
+                    get();
+                    loadPeople();
+                    syncTimer.start();
+                } catch (Exception ex) {
+                    Throwable cause = ex.getCause() == null ? ex : ex.getCause();
+                    detailsArea.setText("Error loading family tree: " + cause.getMessage());
+                    Metrics.error("ui.loadTree", cause);
+                }
+            }
+        }.execute();
+    }
+
+    // --- Picks up writes from other processes: only rows in the change log since the last poll are read ---
+    private void syncInBackground() {
+        if (sync == null || syncing) return;
+        syncing = true;
+        FamilyTree before = tree.snapshot();
+
+        new SwingWorker<ChangeSet, Void>() {
+            private final List<Person> previous = new java.util.ArrayList<>();
+
+            @Override
+            protected ChangeSet doInBackground() throws Exception {
+                ChangeSet changes = sync.poll();
+                tree.snapshot().generationCount();
+                for (Person p : changes.persons()) previous.add(before.findPerson(p.getId()).orElse(null));
+                return changes;
+            }
+
+            @Override
+            protected void done() {
+                syncing = false;
+                try {
+                    ChangeSet changes = get();
+                    if (changes.needsReload()) {
+                        personListModel.refresh();
+                    } else if (!changes.persons().isEmpty()) {
+                        personListModel.applyChanges(previous, changes.persons(), tree.snapshot().listPeople().size());
+                    }
+                } catch (Exception ex) {
+                    Throwable cause = ex.getCause() == null ? ex : ex.getCause();
+                    Metrics.error("ui.sync", cause);
+                }
+            }
+        }.execute();
+    }
+
+    private void setButtonsEnabled(boolean enabled) {
+        for (Component c : buttonPanel.getComponents()) {
+            c.setEnabled(enabled);
+        }
     }
 
     private void initUi() {
@@ -30,7 +178,6 @@ public class FamilyTreeFrame extends JFrame {
         setLayout(new BorderLayout());
 
         // --- Top button bar ---
-        JPanel buttonPanel = new JPanel();
 
         JButton addPersonBtn = new JButton("Add Person");
         JButton linkPeopleBtn = new JButton("Link People");
@@ -42,7 +189,10 @@ public class FamilyTreeFrame extends JFrame {
         linkPeopleBtn.addActionListener(e -> linkPeople());
         showChildrenBtn.addActionListener(e -> showChildren());
         showGrandChildrenBtn.addActionListener(e -> showGrandChildren());
-        refreshBtn.addActionListener(e -> loadPeople());
+        refreshBtn.addActionListener(e -> {
+            if (sync == null) loadPeople();
+            else syncInBackground();
+        });
 
         buttonPanel.add(addPersonBtn);
         buttonPanel.add(linkPeopleBtn);
@@ -60,27 +210,76 @@ public class FamilyTreeFrame extends JFrame {
             }
         });
 
-        JScrollPane listScroll = new JScrollPane(personList);
+        // The list only asks the model for visible rows when cell sizes are fixed
+        personList.setPrototypeCellValue(new Person("Wwwwwwwwww", "Wwwwwwwwwwwwww", Sex.UNKNOWN));
+        personList.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+                Object text = value == null ? "Loading..." : value;
+                int generation = value == null ? -1 : tree.snapshot().generationOf(((Person) value).getId());
+                if (generation >= 0) text = value + "  · gen " + generation;
+                return super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
+            }
+        });
+        sortBox.addActionListener(e -> personListModel.setSort((PersonSort) sortBox.getSelectedItem()));
+
+        // --- Search box above the list; waits for a pause in typing before querying ---
+        searchTimer.setRepeats(false);
+        searchField.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            @Override public void insertUpdate(javax.swing.event.DocumentEvent e) { searchTimer.restart(); }
+            @Override public void removeUpdate(javax.swing.event.DocumentEvent e) { searchTimer.restart(); }
+            @Override public void changedUpdate(javax.swing.event.DocumentEvent e) { searchTimer.restart(); }
+        });
+
+        JPanel listPanel = new JPanel(new BorderLayout());
+        JPanel listTools = new JPanel(new BorderLayout());
+        listTools.add(searchField, BorderLayout.CENTER);
+        listTools.add(sortBox, BorderLayout.EAST);
+        listPanel.add(listTools, BorderLayout.NORTH);
+        listPanel.add(new JScrollPane(personList), BorderLayout.CENTER);
         JScrollPane detailsScroll = new JScrollPane(detailsArea);
         detailsArea.setEditable(false);
 
-        JSplitPane split = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, listScroll, detailsScroll);
+        JSplitPane split = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, listPanel, detailsScroll);
         split.setDividerLocation(300);
 
         add(split, BorderLayout.CENTER);
+
+        progressBar.setVisible(false);
+        add(progressBar, BorderLayout.SOUTH);
+
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                syncTimer.stop();
+                if (sync != null) sync.close();
+                personListModel.close();
+            }
+        });
     }
 
+    // Rows are fetched page by page as they scroll into view
     private void loadPeople() {
-        personListModel.clear();
+        personList.setModel(personListModel);
+        personListModel.refresh();
+        detailsArea.setText("Loaded " + tree.snapshot().listPeople().size() + " people.");
+    }
+
+    private void runSearch() {
+        String text = searchField.getText().trim();
+        if (text.isEmpty()) {
+            loadPeople();
+            return;
+        }
         try {
-            List<Person> people = repo.loadAllPersons();
-            for (Person p : people) {
-                personListModel.addElement(p);
-            }
-            detailsArea.setText("Loaded " + people.size() + " people from the database.");
+            List<Person> matches = repo.searchPersons(text, SEARCH_LIMIT);
+            searchResultsModel.clear();
+            searchResultsModel.addAll(matches);
+            personList.setModel(searchResultsModel);
+            detailsArea.setText(matches.size() + (matches.size() == SEARCH_LIMIT ? "+" : "") + " matches for \"" + text + "\".");
         } catch (Exception ex) {
-            detailsArea.setText("Error loading people: " + ex.getMessage());
-            ex.printStackTrace();
+            detailsArea.setText("Error searching: " + ex.getMessage());
+            Metrics.error("ui.search", ex);
         }
     }
 
@@ -96,9 +295,11 @@ public class FamilyTreeFrame extends JFrame {
         if (p.getDeathDate() != null) sb.append("Died: ").append(DATE_FMT.format(p.getDeathDate())).append("\n");
         if (p.getBirthPlace() != null) sb.append("Birth Place: ").append(p.getBirthPlace()).append("\n");
         if (p.getNotes() != null) sb.append("Notes: ").append(p.getNotes()).append("\n");
+        int generation = tree.snapshot().generationOf(p.getId());
+        if (generation >= 0) sb.append("Generation: ").append(generation).append("\n");
         sb.append("\nChildren:\n");
 
-        List<Person> children = tree.getChildrenOf(p.getId());
+        List<Person> children = tree.snapshot().getChildrenOf(p.getId());
         if (children.isEmpty()) {
             sb.append("  None\n");
         } else {
@@ -116,7 +317,7 @@ public class FamilyTreeFrame extends JFrame {
             detailsArea.setText("No person selected.");
             return;
         }
-        List<Person> children = tree.getChildrenOf(selected.getId());
+        List<Person> children = tree.snapshot().getChildrenOf(selected.getId());
         if (children.isEmpty()) {
             detailsArea.setText(selected.getFullName() + " has no children recorded.");
         } else {
@@ -136,7 +337,7 @@ public class FamilyTreeFrame extends JFrame {
             return;
         }
 
-        List<Person> grandkids = tree.getGrandChildrenOf(selected.getId());
+        List<Person> grandkids = tree.snapshot().getGrandChildrenOf(selected.getId());
         if (grandkids.isEmpty()) {
             detailsArea.setText(selected.getFullName() + " has no grandchildren recorded.");
         } else {
@@ -177,8 +378,8 @@ public class FamilyTreeFrame extends JFrame {
                 );
                 p.setBirthPlace(birthPlaceField.getText());
                 repo.insertPerson(p);
-                tree.addPerson(p);
-                personListModel.addElement(p);
+                tree.update(t -> t.addPerson(p));
+                personListModel.refresh();
                 detailsArea.setText("Added person: " + p.getFullName());
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(this, "Error adding person: " + ex.getMessage(),
@@ -189,35 +390,17 @@ public class FamilyTreeFrame extends JFrame {
 
     // --- Link People Dialog ---
     private void linkPeople() {
-        if (personListModel.isEmpty()) {
-            JOptionPane.showMessageDialog(this, "No people in list to link.");
-            return;
-        }
-
-        // Build array manually to avoid DefaultListModel toArray() error
-        Person[] all = new Person[personListModel.size()];
-        for (int i = 0; i < personListModel.size(); i++) {
-            all[i] = personListModel.getElementAt(i);
-        }
-
-        Person parent = (Person) JOptionPane.showInputDialog(this,
-                "Select Parent:", "Link People",
-                JOptionPane.PLAIN_MESSAGE, null, all, all[0]);
-        if (parent == null) return;
-
-        Person child = (Person) JOptionPane.showInputDialog(this,
-                "Select Child:", "Link People",
-                JOptionPane.PLAIN_MESSAGE, null, all, all[0]);
-        if (child == null) return;
-
-        int confirm = JOptionPane.showConfirmDialog(this,
-                "Make " + parent.getFullName() + " the parent of " + child.getFullName() + "?",
-                "Confirm Link", JOptionPane.OK_CANCEL_OPTION);
-        if (confirm != JOptionPane.OK_OPTION) return;
+        LinkParentChildDialog dialog = new LinkParentChildDialog(this, repo);
+        dialog.setVisible(true);
+        Person parent = dialog.getSelectedParent();
+        Person child = dialog.getSelectedChild();
+        if (parent == null || child == null) return;
+        boolean adopted = dialog.isAdopted();
 
         try {
-            repo.insertParentChild(parent.getId(), child.getId(), false);
-            tree.linkParentChild(parent.getId(), child.getId(), false);
+            tree.snapshot().checkLink(parent.getId(), child.getId(), adopted);
+            repo.insertParentChild(parent.getId(), child.getId(), adopted);
+            tree.update(t -> t.linkParentChild(parent.getId(), child.getId(), adopted));
             detailsArea.setText("Linked parent " + parent.getFullName() +
                     " → child " + child.getFullName());
         } catch (Exception ex) {
@@ -2,133 +2,745 @@
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 public class FamilyTreeRepository {
+    private static final String INSERT_PERSON_SQL = """
+        INSERT OR REPLACE INTO Person
+        (id, givenName, familyName, middleNames, sex, birthDate, deathDate, birthPlace, notes, familyNameSoundex)
+        VALUES (?,?,?,?,?,?,?,?,?,?)
+    """;
+    private static final String INSERT_LINK_SQL = """
+        INSERT INTO ParentChildLink (id, parent, child, isAdoptive, notes)
+        VALUES (?,?,?,?,NULL)
+    """;
+    private static final String INSERT_UNION_SQL = """
+        INSERT OR REPLACE INTO UnionRecord
+        (id, type, partnerA, partnerB, startDate, endDate, location, notes)
+        VALUES (?,?,?,?,?,?,?,?)
+    """;
+
+    private static final String PERSON_COLUMNS =
+            "id, givenName, familyName, middleNames, sex, birthDate, deathDate, birthPlace, notes";
+
+    // Lineage walks; UNION drops repeated (person, generation) pairs and the depth bound ends loops
+    private static final String ANCESTORS_SQL = """
+        WITH RECURSIVE lineage(id, gen) AS (
+          SELECT parent, 1 FROM ParentChildLink WHERE child = ?
+          UNION
+          SELECT l.parent, a.gen + 1 FROM ParentChildLink l JOIN lineage a ON l.child = a.id
+          WHERE a.gen < ?
+        ),
+        nearest(id, gen) AS (SELECT id, MIN(gen) FROM lineage GROUP BY id)
+        SELECT p.id, p.givenName, p.familyName, p.middleNames, p.sex, p.birthDate, p.deathDate,
+               p.birthPlace, p.notes, n.gen
+        FROM nearest n JOIN Person p ON p.id = n.id
+        WHERE (n.gen, n.id) > (?, ?)
+        ORDER BY n.gen, n.id
+        LIMIT ?
+    """;
+    private static final String DESCENDANTS_SQL = """
+        WITH RECURSIVE lineage(id, gen) AS (
+          SELECT child, 1 FROM ParentChildLink WHERE parent = ?
+          UNION
+          SELECT l.child, d.gen + 1 FROM ParentChildLink l JOIN lineage d ON l.parent = d.id
+          WHERE d.gen < ?
+        ),
+        nearest(id, gen) AS (SELECT id, MIN(gen) FROM lineage GROUP BY id)
+        SELECT p.id, p.givenName, p.familyName, p.middleNames, p.sex, p.birthDate, p.deathDate,
+               p.birthPlace, p.notes, n.gen
+        FROM nearest n JOIN Person p ON p.id = n.id
+        WHERE (n.gen, n.id) > (?, ?)
+        ORDER BY n.gen, n.id
+        LIMIT ?
+    """;
+    private static final String COMMON_ANCESTORS_SQL = """
+        WITH RECURSIVE
+        upA(id, gen) AS (
+          SELECT ?, 0
+          UNION
+          SELECT l.parent, a.gen + 1 FROM ParentChildLink l JOIN upA a ON l.child = a.id WHERE a.gen < ?
+        ),
+        upB(id, gen) AS (
+          SELECT ?, 0
+          UNION
+          SELECT l.parent, b.gen + 1 FROM ParentChildLink l JOIN upB b ON l.child = b.id WHERE b.gen < ?
+        ),
+        nearA(id, gen) AS (SELECT id, MIN(gen) FROM upA GROUP BY id),
+        nearB(id, gen) AS (SELECT id, MIN(gen) FROM upB GROUP BY id)
+        SELECT p.id, p.givenName, p.familyName, p.middleNames, p.sex, p.birthDate, p.deathDate,
+               p.birthPlace, p.notes, a.gen, b.gen
+        FROM nearA a JOIN nearB b ON a.id = b.id JOIN Person p ON p.id = a.id
+        ORDER BY a.gen + b.gen, a.id
+        LIMIT ?
+    """;
+    private static final String SEARCH_FTS_SQL = """
+        SELECT p.id, p.givenName, p.familyName, p.middleNames, p.sex, p.birthDate, p.deathDate,
+               p.birthPlace, p.notes
+        FROM PersonFts f JOIN Person p ON p.rowid = f.rowid
+        WHERE PersonFts MATCH ?
+        ORDER BY f.rank
+        LIMIT ?
+    """;
+    private static final String SEARCH_SOUNDEX_SQL =
+            "SELECT " + PERSON_COLUMNS + " FROM Person WHERE familyNameSoundex = ? LIMIT ?";
+    // Merging a duplicate into the person kept: gaps in keep are filled from the duplicate,
+    // links both already have are dropped, the rest are repointed, then the duplicate goes
+    private static final String MERGE_PERSON_SQL = """
+        UPDATE Person SET
+          givenName         = COALESCE(Person.givenName, d.givenName),
+          familyName        = COALESCE(Person.familyName, d.familyName),
+          middleNames       = COALESCE(Person.middleNames, d.middleNames),
+          sex               = CASE WHEN Person.sex = 'UNKNOWN' THEN d.sex ELSE Person.sex END,
+          birthDate         = COALESCE(Person.birthDate, d.birthDate),
+          deathDate         = COALESCE(Person.deathDate, d.deathDate),
+          birthPlace        = COALESCE(Person.birthPlace, d.birthPlace),
+          notes             = COALESCE(Person.notes, d.notes),
+          familyNameSoundex = COALESCE(NULLIF(Person.familyNameSoundex, ''), d.familyNameSoundex)
+        FROM (SELECT * FROM Person WHERE id = ?) AS d
+        WHERE Person.id = ?
+    """;
+    private static final String MERGE_DROP_PARENT_LINKS_SQL = """
+        DELETE FROM ParentChildLink WHERE parent = ?
+          AND (child = ? OR child IN (SELECT child FROM ParentChildLink WHERE parent = ?))
+    """;
+    private static final String MERGE_DROP_CHILD_LINKS_SQL = """
+        DELETE FROM ParentChildLink WHERE child = ?
+          AND (parent = ? OR parent IN (SELECT parent FROM ParentChildLink WHERE child = ?))
+    """;
+    private static final String MERGE_MOVE_PARENT_LINKS_SQL = "UPDATE ParentChildLink SET parent = ? WHERE parent = ?";
+    private static final String MERGE_MOVE_CHILD_LINKS_SQL = "UPDATE ParentChildLink SET child = ? WHERE child = ?";
+    private static final String MERGE_DROP_SELF_UNIONS_SQL =
+            "DELETE FROM UnionRecord WHERE (partnerA = ? AND partnerB = ?) OR (partnerA = ? AND partnerB = ?)";
+    private static final String MERGE_MOVE_UNIONS_A_SQL = "UPDATE UnionRecord SET partnerA = ? WHERE partnerA = ?";
+    private static final String MERGE_MOVE_UNIONS_B_SQL = "UPDATE UnionRecord SET partnerB = ? WHERE partnerB = ?";
+    private static final String DELETE_PERSON_SQL = "DELETE FROM Person WHERE id = ?";
+
+    private static final String UNION_COLUMNS = "id, type, partnerA, partnerB, startDate, endDate, location, notes";
+    // sqlite_sequence keeps the last seq handed out even after the log is pruned
+    private static final String DATA_VERSION_SQL = """
+        SELECT databaseId, COALESCE((SELECT seq FROM sqlite_sequence WHERE name = 'ChangeLog'), 0)
+        FROM DataVersion WHERE id = 1
+    """;
+    private static final String CHANGES_SQL =
+            "SELECT seq, tableName, entityId, parent, child FROM ChangeLog WHERE seq > ? ORDER BY seq LIMIT ?";
+    private static final String PERSON_BY_ID_SQL = "SELECT " + PERSON_COLUMNS + " FROM Person WHERE id = ?";
+    private static final String UNION_BY_ID_SQL = "SELECT " + UNION_COLUMNS + " FROM UnionRecord WHERE id = ?";
+    private static final String ALIVE_SQL = DateSpan.LIFESPAN.overlapSql(PERSON_COLUMNS);
+    private static final String UNIONS_ACTIVE_SQL = DateSpan.UNION.overlapSql(UNION_COLUMNS);
+    private static final String LINKS_BETWEEN_SQL =
+            "SELECT parent, child, isAdoptive FROM ParentChildLink WHERE parent = ? AND child = ?";
+
+    /** Depth bound used when a lineage query asks for no limit. */
+    public static final int MAX_SQL_GENERATIONS = 200;
+
+    // Statement timings; rows are rows written or read
+    private static final Metrics.Timer INSERT_PERSON = Metrics.timer("sql.insertPerson");
+    private static final Metrics.Timer INSERT_LINK = Metrics.timer("sql.insertParentChild");
+    private static final Metrics.Timer INSERT_UNION = Metrics.timer("sql.insertUnion");
+    private static final Metrics.Timer BULK_PERSONS = Metrics.timer("sql.insertPersons");
+    private static final Metrics.Timer BULK_LINKS = Metrics.timer("sql.insertParentChildLinks");
+    private static final Metrics.Timer BULK_UNIONS = Metrics.timer("sql.insertUnions");
+    private static final Metrics.Timer SCAN_PERSONS = Metrics.timer("sql.scanPersons");
+    private static final Metrics.Timer SCAN_LINKS = Metrics.timer("sql.scanParentChildLinks");
+    private static final Metrics.Timer SCAN_UNIONS = Metrics.timer("sql.scanUnions");
+    private static final Metrics.Timer LINEAGE_PAGE = Metrics.timer("sql.lineagePage");
+    private static final Metrics.Timer COMMON_ANCESTORS = Metrics.timer("sql.commonAncestors");
+    private static final Metrics.Timer SEARCH = Metrics.timer("sql.searchPersons");
+    private static final Metrics.Timer PERSONS_PAGE = Metrics.timer("sql.personsPage");
+    private static final Metrics.Timer COUNT = Metrics.timer("sql.count");
+    private static final Metrics.Timer MERGE = Metrics.timer("sql.mergePersons");
+    private static final Metrics.Timer CHANGES = Metrics.timer("sql.changesSince");
+    private static final Metrics.Timer ALIVE = Metrics.timer("sql.aliveBetween");
+    private static final Metrics.Timer UNIONS_ACTIVE = Metrics.timer("sql.unionsActiveBetween");
+
     private final Database db;
+    private int batchSize = 1_000;
+    private int commitInterval = 50_000;
 
     public FamilyTreeRepository(Database db) {
         this.db = db;
     }
 
+    public int getBatchSize() { return batchSize; }
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        this.batchSize = batchSize;
+    }
+
+    public int getCommitInterval() { return commitInterval; }
+    public void setCommitInterval(int commitInterval) {
+        if (commitInterval < 1) throw new IllegalArgumentException("commitInterval must be positive: " + commitInterval);
+        this.commitInterval = commitInterval;
+    }
+
     public void insertPerson(Person p) throws SQLException {
-        String sql = """
-            INSERT OR REPLACE INTO Person
-            (id, givenName, familyName, middleNames, sex, birthDate, deathDate, birthPlace, notes)
-            VALUES (?,?,?,?,?,?,?,?,?)
-        """;
-        try (PreparedStatement ps = db.getConnection().prepareStatement(sql)) {
-            ps.setString(1, p.getId().toString());
-            ps.setString(2, p.getGivenName());
-            ps.setString(3, p.getFamilyName());
-            ps.setString(4, p.getMiddleNames());
-            ps.setString(5, p.getSex() == null ? "UNKNOWN" : p.getSex().name());
-            ps.setString(6, toDate(p.getBirthDate()));
-            ps.setString(7, toDate(p.getDeathDate()));
-            ps.setString(8, p.getBirthPlace());
-            ps.setString(9, p.getNotes());
-            ps.executeUpdate();
-        }
+        long t = Metrics.start();
+        db.write(conn -> {
+            PreparedStatement ps = db.prepare(conn, INSERT_PERSON_SQL);
+            bindPerson(ps, p);
+            return ps.executeUpdate();
+        });
+        INSERT_PERSON.stop(t, 1);
     }
 
     public UUID insertParentChild(UUID parentId, UUID childId, boolean adopted) throws SQLException {
         UUID id = UUID.randomUUID();
-        String sql = """
-            INSERT INTO ParentChildLink (id, parent, child, isAdoptive, notes)
-            VALUES (?,?,?,?,NULL)
-        """;
-        try (PreparedStatement ps = db.getConnection().prepareStatement(sql)) {
-            ps.setString(1, id.toString());
-            ps.setString(2, parentId.toString());
-            ps.setString(3, childId.toString());
-            ps.setInt(4, adopted ? 1 : 0);
-            ps.executeUpdate();
-        }
+        long t = Metrics.start();
+        db.write(conn -> {
+            PreparedStatement ps = db.prepare(conn, INSERT_LINK_SQL);
+            bindLink(ps, id, parentId, childId, adopted);
+            return ps.executeUpdate();
+        });
+        INSERT_LINK.stop(t, 1);
         return id;
     }
 
     public void insertUnion(UnionRecord u) throws SQLException {
-        String sql = """
-            INSERT OR REPLACE INTO UnionRecord
-            (id, type, partnerA, partnerB, startDate, endDate, location, notes)
-            VALUES (?,?,?,?,?,?,?,?)
-        """;
-        try (PreparedStatement ps = db.getConnection().prepareStatement(sql)) {
-            ps.setString(1, u.getId().toString());
-            ps.setString(2, u.getType() == null ? "MARRIAGE" : u.getType().name());
-            ps.setString(3, toId(u.getPartnerA()));
-            ps.setString(4, toId(u.getPartnerB()));
-            ps.setString(5, toDate(u.getStartDate()));
-            ps.setString(6, toDate(u.getEndDate()));
-            ps.setString(7, u.getLocation());
-            ps.setString(8, u.getNotes());
-            ps.executeUpdate();
+        long t = Metrics.start();
+        db.write(conn -> {
+            PreparedStatement ps = db.prepare(conn, INSERT_UNION_SQL);
+            bindUnion(ps, u);
+            return ps.executeUpdate();
+        });
+        INSERT_UNION.stop(t, 1);
+    }
+
+    /**
+     * Bulk inserts: one cached statement, JDBC batches, a commit every
+     * commitInterval rows. Not atomic: if a row fails, only the rows since the
+     * last commit are rolled back, and the committed ones stay. A caller that
+     * needs all or nothing must remove them itself, as GedcomImporter does.
+     */
+    public BulkInsertResult insertPersons(Collection<Person> persons) throws SQLException {
+        return insertBatched(BULK_PERSONS, INSERT_PERSON_SQL, persons, FamilyTreeRepository::bindPerson);
+    }
+
+    public BulkInsertResult insertParentChildLinks(Collection<ParentChildLink> links) throws SQLException {
+        return insertBatched(BULK_LINKS, INSERT_LINK_SQL, links, (ps, l) ->
+                bindLink(ps, l.getId() == null ? UUID.randomUUID() : l.getId(), l.getParentId(), l.getChildId(), l.isAdopted()));
+    }
+
+    public BulkInsertResult insertUnions(Collection<UnionRecord> unions) throws SQLException {
+        return insertBatched(BULK_UNIONS, INSERT_UNION_SQL, unions, FamilyTreeRepository::bindUnion);
+    }
+
+    // Commits every commitInterval rows; a failure rolls back only the rows since the last commit
+    private <T> BulkInsertResult insertBatched(Metrics.Timer timer, String sql, Collection<T> rows, Binder<T> binder) throws SQLException {
+        long t = Metrics.start();
+        BulkInsertResult res = db.write(conn -> insertBatched(conn, sql, rows, binder));
+        timer.stop(t, res.rows());
+        return res;
+    }
+
+    private <T> BulkInsertResult insertBatched(Connection conn, String sql, Collection<T> rows, Binder<T> binder) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        long start = System.nanoTime();
+        int count = 0;
+        conn.setAutoCommit(false);
+        try {
+            PreparedStatement ps = db.prepare(conn, sql);
+            for (T row : rows) {
+                binder.bind(ps, row);
+                ps.addBatch();
+                count++;
+                if (count % batchSize == 0) ps.executeBatch();
+                if (count % commitInterval == 0) {
+                    ps.executeBatch();
+                    conn.commit();
+                }
+            }
+            ps.executeBatch();
+            conn.commit();
+        } catch (SQLException | RuntimeException ex) {
+            conn.rollback();
+            throw ex;
+        } finally {
+            conn.setAutoCommit(autoCommit);
         }
+        return new BulkInsertResult(count, System.nanoTime() - start);
+    }
+
+    @FunctionalInterface
+    private interface Binder<T> {
+        void bind(PreparedStatement ps, T row) throws SQLException;
+    }
+
+    private static void bindPerson(PreparedStatement ps, Person p) throws SQLException {
+        SqlCodec.setId(ps, 1, p.getId());
+        ps.setString(2, p.getGivenName());
+        ps.setString(3, p.getFamilyName());
+        ps.setString(4, p.getMiddleNames());
+        ps.setString(5, p.getSex() == null ? "UNKNOWN" : p.getSex().name());
+        SqlCodec.setDate(ps, 6, p.getBirthDate(), p.getBirthDatePrecision());
+        SqlCodec.setDate(ps, 7, p.getDeathDate(), p.getDeathDatePrecision());
+        ps.setString(8, p.getBirthPlace());
+        ps.setString(9, p.getNotes());
+        String soundex = Phonetics.soundex(p.getFamilyName());
+        ps.setString(10, soundex == null ? "" : soundex);
+    }
+
+    private static void bindLink(PreparedStatement ps, UUID id, UUID parentId, UUID childId, boolean adopted) throws SQLException {
+        SqlCodec.setId(ps, 1, id);
+        SqlCodec.setId(ps, 2, parentId);
+        SqlCodec.setId(ps, 3, childId);
+        ps.setInt(4, adopted ? 1 : 0);
+    }
+
+    private static void bindUnion(PreparedStatement ps, UnionRecord u) throws SQLException {
+        SqlCodec.setId(ps, 1, u.getId());
+        ps.setString(2, u.getType() == null ? "MARRIAGE" : u.getType().name());
+        SqlCodec.setId(ps, 3, u.getPartnerA());
+        SqlCodec.setId(ps, 4, u.getPartnerB());
+        SqlCodec.setDate(ps, 5, u.getStartDate(), u.getStartDatePrecision());
+        SqlCodec.setDate(ps, 6, u.getEndDate(), u.getEndDatePrecision());
+        ps.setString(7, u.getLocation());
+        ps.setString(8, u.getNotes());
+    }
+
+    /**
+     * Folds duplicate into keep in one transaction: keep's empty fields are
+     * filled from duplicate, duplicate's parent/child links and unions are
+     * moved to keep (dropping any keep already has, and unions between the
+     * two), and duplicate is deleted. Returns the number of links and unions
+     * that now point at keep instead.
+     */
+    public int mergePersons(UUID keep, UUID duplicate) throws SQLException {
+        if (keep.equals(duplicate)) throw new IllegalArgumentException("Cannot merge a person into itself: " + keep);
+        long t = Metrics.start();
+        int moved = db.write(conn -> {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                if (update(conn, MERGE_PERSON_SQL, duplicate, keep) == 0) {
+                    throw new SQLException("No such person to merge: " + keep + " or " + duplicate);
+                }
+                update(conn, MERGE_DROP_PARENT_LINKS_SQL, duplicate, keep, keep);
+                update(conn, MERGE_DROP_CHILD_LINKS_SQL, duplicate, keep, keep);
+                update(conn, MERGE_DROP_SELF_UNIONS_SQL, keep, duplicate, duplicate, keep);
+                int n = update(conn, MERGE_MOVE_PARENT_LINKS_SQL, keep, duplicate)
+                        + update(conn, MERGE_MOVE_CHILD_LINKS_SQL, keep, duplicate)
+                        + update(conn, MERGE_MOVE_UNIONS_A_SQL, keep, duplicate)
+                        + update(conn, MERGE_MOVE_UNIONS_B_SQL, keep, duplicate);
+                update(conn, DELETE_PERSON_SQL, duplicate);
+                conn.commit();
+                return n;
+            } catch (SQLException | RuntimeException ex) {
+                conn.rollback();
+                throw ex;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        });
+        MERGE.stop(t, moved);
+        return moved;
+    }
+
+    private int update(Connection conn, String sql, UUID... ids) throws SQLException {
+        PreparedStatement ps = db.prepare(conn, sql);
+        for (int i = 0; i < ids.length; i++) SqlCodec.setId(ps, i + 1, ids[i]);
+        return ps.executeUpdate();
     }
 
     public List<Person> loadAllPersons() throws SQLException {
-        String sql = "SELECT id, givenName, familyName, middleNames, sex, birthDate, deathDate, birthPlace, notes FROM Person";
-        List<Person> res = new ArrayList<>();
-        try (PreparedStatement ps = db.getConnection().prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-            while (rs.next()) {
-                Person p = new Person();
-                p.setId(UUID.fromString(rs.getString("id")));
-                p.setGivenName(rs.getString("givenName"));
-                p.setFamilyName(rs.getString("familyName"));
-                p.setMiddleNames(rs.getString("middleNames"));
-                String sex = rs.getString("sex");
-                try { p.setSex(sex == null ? Sex.UNKNOWN : Sex.valueOf(sex)); } catch (Exception e) { p.setSex(Sex.UNKNOWN); }
-                p.setBirthDate(parseDate(rs.getString("birthDate")));
-                p.setDeathDate(parseDate(rs.getString("deathDate")));
-                p.setBirthPlace(rs.getString("birthPlace"));
-                p.setNotes(rs.getString("notes"));
-                res.add(p);
+        return db.read(conn -> {
+            List<Person> res = new ArrayList<>();
+            forEachPerson(conn, res::add);
+            return res;
+        });
+    }
+
+    public List<ParentChildLink> loadAllParentChildLinks() throws SQLException {
+        return db.read(conn -> {
+            List<ParentChildLink> res = new ArrayList<>();
+            forEachParentChildLink(conn, res::add);
+            return res;
+        });
+    }
+
+    public List<UnionRecord> loadAllUnions() throws SQLException {
+        return db.read(conn -> {
+            List<UnionRecord> res = new ArrayList<>();
+            forEachUnion(conn, res::add);
+            return res;
+        });
+    }
+
+    // Streaming reads: rows go straight to the sink, on whichever connection the caller owns
+    public void forEachPerson(Connection conn, Consumer<Person> sink) throws SQLException {
+        String sql = "SELECT " + PERSON_COLUMNS + " FROM Person";
+        long t = Metrics.start();
+        long rows = 0;
+        try (ResultSet rs = db.prepare(conn, sql).executeQuery()) {
+            for (; rs.next(); rows++) {
+                sink.accept(readPerson(rs));
             }
         }
-        return res;
+        SCAN_PERSONS.stop(t, rows);
     }
 
-    public List<ParentChildLink> loadAllParentChildLinks() throws SQLException {
+    public void forEachParentChildLink(Connection conn, Consumer<ParentChildLink> sink) throws SQLException {
         String sql = "SELECT parent, child, isAdoptive FROM ParentChildLink";
-        List<ParentChildLink> res = new ArrayList<>();
-        try (PreparedStatement ps = db.getConnection().prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-            while (rs.next()) {
-                UUID parent = UUID.fromString(rs.getString("parent"));
-                UUID child = UUID.fromString(rs.getString("child"));
-                boolean adopted = rs.getInt("isAdoptive") == 1;
-                res.add(new ParentChildLink(parent, child, adopted));
+        long t = Metrics.start();
+        long rows = 0;
+        try (ResultSet rs = db.prepare(conn, sql).executeQuery()) {
+            for (; rs.next(); rows++) {
+                UUID parent = SqlCodec.id(rs, 1);
+                UUID child = SqlCodec.id(rs, 2);
+                boolean adopted = rs.getInt(3) == 1;
+                sink.accept(new ParentChildLink(parent, child, adopted));
+            }
+        }
+        SCAN_LINKS.stop(t, rows);
+    }
+
+    public void forEachUnion(Connection conn, Consumer<UnionRecord> sink) throws SQLException {
+        String sql = "SELECT " + UNION_COLUMNS + " FROM UnionRecord";
+        long t = Metrics.start();
+        long rows = 0;
+        try (ResultSet rs = db.prepare(conn, sql).executeQuery()) {
+            for (; rs.next(); rows++) {
+                sink.accept(readUnion(rs));
             }
         }
+        SCAN_UNIONS.stop(t, rows);
+    }
+
+    // Lineage queries answered inside SQLite; only the requested page crosses JDBC
+    /**
+     * One page of a person's ancestors, nearest generation first.
+     * Pass the last entry of the previous page as {@code after} (null for the first page).
+     */
+    public List<LineageEntry> findAncestors(UUID personId, int maxDepth, LineageEntry after, int pageSize) throws SQLException {
+        return lineagePage(ANCESTORS_SQL, personId, maxDepth, after, pageSize);
+    }
+
+    public List<LineageEntry> findDescendants(UUID personId, int maxDepth, LineageEntry after, int pageSize) throws SQLException {
+        return lineagePage(DESCENDANTS_SQL, personId, maxDepth, after, pageSize);
+    }
+
+    /** Ancestors shared by a and b, closest (fewest total generations) first. */
+    public List<CommonAncestor> findCommonAncestors(UUID a, UUID b, int maxDepth, int limit) throws SQLException {
+        int depth = sqlDepth(maxDepth);
+        long t = Metrics.start();
+        List<CommonAncestor> found = db.read(conn -> {
+            List<CommonAncestor> res = new ArrayList<>();
+            PreparedStatement ps = db.prepare(conn, COMMON_ANCESTORS_SQL);
+            SqlCodec.setId(ps, 1, a);
+            ps.setInt(2, depth);
+            SqlCodec.setId(ps, 3, b);
+            ps.setInt(4, depth);
+            ps.setInt(5, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    res.add(new CommonAncestor(readPerson(rs), rs.getInt(10), rs.getInt(11)));
+                }
+            }
+            return res;
+        });
+        COMMON_ANCESTORS.stop(t, found.size());
+        return found;
+    }
+
+    private List<LineageEntry> lineagePage(String sql, UUID personId, int maxDepth, LineageEntry after, int pageSize) throws SQLException {
+        List<LineageEntry> res = new ArrayList<>(Math.min(pageSize, 1024));
+        if (maxDepth == 0 || pageSize <= 0) return res;
+        long t = Metrics.start();
+        db.read(conn -> {
+            PreparedStatement ps = db.prepare(conn, sql);
+            SqlCodec.setId(ps, 1, personId);
+            ps.setInt(2, sqlDepth(maxDepth));
+            ps.setInt(3, after == null ? 0 : after.generation());
+            ps.setBytes(4, after == null ? new byte[0] : SqlCodec.id(after.person().getId()));
+            ps.setInt(5, pageSize);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    res.add(new LineageEntry(readPerson(rs), rs.getInt(10)));
+                }
+            }
+            return res;
+        });
+        LINEAGE_PAGE.stop(t, res.size());
         return res;
     }
 
-    public List<UnionRecord> loadAllUnions() throws SQLException {
-        String sql = "SELECT id, type, partnerA, partnerB, startDate, endDate, location, notes FROM UnionRecord";
-        List<UnionRecord> res = new ArrayList<>();
-        try (PreparedStatement ps = db.getConnection().prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
+    private static int sqlDepth(int maxDepth) {
+        return maxDepth < 0 ? MAX_SQL_GENERATIONS : Math.min(maxDepth, MAX_SQL_GENERATIONS);
+    }
+
+    private static Person readPerson(ResultSet rs) throws SQLException {
+        Person p = new Person();
+        p.setId(SqlCodec.id(rs, 1));
+        p.setGivenName(rs.getString(2));
+        p.setFamilyName(rs.getString(3));
+        p.setMiddleNames(rs.getString(4));
+        String sex = rs.getString(5);
+        try { p.setSex(sex == null ? Sex.UNKNOWN : Sex.valueOf(sex)); } catch (Exception e) { p.setSex(Sex.UNKNOWN); }
+        p.setBirthDate(SqlCodec.date(rs, 6), SqlCodec.precision(rs, 6));
+        p.setDeathDate(SqlCodec.date(rs, 7), SqlCodec.precision(rs, 7));
+        p.setBirthPlace(rs.getString(8));
+        p.setNotes(rs.getString(9));
+        return p;
+    }
+
+    private static UnionRecord readUnion(ResultSet rs) throws SQLException {
+        UnionRecord u = new UnionRecord();
+        u.setId(SqlCodec.id(rs, 1));
+        try { u.setType(UnionType.valueOf(rs.getString(2))); } catch (Exception ignored) {}
+        u.setPartnerA(SqlCodec.id(rs, 3));
+        u.setPartnerB(SqlCodec.id(rs, 4));
+        u.setStartDate(SqlCodec.date(rs, 5), SqlCodec.precision(rs, 5));
+        u.setEndDate(SqlCodec.date(rs, 6), SqlCodec.precision(rs, 6));
+        u.setLocation(rs.getString(7));
+        u.setNotes(rs.getString(8));
+        return u;
+    }
+
+    // Timeline queries, answered from the span indexes (see DateSpan)
+    /**
+     * Up to limit people alive on at least one day from {@code from} to
+     * {@code to}, inclusive, by the rules of {@link Person#isAliveOn}; in no
+     * particular order.
+     */
+    public List<Person> findPersonsAliveBetween(LocalDate from, LocalDate to, int limit) throws SQLException {
+        return spanQuery(ALIVE, ALIVE_SQL, from, to, limit, FamilyTreeRepository::readPerson);
+    }
+
+    /**
+     * Up to limit unions active on at least one day from {@code from} to
+     * {@code to}, inclusive, by the rules of {@link UnionRecord#isActiveOn};
+     * in no particular order.
+     */
+    public List<UnionRecord> findUnionsActiveBetween(LocalDate from, LocalDate to, int limit) throws SQLException {
+        return spanQuery(UNIONS_ACTIVE, UNIONS_ACTIVE_SQL, from, to, limit, FamilyTreeRepository::readUnion);
+    }
+
+    private <T> List<T> spanQuery(Metrics.Timer timer, String sql, LocalDate from, LocalDate to, int limit,
+                                  RowReader<T> reader) throws SQLException {
+        long t = Metrics.start();
+        List<T> found = db.read(conn -> {
+            List<T> res = new ArrayList<>();
+            PreparedStatement ps = db.prepare(conn, sql);
+            ps.setLong(1, from.toEpochDay());
+            ps.setLong(2, to.toEpochDay());
+            ps.setInt(3, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) res.add(reader.read(rs));
+            }
+            return res;
+        });
+        timer.stop(t, found.size());
+        return found;
+    }
+
+    // Name search
+    /**
+     * Up to limit people matching every word of text as a prefix of a name,
+     * birth place or notes word, best FTS rank first, followed by people whose
+     * family name sounds like one of the words.
+     */
+    public List<Person> searchPersons(String text, int limit) throws SQLException {
+        List<String> words = new ArrayList<>();
+        for (String w : text.split("[^\\p{L}\\p{N}]+")) {
+            if (!w.isEmpty()) words.add(w);
+        }
+        List<Person> res = new ArrayList<>();
+        if (words.isEmpty() || limit <= 0) return res;
+
+        StringBuilder match = new StringBuilder();
+        for (String w : words) {
+            if (match.length() > 0) match.append(' ');
+            match.append('"').append(w).append("\"*");
+        }
+        long t = Metrics.start();
+        db.read(conn -> {
+            Set<UUID> seen = new HashSet<>();
+            PreparedStatement fts = db.prepare(conn, SEARCH_FTS_SQL);
+            fts.setString(1, match.toString());
+            fts.setInt(2, limit);
+            try (ResultSet rs = fts.executeQuery()) {
+                while (rs.next()) {
+                    Person p = readPerson(rs);
+                    if (seen.add(p.getId())) res.add(p);
+                }
+            }
+            if (res.size() >= limit) return res;
+
+            PreparedStatement phonetic = db.prepare(conn, SEARCH_SOUNDEX_SQL);
+            for (String w : words) {
+                String key = Phonetics.soundex(w);
+                if (key == null) continue;
+                phonetic.setString(1, key);
+                phonetic.setInt(2, limit);
+                try (ResultSet rs = phonetic.executeQuery()) {
+                    while (rs.next() && res.size() < limit) {
+                        Person p = readPerson(rs);
+                        if (seen.add(p.getId())) res.add(p);
+                    }
+                }
+                if (res.size() >= limit) break;
+            }
+            return res;
+        });
+        SEARCH.stop(t, res.size());
+        return res;
+    }
+
+    /**
+     * One page of people in sort order. With a non-null {@code after} the page
+     * starts just past that person (keyset, cost independent of position);
+     * otherwise it starts at row {@code offset}.
+     */
+    public List<Person> findPersonsPage(Connection conn, PersonSort sort, Person after, int offset, int limit) throws SQLException {
+        Object[] key = after == null ? null : sort.keyOf(after);
+        StringBuilder sql = new StringBuilder("SELECT ").append(PERSON_COLUMNS).append(" FROM Person");
+        if (key != null) {
+            sql.append(" WHERE ").append(sort.afterKeySql());
+        }
+        sql.append(" ORDER BY ").append(sort.keySql()).append(" LIMIT ? OFFSET ?");
+
+        long t = Metrics.start();
+        List<Person> res = new ArrayList<>(limit);
+        // One statement per sort order and page kind, so these stay in the cache
+        PreparedStatement ps = db.prepare(conn, sql.toString());
+        int i = 1;
+        if (key != null) {
+            ps.setObject(i++, key[0]);
+            for (Object k : key) ps.setObject(i++, k);
+        }
+        ps.setInt(i++, limit);
+        ps.setInt(i, key == null ? offset : 0);
+        try (ResultSet rs = ps.executeQuery()) {
             while (rs.next()) {
-                UnionRecord u = new UnionRecord();
-                u.setId(UUID.fromString(rs.getString("id")));
-                try { u.setType(UnionType.valueOf(rs.getString("type"))); } catch (Exception ignored) {}
-                String a = rs.getString("partnerA");
-                String b = rs.getString("partnerB");
-                u.setPartnerA(a == null ? null : UUID.fromString(a));
-                u.setPartnerB(b == null ? null : UUID.fromString(b));
-                u.setStartDate(parseDate(rs.getString("startDate")));
-                u.setEndDate(parseDate(rs.getString("endDate")));
-                u.setLocation(rs.getString("location"));
-                u.setNotes(rs.getString("notes"));
-                res.add(u);
+                res.add(readPerson(rs));
             }
         }
+        PERSONS_PAGE.stop(t, res.size());
         return res;
     }
 
-    private static String toDate(LocalDate d) { return d == null ? null : d.toString(); }
-    private static LocalDate parseDate(String s) { return (s == null || s.isBlank()) ? null : LocalDate.parse(s); }
-    private static String toId(UUID id) { return id == null ? null : id.toString(); }
+    public long countPersons(Connection conn) throws SQLException {
+        return count(conn, "SELECT COUNT(*) FROM Person");
+    }
+
+    public long countParentChildLinks(Connection conn) throws SQLException {
+        return count(conn, "SELECT COUNT(*) FROM ParentChildLink");
+    }
+
+    public long countUnions(Connection conn) throws SQLException {
+        return count(conn, "SELECT COUNT(*) FROM UnionRecord");
+    }
+
+    public DataVersion dataVersion(Connection conn) throws SQLException {
+        try (ResultSet rs = db.prepare(conn, DATA_VERSION_SQL).executeQuery()) {
+            return rs.next() ? new DataVersion(rs.getString(1), rs.getLong(2)) : null;
+        }
+    }
+
+    // Change log (see Database#migrateChangeLog)
+    /** Newest change log seq, or 0 if nothing was logged; a tree loaded after reading it reflects at least this seq. */
+    public long lastChangeSeq(Connection conn) throws SQLException {
+        return count(conn, "SELECT COALESCE(MAX(seq), 0) FROM ChangeLog");
+    }
+
+    /**
+     * What changed after seq, with every named row read back in the same
+     * read transaction as the log. More than limit log entries, or any entry
+     * that cannot be applied in place, yields a change set that needs a reload.
+     */
+    public ChangeSet changesSince(Connection conn, long seq, int limit) throws SQLException {
+        long t = Metrics.start();
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            ChangeSet changes = readChanges(conn, seq, limit);
+            CHANGES.stop(t, changes.size());
+            return changes;
+        } finally {
+            conn.setAutoCommit(autoCommit); // ends the read transaction
+        }
+    }
+
+    private ChangeSet readChanges(Connection conn, long seq, int limit) throws SQLException {
+        long first = count(conn, "SELECT COALESCE(MIN(seq), 0) FROM ChangeLog");
+        if (first > seq + 1) return ChangeSet.reload(seq); // entries we need were pruned
+
+        long last = seq;
+        Set<UUID> personIds = new LinkedHashSet<>();
+        Set<UUID> unionIds = new LinkedHashSet<>();
+        Map<List<UUID>, ParentChildLink> pairs = new LinkedHashMap<>();
+        PreparedStatement ps = db.prepare(conn, CHANGES_SQL);
+        ps.setLong(1, seq);
+        ps.setInt(2, limit + 1);
+        try (ResultSet rs = ps.executeQuery()) {
+            for (int n = 0; rs.next(); n++) {
+                if (n == limit) return ChangeSet.reload(seq);
+                last = rs.getLong(1);
+                switch (rs.getString(2)) {
+                    case "Person" -> personIds.add(SqlCodec.id(rs, 3));
+                    case "UnionRecord" -> unionIds.add(SqlCodec.id(rs, 3));
+                    case "ParentChildLink" -> {
+                        UUID parent = SqlCodec.id(rs, 4), child = SqlCodec.id(rs, 5);
+                        pairs.putIfAbsent(List.of(parent, child), new ParentChildLink(parent, child, false));
+                    }
+                    default -> { return ChangeSet.reload(seq); } // '*': rows written without logging
+                }
+            }
+        }
+
+        List<Person> persons = new ArrayList<>(personIds.size());
+        for (UUID id : personIds) {
+            Person p = findById(conn, PERSON_BY_ID_SQL, id, FamilyTreeRepository::readPerson);
+            if (p == null) return ChangeSet.reload(seq); // deleted: ordinals cannot be given back
+            persons.add(p);
+        }
+        List<UnionRecord> unions = new ArrayList<>(unionIds.size());
+        Set<UUID> removedUnions = new HashSet<>();
+        for (UUID id : unionIds) {
+            UnionRecord u = findById(conn, UNION_BY_ID_SQL, id, FamilyTreeRepository::readUnion);
+            if (u == null) removedUnions.add(id);
+            else unions.add(u);
+        }
+        List<ParentChildLink> links = new ArrayList<>(pairs.size());
+        PreparedStatement between = db.prepare(conn, LINKS_BETWEEN_SQL);
+        for (ParentChildLink pair : pairs.values()) {
+            SqlCodec.setId(between, 1, pair.getParentId());
+            SqlCodec.setId(between, 2, pair.getChildId());
+            try (ResultSet rs = between.executeQuery()) {
+                while (rs.next()) links.add(new ParentChildLink(SqlCodec.id(rs, 1), SqlCodec.id(rs, 2), rs.getInt(3) == 1));
+            }
+        }
+        return new ChangeSet(seq, last, false, persons, unions, removedUnions, new ArrayList<>(pairs.values()), links);
+    }
+
+    @FunctionalInterface
+    private interface RowReader<T> {
+        T read(ResultSet rs) throws SQLException;
+    }
+
+    private <T> T findById(Connection conn, String sql, UUID id, RowReader<T> reader) throws SQLException {
+        PreparedStatement ps = db.prepare(conn, sql);
+        SqlCodec.setId(ps, 1, id);
+        try (ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? reader.read(rs) : null;
+        }
+    }
+
+    private long count(Connection conn, String sql) throws SQLException {
+        long t = Metrics.start();
+        try (ResultSet rs = db.prepare(conn, sql).executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        } finally {
+            COUNT.stop(t);
+        }
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,76 @@
+import java.time.LocalDate;
+import java.util.Locale;
+
+/** Conversion between GEDCOM date values and LocalDate. */
+final class GedcomDates {
+    private static final String[] MONTHS = {"JAN", "FEB", "MAR", "APR", "MAY", "JUN", "JUL", "AUG", "SEP", "OCT", "NOV", "DEC"};
+
+    private GedcomDates() {}
+
+    /**
+     * Best-effort parse of a GEDCOM date. Qualifiers (ABT, BEF, CAL, ...) are
+     * dropped, ranges and periods keep their first date, and partial dates map
+     * to the first day of their month or year. Returns null when nothing parses.
+     */
+    static LocalDate parse(String value) {
+        int[] parts = parts(value);
+        if (parts == null) return null;
+        try {
+            return LocalDate.of(parts[2], Math.max(parts[1], 1), parts[1] == 0 ? 1 : Math.max(parts[0], 1));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /** How much of the value parse() read: SqlCodec.DAY, MONTH or YEAR. */
+    static int precision(String value) {
+        int[] parts = parts(value);
+        if (parts == null || parts[1] == 0) return SqlCodec.YEAR;
+        return parts[0] == 0 ? SqlCodec.MONTH : SqlCodec.DAY;
+    }
+
+    static String format(LocalDate d) {
+        return format(d, SqlCodec.DAY);
+    }
+
+    static String format(LocalDate d, int precision) {
+        return switch (precision) {
+            case SqlCodec.YEAR -> Integer.toString(d.getYear());
+            case SqlCodec.MONTH -> MONTHS[d.getMonthValue() - 1] + " " + d.getYear();
+            default -> d.getDayOfMonth() + " " + MONTHS[d.getMonthValue() - 1] + " " + d.getYear();
+        };
+    }
+
+    // {day, month, year}, 0 where absent; null without a year
+    private static int[] parts(String value) {
+        if (value == null || value.isBlank()) return null;
+        int day = 0, month = 0, year = 0;
+        for (String tok : value.trim().toUpperCase(Locale.ROOT).split("\\s+")) {
+            if (tok.equals("AND") || tok.equals("TO")) break; // end of the first date of a range
+            int m = monthOf(tok);
+            if (m > 0) {
+                month = m;
+            } else if (isDigits(tok)) {
+                int n = Integer.parseInt(tok.length() > 9 ? tok.substring(0, 9) : tok);
+                if (month == 0 && day == 0 && n >= 1 && n <= 31 && tok.length() <= 2) day = n;
+                else year = n;
+            }
+        }
+        return year == 0 ? null : new int[]{day, month, year};
+    }
+
+    private static int monthOf(String tok) {
+        for (int i = 0; i < MONTHS.length; i++) {
+            if (MONTHS[i].equals(tok)) return i + 1;
+        }
+        return 0;
+    }
+
+    private static boolean isDigits(String tok) {
+        if (tok.isEmpty()) return false;
+        for (int i = 0; i < tok.length(); i++) {
+            if (!Character.isDigit(tok.charAt(i))) return false;
+        }
+        return true;
+    }
+}
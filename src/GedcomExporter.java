@@ -0,0 +1,276 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Streaming GEDCOM export. Family groupings (a child's birth parents, and
+ * separately its adoptive parents, two to a family and matched to a
+ * UnionRecord where one exists) are computed into TEMP tables inside
+ * SQLite, then INDI and FAM records are written straight off two cursors,
+ * so heap use does not grow with the database.
+ */
+public class GedcomExporter {
+    public enum Version {
+        GEDCOM_5_5_1("5.5.1"),
+        GEDCOM_7_0("7.0");
+
+        private final String number;
+
+        Version(String number) {
+            this.number = number;
+        }
+    }
+
+    private static final int MAX_551_LINE_VALUE = 200;
+
+    private final Database db;
+
+    public GedcomExporter(Database db) {
+        this.db = db;
+    }
+
+    /** Writes the whole database to file and returns the number of individuals written. */
+    public int export(Path file, Version version) throws IOException, SQLException {
+        // Own read-only connection: one consistent WAL snapshot, and writers are not held up
+        try (Connection conn = db.openReadConnection()) {
+            conn.setAutoCommit(false);
+            createFamilyTables(conn);
+            try (Writer out = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8), 1 << 16)) {
+                GedcomWriter w = new GedcomWriter(out, version);
+                writeHeader(w, version);
+                int count = writeIndividuals(conn, w, version);
+                writeFamilies(conn, w);
+                w.line(0, "TRLR", null);
+                return count;
+            } finally {
+                conn.rollback();
+            }
+        }
+    }
+
+    private static void createFamilyTables(Connection conn) throws SQLException {
+        dropFamilyTables(conn);
+        try (Statement st = conn.createStatement()) {
+            // One row per family a child belongs to: birth and adoptive parents are
+            // grouped apart, and a group of more than two is split into pairs so
+            // nobody is dropped; adopted is the PEDI of every link in the group
+            st.execute("""
+                CREATE TEMP TABLE ExportChildFamily AS
+                SELECT c.child, c.p1, c.p2, c.adopted,
+                       COALESCE((SELECT hex(u.id) FROM UnionRecord u WHERE u.partnerA = c.p1 AND u.partnerB = c.p2 LIMIT 1),
+                                (SELECT hex(u.id) FROM UnionRecord u WHERE u.partnerA = c.p2 AND u.partnerB = c.p1 LIMIT 1),
+                                'P:' || hex(c.p1) || ':' || COALESCE(hex(c.p2), '')) AS famId
+                FROM (SELECT child, adopted, MIN(parent) AS p1, CASE WHEN COUNT(*) > 1 THEN MAX(parent) END AS p2
+                      FROM (SELECT child, parent, isAdoptive AS adopted,
+                                   (ROW_NUMBER() OVER (PARTITION BY child, isAdoptive ORDER BY parent) - 1) / 2 AS pair
+                            FROM (SELECT DISTINCT child, parent, isAdoptive FROM ParentChildLink))
+                      GROUP BY child, adopted, pair) c
+            """);
+            st.execute("CREATE INDEX temp.idx_export_child_fam ON ExportChildFamily(famId)");
+            st.execute("CREATE INDEX temp.idx_export_child ON ExportChildFamily(child)");
+            st.execute("""
+                CREATE TEMP TABLE ExportFamily AS
+                SELECT hex(id) AS famId, partnerA AS p1, partnerB AS p2 FROM UnionRecord
+                UNION
+                SELECT famId, p1, p2 FROM ExportChildFamily WHERE famId LIKE 'P:%'
+            """);
+            st.execute("CREATE INDEX temp.idx_export_fam_p1 ON ExportFamily(p1)");
+            st.execute("CREATE INDEX temp.idx_export_fam_p2 ON ExportFamily(p2)");
+        }
+    }
+
+    private static void dropFamilyTables(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS temp.ExportChildFamily");
+            st.execute("DROP TABLE IF EXISTS temp.ExportFamily");
+        }
+    }
+
+    private static void writeHeader(GedcomWriter w, Version version) throws IOException {
+        w.line(0, "HEAD", null);
+        w.line(1, "GEDC", null);
+        w.line(2, "VERS", version.number);
+        if (version == Version.GEDCOM_5_5_1) {
+            w.line(2, "FORM", "LINEAGE-LINKED");
+            w.line(1, "CHAR", "UTF-8");
+            w.line(1, "SUBM", "@U1@");
+        }
+        w.line(1, "SOUR", "FAMILYTREE3");
+        if (version == Version.GEDCOM_5_5_1) {
+            w.record("@U1@", "SUBM");
+            w.line(1, "NAME", "familytree3");
+        }
+    }
+
+    private static int writeIndividuals(Connection conn, GedcomWriter w, Version version) throws SQLException, IOException {
+        String sql = """
+            SELECT hex(p.id), p.givenName, p.familyName, p.middleNames, p.sex, p.birthDate, p.deathDate,
+                   p.birthPlace, p.notes,
+                   (SELECT group_concat(adopted || famId, char(10)) FROM (
+                       SELECT adopted, famId FROM ExportChildFamily WHERE child = p.id ORDER BY adopted, famId)) AS famc,
+                   (SELECT group_concat(famId, char(10)) FROM (
+                       SELECT famId FROM ExportFamily WHERE p1 = p.id
+                       UNION SELECT famId FROM ExportFamily WHERE p2 = p.id)) AS fams
+            FROM Person p
+        """;
+        int count = 0;
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) {
+                w.record(personXref(rs.getString(1)), "INDI");
+                String given = join(rs.getString(2), rs.getString(4));
+                String family = rs.getString(3);
+                w.line(1, "NAME", (given == null ? "" : given + " ") + "/" + (family == null ? "" : family) + "/");
+                if (given != null) w.line(2, "GIVN", given);
+                if (family != null) w.line(2, "SURN", family);
+                w.line(1, "SEX", sexCode(rs.getString(5), version));
+                event(w, "BIRT", date(rs, 6), rs.getString(8));
+                event(w, "DEAT", date(rs, 7), null);
+                if (rs.getString(9) != null) w.text(1, "NOTE", rs.getString(9));
+                String famc = rs.getString(10);
+                if (famc != null) {
+                    // Each entry is the adopted flag followed by the family id
+                    for (String f : famc.split("\n")) {
+                        w.line(1, "FAMC", familyXref(f.substring(1)));
+                        String pedigree = f.charAt(0) == '1' ? "adopted" : "birth";
+                        w.line(2, "PEDI", version == Version.GEDCOM_7_0 ? pedigree.toUpperCase(Locale.ROOT) : pedigree);
+                    }
+                }
+                String fams = rs.getString(11);
+                if (fams != null) {
+                    for (String f : fams.split("\n")) w.line(1, "FAMS", familyXref(f));
+                }
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void writeFamilies(Connection conn, GedcomWriter w) throws SQLException, IOException {
+        String sql = """
+            SELECT f.famId, hex(f.p1), hex(f.p2), u.startDate, u.endDate, u.location,
+                   (SELECT group_concat(DISTINCT hex(c.child)) FROM ExportChildFamily c WHERE c.famId = f.famId),
+                   a.sex, b.sex
+            FROM ExportFamily f LEFT JOIN UnionRecord u ON u.id = unhex(f.famId)
+            LEFT JOIN Person a ON a.id = f.p1 LEFT JOIN Person b ON b.id = f.p2
+        """;
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) {
+                w.record(familyXref(rs.getString(1)), "FAM");
+                // HUSB and WIFE by sex; the stored order decides only when sex does not
+                String husband = rs.getString(2), wife = rs.getString(3);
+                String sexA = rs.getString(8), sexB = rs.getString(9);
+                if ("FEMALE".equals(sexA) && !"FEMALE".equals(sexB) || "MALE".equals(sexB) && !"MALE".equals(sexA)) {
+                    husband = rs.getString(3);
+                    wife = rs.getString(2);
+                }
+                if (husband != null) w.line(1, "HUSB", personXref(husband));
+                if (wife != null) w.line(1, "WIFE", personXref(wife));
+                String children = rs.getString(7);
+                if (children != null) {
+                    for (String c : children.split(",")) w.line(1, "CHIL", personXref(c));
+                }
+                Long married = date(rs, 4);
+                if (married != null || rs.getString(6) != null) {
+                    event(w, "MARR", married, rs.getString(6));
+                }
+                event(w, "DIV", date(rs, 5), null);
+            }
+        }
+    }
+
+    private static void event(GedcomWriter w, String tag, Long date, String place) throws IOException {
+        if (date == null && place == null) return;
+        w.line(1, tag, null);
+        if (date != null) w.line(2, "DATE", GedcomDates.format(SqlCodec.date(date), SqlCodec.precision(date)));
+        if (place != null) w.line(2, "PLAC", place);
+    }
+
+    // The raw date code, so partial dates keep their precision
+    private static Long date(ResultSet rs, int column) throws SQLException {
+        long code = rs.getLong(column);
+        return rs.wasNull() ? null : code;
+    }
+
+    // Xrefs are derived from ids (hex of the id BLOB) so no id-to-xref table is needed while streaming
+    private static String personXref(String hexId) {
+        return "@I" + hexId + "@";
+    }
+
+    private static String familyXref(String famId) {
+        UUID u = UUID.nameUUIDFromBytes(famId.getBytes(StandardCharsets.UTF_8));
+        return "@F" + u.toString().replace("-", "").toUpperCase(Locale.ROOT) + "@";
+    }
+
+    private static String sexCode(String sex, Version version) {
+        if (sex == null) return "U";
+        return switch (sex) {
+            case "MALE" -> "M";
+            case "FEMALE" -> "F";
+            case "OTHER" -> version == Version.GEDCOM_7_0 ? "X" : "U";
+            default -> "U";
+        };
+    }
+
+    private static String join(String given, String middle) {
+        if (middle == null || middle.isBlank()) return given;
+        return given == null ? middle : given + " " + middle;
+    }
+
+    private static final class GedcomWriter {
+        private final Writer out;
+        private final Version version;
+
+        GedcomWriter(Writer out, Version version) {
+            this.out = out;
+            this.version = version;
+        }
+
+        void record(String xref, String tag) throws IOException {
+            out.write("0 " + xref + " " + tag + "\n");
+        }
+
+        void line(int level, String tag, String value) throws IOException {
+            out.write(Integer.toString(level));
+            out.write(' ');
+            out.write(tag);
+            if (value != null && !value.isEmpty()) {
+                out.write(' ');
+                out.write(value);
+            }
+            out.write('\n');
+        }
+
+        // Free text: newlines become CONT; 5.5.1 also splits long lines with CONC
+        void text(int level, String tag, String value) throws IOException {
+            String[] lines = value.split("\r?\n", -1);
+            for (int i = 0; i < lines.length; i++) {
+                String s = escape(lines[i]);
+                String first = s;
+                String rest = "";
+                if (version == Version.GEDCOM_5_5_1 && s.length() > MAX_551_LINE_VALUE) {
+                    first = s.substring(0, MAX_551_LINE_VALUE);
+                    rest = s.substring(MAX_551_LINE_VALUE);
+                }
+                line(i == 0 ? level : level + 1, i == 0 ? tag : "CONT", first);
+                while (!rest.isEmpty()) {
+                    int n = Math.min(MAX_551_LINE_VALUE, rest.length());
+                    line(level + 1, "CONC", rest.substring(0, n));
+                    rest = rest.substring(n);
+                }
+            }
+        }
+
+        private String escape(String s) {
+            if (version == Version.GEDCOM_5_5_1) return s.replace("@", "@@");
+            return s.startsWith("@") ? "@" + s : s;
+        }
+    }
+}
@@ -0,0 +1,434 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Streaming GEDCOM 5.5.1 / 7.0 import. Records are parsed one at a time and
+ * written through the repository's batched inserts, so memory stays bounded
+ * by the chunk size regardless of file size.
+ *
+ * <p>Ids are derived from the record xrefs (a name-based UUID under a random
+ * per-import namespace), so a FAM can point at an INDI that appears later in
+ * the file without keeping an xref table. Foreign keys are switched off for
+ * the duration of the import and dangling references are cleaned up at the end.
+ *
+ * <p>The triggers on the three tables are dropped while rows go in, as
+ * {@link DatasetGenerator} does: {@link Database#runMigrations()} puts them
+ * back and rebuilds the full-text index in one pass. A '*' change log entry
+ * before the drop and another when the triggers return tell followers to
+ * reload; if the process dies in between, the next runMigrations logs it.
+ *
+ * <p>Rows are committed chunk by chunk, so an import that fails part-way
+ * deletes what it wrote before foreign keys are switched back on. The rowids
+ * its people were given are recorded in ImportJournal first, so the rows of an
+ * import that was killed instead are deleted by the next one. The import
+ * holds the writer lock throughout, so other writers in the process wait
+ * until foreign keys are back on and the triggers are restored.
+ */
+public class GedcomImporter {
+    private static final int CHUNK_SIZE = 10_000;
+
+    public record Result(int persons, int unions, int links, long elapsedNanos) {
+        @Override
+        public String toString() {
+            return String.format("Imported %,d people, %,d unions, %,d links in %,d ms",
+                    persons, unions, links, elapsedNanos / 1_000_000);
+        }
+    }
+
+    private final Database db;
+    private final FamilyTreeRepository repo;
+    private final String namespace = UUID.randomUUID().toString();
+
+    private final List<Person> persons = new ArrayList<>(CHUNK_SIZE);
+    private final List<UnionRecord> unions = new ArrayList<>();
+    private final List<ParentChildLink> links = new ArrayList<>(CHUNK_SIZE);
+    private final List<String[]> adoptions = new ArrayList<>(); // {childXref, famXref}
+    private int personCount, unionCount, linkCount;
+
+    public GedcomImporter(Database db, FamilyTreeRepository repo) {
+        this.db = db;
+        this.repo = repo;
+    }
+
+    public Result importFile(Path file) throws IOException, SQLException {
+        long start = System.nanoTime();
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            db.write(conn -> {
+                importLocked(conn, in);
+                return null;
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        return new Result(personCount, unionCount, linkCount, System.nanoTime() - start);
+    }
+
+    // Runs under the writer lock, so no other writer sees foreign keys off or puts rows in the journalled range
+    private void importLocked(Connection conn, BufferedReader in) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            // Logged before the triggers go, so followers hear of the load even if the process dies in it
+            st.execute("INSERT INTO ChangeLog (tableName) VALUES ('*')");
+            dropTriggers(conn);
+            st.execute("PRAGMA foreign_keys = OFF");
+            st.execute("""
+                CREATE TABLE IF NOT EXISTS ImportJournal (
+                  namespace        TEXT PRIMARY KEY,
+                  personRowidFrom  INTEGER NOT NULL,
+                  personRowidTo    INTEGER NOT NULL
+                )
+            """);
+        } catch (SQLException ex) {
+            restore(conn, false, ex);
+            throw ex;
+        }
+        try {
+            removeUnfinishedImports(conn, null);
+            PreparedStatement journal = db.prepare(conn,
+                    "INSERT INTO ImportJournal SELECT ?, COALESCE(MAX(rowid), 0), COALESCE(MAX(rowid), 0) FROM Person");
+            journal.setString(1, namespace);
+            journal.executeUpdate();
+            List<Line> record = new ArrayList<>();
+            String raw;
+            while ((raw = readLine(in)) != null) {
+                Line line = Line.parse(raw);
+                if (line == null) continue;
+                if (line.level == 0 && !record.isEmpty()) {
+                    handle(record);
+                    flush(conn, false);
+                    record.clear();
+                }
+                record.add(line);
+            }
+            if (!record.isEmpty()) handle(record);
+            flush(conn, true);
+            markAdoptions(conn);
+            removeDanglingReferences(conn);
+        } catch (Throwable ex) {
+            restore(conn, false, ex);
+            throw ex;
+        }
+        restore(conn, true, null);
+    }
+
+    private static String readLine(BufferedReader in) {
+        try {
+            return in.readLine();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    // Each step runs even if the one before failed, so the triggers come back;
+    // failures go onto the import's own exception instead of replacing it
+    private void restore(Connection conn, boolean finished, Throwable failure) throws SQLException {
+        SQLException error = null;
+        try {
+            removeUnfinishedImports(conn, finished ? namespace : null);
+        } catch (SQLException ex) {
+            error = ex;
+        }
+        try (Statement st = conn.createStatement()) {
+            st.execute("PRAGMA foreign_keys = ON");
+            db.runMigrations(); // logs another '*' as it puts the triggers back
+        } catch (SQLException ex) {
+            if (error == null) error = ex;
+            else error.addSuppressed(ex);
+        }
+        if (error == null) return;
+        if (failure == null) throw error;
+        failure.addSuppressed(error);
+    }
+
+    private static void dropTriggers(Connection conn) throws SQLException {
+        List<String> drops = new ArrayList<>();
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("""
+                 SELECT name FROM sqlite_master
+                 WHERE type = 'trigger' AND tbl_name IN ('Person', 'UnionRecord', 'ParentChildLink')
+             """)) {
+            while (rs.next()) drops.add("DROP TRIGGER IF EXISTS \"" + rs.getString(1) + "\"");
+        }
+        drops.add("DROP TABLE IF EXISTS PersonFts");
+        try (Statement st = conn.createStatement()) {
+            for (String sql : drops) st.execute(sql);
+        }
+    }
+
+    private void handle(List<Line> record) throws SQLException {
+        Line head = record.get(0);
+        if (head.xref == null) return;
+        switch (head.tag) {
+            case "INDI" -> readIndividual(head.xref, record);
+            case "FAM" -> readFamily(head.xref, record);
+            default -> { } // HEAD, SOUR, NOTE, OBJE, REPO, SUBM, TRLR ...
+        }
+    }
+
+    private void readIndividual(String xref, List<Line> record) {
+        Person p = new Person();
+        p.setId(idOf(xref));
+        StringBuilder notes = null;
+        String level1 = null;
+        boolean named = false;
+        boolean inFirstName = false;
+
+        for (int i = 1; i < record.size(); i++) {
+            Line l = record.get(i);
+            if (l.level == 1) {
+                level1 = l.tag;
+                inFirstName = l.tag.equals("NAME") && !named;
+                switch (l.tag) {
+                    case "NAME" -> {
+                        if (!named) setName(p, l.value);
+                        named = true;
+                    }
+                    case "SEX" -> p.setSex(sexOf(l.value));
+                    case "NOTE" -> {
+                        if (l.value == null || !isPointer(l.value)) {
+                            if (notes == null) notes = new StringBuilder();
+                            else notes.append('\n');
+                            notes.append(nz(l.value));
+                        }
+                    }
+                    default -> { }
+                }
+            } else if (l.level == 2) {
+                switch (level1 + "." + l.tag) {
+                    case "BIRT.DATE" -> p.setBirthDate(GedcomDates.parse(l.value), GedcomDates.precision(l.value));
+                    case "BIRT.PLAC" -> p.setBirthPlace(l.value);
+                    case "DEAT.DATE" -> p.setDeathDate(GedcomDates.parse(l.value), GedcomDates.precision(l.value));
+                    case "NAME.GIVN" -> { if (inFirstName) setGiven(p, l.value); }
+                    case "NAME.SURN" -> { if (inFirstName) p.setFamilyName(l.value); }
+                    case "NOTE.CONT" -> { if (notes != null) notes.append('\n').append(nz(l.value)); }
+                    case "NOTE.CONC" -> { if (notes != null) notes.append(nz(l.value)); }
+                    case "FAMC.PEDI" -> {
+                        if ("ADOPTED".equalsIgnoreCase(l.value)) {
+                            adoptions.add(new String[]{xref, lastFamc(record, i)});
+                        }
+                    }
+                    default -> { }
+                }
+            }
+        }
+        if (notes != null) p.setNotes(notes.toString());
+        persons.add(p);
+        personCount++;
+    }
+
+    private void readFamily(String xref, List<Line> record) {
+        UUID husband = null, wife = null;
+        List<String> children = new ArrayList<>();
+        UnionRecord u = new UnionRecord();
+        u.setId(idOf(xref));
+        String level1 = null;
+
+        for (int i = 1; i < record.size(); i++) {
+            Line l = record.get(i);
+            if (l.level == 1) {
+                level1 = l.tag;
+                switch (l.tag) {
+                    case "HUSB" -> husband = pointer(l.value);
+                    case "WIFE" -> wife = pointer(l.value);
+                    case "CHIL" -> { if (isPointer(l.value)) children.add(l.value); }
+                    default -> { }
+                }
+            } else if (l.level == 2) {
+                switch (level1 + "." + l.tag) {
+                    case "MARR.DATE" -> u.setStartDate(GedcomDates.parse(l.value), GedcomDates.precision(l.value));
+                    case "MARR.PLAC" -> u.setLocation(l.value);
+                    case "DIV.DATE" -> u.setEndDate(GedcomDates.parse(l.value), GedcomDates.precision(l.value));
+                    default -> { }
+                }
+            }
+        }
+
+        if (husband != null && wife != null) {
+            u.setPartnerA(husband);
+            u.setPartnerB(wife);
+            unions.add(u);
+            unionCount++;
+        }
+        for (String child : children) {
+            UUID childId = idOf(child);
+            if (husband != null) addLink(linkId(xref, child, "HUSB"), husband, childId);
+            if (wife != null) addLink(linkId(xref, child, "WIFE"), wife, childId);
+        }
+    }
+
+    private void addLink(UUID id, UUID parent, UUID child) {
+        if (parent.equals(child)) return;
+        links.add(new ParentChildLink(id, parent, child, false));
+        linkCount++;
+    }
+
+    private void flush(Connection conn, boolean all) throws SQLException {
+        if (all || persons.size() >= CHUNK_SIZE) {
+            // New rows take rowids after the largest, so the chunk lands below this bound
+            PreparedStatement ps = db.prepare(conn,
+                    "UPDATE ImportJournal SET personRowidTo = (SELECT COALESCE(MAX(rowid), 0) FROM Person) + ? WHERE namespace = ?");
+            ps.setInt(1, persons.size());
+            ps.setString(2, namespace);
+            ps.executeUpdate();
+            repo.insertPersons(persons);
+            persons.clear();
+        }
+        if (all || unions.size() >= CHUNK_SIZE) { repo.insertUnions(unions); unions.clear(); }
+        if (all || links.size() >= CHUNK_SIZE) { repo.insertParentChildLinks(links); links.clear(); }
+    }
+
+    // PEDI lives on the child's FAMC, which may come before or after the FAM record
+    private void markAdoptions(Connection conn) throws SQLException {
+        if (adoptions.isEmpty()) return;
+        try (PreparedStatement ps = conn.prepareStatement("UPDATE ParentChildLink SET isAdoptive = 1 WHERE id IN (?, ?)")) {
+            for (String[] a : adoptions) {
+                if (a[1] == null) continue;
+                SqlCodec.setId(ps, 1, linkId(a[1], a[0], "HUSB"));
+                SqlCodec.setId(ps, 2, linkId(a[1], a[0], "WIFE"));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    // Deletes the people every journalled import but the finished one wrote, then
+    // the links and unions left pointing at people who are gone or never came
+    private static void removeUnfinishedImports(Connection conn, String finished) throws SQLException {
+        List<long[]> ranges = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT personRowidFrom, personRowidTo FROM ImportJournal WHERE namespace IS NOT ?")) {
+            ps.setString(1, finished);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) ranges.add(new long[]{rs.getLong(1), rs.getLong(2)});
+            }
+        }
+        try (PreparedStatement person = conn.prepareStatement("DELETE FROM Person WHERE rowid > ? AND rowid <= ?");
+             Statement st = conn.createStatement()) {
+            for (long[] r : ranges) {
+                person.setLong(1, r[0]);
+                person.setLong(2, r[1]);
+                person.executeUpdate();
+            }
+            if (!ranges.isEmpty()) {
+                st.executeUpdate("""
+                    DELETE FROM ParentChildLink
+                    WHERE NOT EXISTS (SELECT 1 FROM Person p WHERE p.id = ParentChildLink.parent)
+                       OR NOT EXISTS (SELECT 1 FROM Person p WHERE p.id = ParentChildLink.child)
+                """);
+                st.executeUpdate("DELETE FROM UnionRecord WHERE partnerA NOT IN (SELECT id FROM Person) OR partnerB NOT IN (SELECT id FROM Person)");
+            }
+            st.executeUpdate("DELETE FROM ImportJournal");
+        }
+    }
+
+    private static void removeDanglingReferences(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.executeUpdate("""
+                DELETE FROM ParentChildLink
+                WHERE NOT EXISTS (SELECT 1 FROM Person p WHERE p.id = ParentChildLink.parent)
+                   OR NOT EXISTS (SELECT 1 FROM Person p WHERE p.id = ParentChildLink.child)
+            """);
+            st.executeUpdate("UPDATE UnionRecord SET partnerA = NULL WHERE partnerA IS NOT NULL AND partnerA NOT IN (SELECT id FROM Person)");
+            st.executeUpdate("UPDATE UnionRecord SET partnerB = NULL WHERE partnerB IS NOT NULL AND partnerB NOT IN (SELECT id FROM Person)");
+        }
+    }
+
+    private UUID idOf(String xref) {
+        return UUID.nameUUIDFromBytes((namespace + xref).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private UUID linkId(String famXref, String childXref, String role) {
+        return idOf(famXref + "/" + childXref + "/" + role);
+    }
+
+    private UUID pointer(String value) {
+        return isPointer(value) ? idOf(value) : null;
+    }
+
+    private static boolean isPointer(String value) {
+        return value != null && value.length() > 2 && value.startsWith("@") && value.endsWith("@") && !value.equals("@VOID@");
+    }
+
+    // "Given Middle /Family/ Suffix"
+    private static void setName(Person p, String value) {
+        if (value == null) return;
+        int a = value.indexOf('/');
+        int b = a < 0 ? -1 : value.indexOf('/', a + 1);
+        String given = a < 0 ? value : value.substring(0, a);
+        if (b > a) {
+            String family = value.substring(a + 1, b).trim();
+            if (!family.isEmpty()) p.setFamilyName(family);
+        }
+        setGiven(p, given);
+    }
+
+    private static void setGiven(Person p, String given) {
+        if (given == null) return;
+        String g = given.trim();
+        if (g.isEmpty()) return;
+        int sp = g.indexOf(' ');
+        p.setGivenName(sp < 0 ? g : g.substring(0, sp));
+        p.setMiddleNames(sp < 0 ? null : g.substring(sp + 1).trim());
+    }
+
+    private static Sex sexOf(String value) {
+        if (value == null) return Sex.UNKNOWN;
+        return switch (value.trim().toUpperCase(Locale.ROOT)) {
+            case "M" -> Sex.MALE;
+            case "F" -> Sex.FEMALE;
+            case "X" -> Sex.OTHER;
+            default -> Sex.UNKNOWN;
+        };
+    }
+
+    private static String lastFamc(List<Line> record, int before) {
+        for (int i = before; i > 0; i--) {
+            Line l = record.get(i);
+            if (l.level == 1) return l.tag.equals("FAMC") && isPointer(l.value) ? l.value : null;
+        }
+        return null;
+    }
+
+    private static String nz(String s) {
+        return s == null ? "" : s;
+    }
+
+    // "level [@xref@] TAG [value]"
+    private record Line(int level, String xref, String tag, String value) {
+        static Line parse(String raw) {
+            // Only leading whitespace is insignificant; CONC values may end in a space
+            String s = raw.stripLeading();
+            if (!s.isEmpty() && s.charAt(0) == '\uFEFF') s = s.substring(1);
+            int i = 0;
+            while (i < s.length() && Character.isDigit(s.charAt(i))) i++;
+            if (i == 0 || i >= s.length()) return null;
+            int level = Integer.parseInt(s.substring(0, i));
+            String rest = s.substring(i).stripLeading();
+
+            String xref = null;
+            if (rest.startsWith("@")) {
+                int end = rest.indexOf('@', 1);
+                if (end < 0) return null;
+                xref = rest.substring(0, end + 1);
+                rest = rest.substring(end + 1).stripLeading();
+            }
+            int sp = rest.indexOf(' ');
+            String tag = (sp < 0 ? rest : rest.substring(0, sp)).toUpperCase(Locale.ROOT);
+            String value = sp < 0 ? null : rest.substring(sp + 1);
+            if (tag.isEmpty()) return null;
+            return new Line(level, xref, tag, value);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Each person's generation: 0 for people with no recorded parents, otherwise
+ * one more than their latest-generation parent, so every parent sits in an
+ * earlier generation than each of their children. Adoptive links count.
+ * <p>
+ * Built once by peeling the graph from its roots, then kept current edge by
+ * edge: a new link can only push the child and its descendants down, and a
+ * removed one only lift them up, and the walk stops at the first person
+ * whose generation does not change. People by generation are kept as one
+ * array grouped by generation, with later moves in a short overlay, the
+ * same way {@link IntervalIndex} overlays are kept in FamilyTree.
+ * <p>
+ * People on a cycle, or below one, have no generation ({@link #NONE}); while
+ * there is a cycle the index is not updated in place but rebuilt.
+ * Copies share the arrays until either side changes them.
+ */
+final class GenerationIndex {
+    static final int NONE = -1;
+
+    private int[] generation;   // by ordinal
+    private int[] population;   // people by generation
+    private int size;
+    private int cyclic;         // people with no generation
+    private boolean shared;
+
+    // People grouped by generation as of the last grouping; generation g is
+    // members[start[g]] to members[start[g + 1]]. Replaced, never modified.
+    private volatile Groups groups;
+    private int[] moved = PersonGraph.NONE;  // sorted ordinals whose generation changed since
+
+    private record Groups(int[] start, int[] members) {}
+
+    private GenerationIndex(int[] generation, int[] population, int size, int cyclic) {
+        this.generation = generation;
+        this.population = population;
+        this.size = size;
+        this.cyclic = cyclic;
+    }
+
+    /** Generations of nodes 0..size-1, by Kahn's algorithm one generation at a time. */
+    static GenerationIndex of(PersonGraph graph, int size) {
+        int[] generation = new int[Math.max(16, size)];
+        int[] pending = new int[size];
+        int[] queue = new int[size];
+        int n = 0;
+        for (int node = 0; node < size; node++) {
+            pending[node] = graph.parents(node).length;
+            if (pending[node] == 0) queue[n++] = node;
+        }
+        for (int i = 0; i < n; i++) {
+            int g = generation[queue[i]] + 1;
+            for (int e : graph.children(queue[i])) {
+                int child = PersonGraph.node(e);
+                if (generation[child] < g) generation[child] = g;
+                if (--pending[child] == 0) queue[n++] = child;
+            }
+        }
+        int[] population = new int[16];
+        for (int node = 0; node < size; node++) {
+            if (pending[node] > 0) {
+                generation[node] = NONE;
+                continue;
+            }
+            if (generation[node] >= population.length) population = Arrays.copyOf(population, generation[node] << 1);
+            population[generation[node]]++;
+        }
+        return new GenerationIndex(generation, population, size, size - n);
+    }
+
+    GenerationIndex copy() {
+        shared = true;
+        GenerationIndex c = new GenerationIndex(generation, population, size, cyclic);
+        c.shared = true;
+        c.groups = groups;
+        c.moved = moved;
+        return c;
+    }
+
+    int generationOf(int node) {
+        return node < size ? generation[node] : NONE;
+    }
+
+    /** Number of generations: one more than the latest. */
+    int count() {
+        int g = population.length;
+        while (g > 0 && population[g - 1] == 0) g--;
+        return g;
+    }
+
+    /** Nodes in generation g, in no particular order. */
+    void forEach(int g, IntConsumer sink) {
+        Groups gs = groups();
+        int[] overlay = moved;
+        if (g >= 0 && g < gs.start().length - 1) {
+            for (int i = gs.start()[g]; i < gs.start()[g + 1]; i++) {
+                if (Arrays.binarySearch(overlay, gs.members()[i]) < 0) sink.accept(gs.members()[i]);
+            }
+        }
+        for (int node : overlay) {
+            if (generation[node] == g) sink.accept(node);
+        }
+    }
+
+    /** Places a new node, which has no edges yet, in generation 0. */
+    void addNode(int node) {
+        if (node != size) throw new IllegalArgumentException("Nodes are added in ordinal order: " + node + " != " + size);
+        unshare();
+        if (size == generation.length) generation = Arrays.copyOf(generation, size + (size >> 1));
+        generation[size++] = 0;
+        population[0]++;
+        moved(node);
+    }
+
+    /**
+     * Updates generations after an edge from parent to child was added to
+     * graph. Returns false if the index must be rebuilt instead: the edge
+     * closed a cycle, or there was one already.
+     */
+    boolean edgeAdded(PersonGraph graph, int parent, int child) {
+        if (cyclic > 0) return false;
+        if (generation[child] > generation[parent]) return true;
+        unshare();
+        int[] stack = {child};
+        int n = 1;
+        set(child, generation[parent] + 1);
+        while (n > 0) {
+            int node = stack[--n];
+            int g = generation[node] + 1;
+            for (int e : graph.children(node)) {
+                int down = PersonGraph.node(e);
+                if (generation[down] >= g) continue;
+                if (down == parent) return false; // parent is its own descendant
+                set(down, g);
+                if (n == stack.length) stack = Arrays.copyOf(stack, n << 1);
+                stack[n++] = down;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Updates generations after every edge from parent to child was removed
+     * from graph. Returns false if the index must be rebuilt instead.
+     */
+    boolean edgesRemoved(PersonGraph graph, int parent, int child) {
+        if (cyclic > 0) return false;
+        if (generation[child] != generation[parent] + 1) return true;
+        unshare();
+        // A person is settled once all their parents are; revisited if a parent moves again
+        int[] stack = {child};
+        int n = 1;
+        while (n > 0) {
+            int node = stack[--n];
+            int g = 0;
+            for (int e : graph.parents(node)) g = Math.max(g, generation[PersonGraph.node(e)] + 1);
+            if (g == generation[node]) continue;
+            set(node, g);
+            for (int e : graph.children(node)) {
+                if (n == stack.length) stack = Arrays.copyOf(stack, n << 1);
+                stack[n++] = PersonGraph.node(e);
+            }
+        }
+        return true;
+    }
+
+    private void set(int node, int g) {
+        population[generation[node]]--;
+        if (g >= population.length) population = Arrays.copyOf(population, g << 1);
+        population[g]++;
+        generation[node] = g;
+        moved(node);
+    }
+
+    private void moved(int node) {
+        if (groups == null) return;
+        int[] overlay = moved;
+        int at = Arrays.binarySearch(overlay, node);
+        if (at >= 0) return;
+        if (overlay.length == IntervalIndex.SCAN_LIMIT) {
+            groups = null;
+            moved = PersonGraph.NONE;
+            return;
+        }
+        at = -at - 1;
+        int[] next = new int[overlay.length + 1];
+        System.arraycopy(overlay, 0, next, 0, at);
+        next[at] = node;
+        System.arraycopy(overlay, at, next, at + 1, overlay.length - at);
+        moved = next;
+    }
+
+    // Counting sort by generation; no moves are recorded while there is no grouping
+    private Groups groups() {
+        Groups gs = groups;
+        if (gs != null) return gs;
+        synchronized (this) {
+            gs = groups;
+            if (gs == null) {
+                int max = -1;
+                for (int node = 0; node < size; node++) max = Math.max(max, generation[node]);
+                int[] start = new int[max + 2];
+                for (int node = 0; node < size; node++) {
+                    if (generation[node] != NONE) start[generation[node] + 1]++;
+                }
+                for (int g = 0; g <= max; g++) start[g + 1] += start[g];
+                int[] members = new int[start[max + 1]];
+                int[] fill = Arrays.copyOf(start, max + 1);
+                for (int node = 0; node < size; node++) {
+                    if (generation[node] != NONE) members[fill[generation[node]]++] = node;
+                }
+                groups = gs = new Groups(start, members);
+            }
+        }
+        return gs;
+    }
+
+    private void unshare() {
+        if (!shared) return;
+        generation = generation.clone();
+        population = population.clone();
+        shared = false;
+    }
+}
@@ -0,0 +1,16 @@
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A parent/child inconsistency found by {@link IntegrityScanner}. For a cycle,
+ * people are everyone on it; for too many parents, the child and then its
+ * biological parents; for a parent born after the child, the parent and the child.
+ */
+public record IntegrityIssue(Kind kind, List<Person> people) {
+    public enum Kind { CYCLE, TOO_MANY_PARENTS, PARENT_BORN_AFTER_CHILD }
+
+    @Override
+    public String toString() {
+        return kind + ": " + people.stream().map(p -> p + " [" + p.getId() + "]").collect(Collectors.joining(", "));
+    }
+}
@@ -0,0 +1,140 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Whole-tree consistency check for data that never went through
+ * {@link FamilyTree#checkLink}, e.g. GEDCOM imports or databases written by
+ * older versions. Reports people who are their own ancestors, children with
+ * more than two biological parents, and parents born after their children.
+ * <p>
+ * Everything runs on the common fork-join pool. The per-person checks split
+ * the people between tasks. Cycles are found by peeling the graph
+ * generation by generation, as Kahn's algorithm does, each generation in
+ * parallel; people left over sit on a cycle or below one, and a sequential
+ * strongly-connected-components pass over just those names each cycle.
+ */
+public final class IntegrityScanner {
+    private static final Metrics.Timer SCAN = Metrics.timer("integrity.scan");
+
+    private final FamilyTree tree;
+    private final PersonGraph graph;
+
+    public IntegrityScanner(FamilyTree tree) {
+        this.tree = tree;
+        this.graph = tree.graph();
+    }
+
+    /** All issues: cycles first, then the per-person ones by person. */
+    public List<IntegrityIssue> scan() {
+        long t = Metrics.start();
+        int n = tree.personCount();
+        List<IntegrityIssue> res = new ArrayList<>(cycles(n));
+        res.addAll(IntStream.range(0, n).parallel().mapToObj(this::personIssues).flatMap(List::stream).toList());
+        SCAN.stop(t, res.size());
+        return res;
+    }
+
+    private List<IntegrityIssue> personIssues(int child) {
+        int[] parents = graph.parents(child);
+        if (parents.length == 0) return List.of();
+        List<IntegrityIssue> res = new ArrayList<>(0);
+        Person c = tree.person(child);
+        int[] biological = Arrays.stream(parents).filter(e -> !PersonGraph.adopted(e)).map(PersonGraph::node).distinct().toArray();
+        if (biological.length > 2) {
+            res.add(new IntegrityIssue(IntegrityIssue.Kind.TOO_MANY_PARENTS,
+                    Stream.concat(Stream.of(c), Arrays.stream(biological).mapToObj(tree::person)).toList()));
+        }
+        LocalDate born = c.getBirthDate();
+        if (born == null) return res;
+        for (int parent : Arrays.stream(parents).map(PersonGraph::node).distinct().toArray()) {
+            Person p = tree.person(parent);
+            if (p.getBirthDate() != null && p.getBirthDate().isAfter(born)) {
+                res.add(new IntegrityIssue(IntegrityIssue.Kind.PARENT_BORN_AFTER_CHILD, List.of(p, c)));
+            }
+        }
+        return res;
+    }
+
+    private List<IntegrityIssue> cycles(int n) {
+        // pending[v]: parent edges of v not yet peeled; anyone left above 0 is on or below a cycle
+        AtomicIntegerArray pending = new AtomicIntegerArray(n);
+        int[] generation = IntStream.range(0, n).parallel().filter(v -> {
+            int k = graph.parents(v).length;
+            pending.set(v, k);
+            return k == 0;
+        }).toArray();
+        while (generation.length > 0) {
+            generation = Arrays.stream(generation).parallel()
+                    .flatMap(v -> Arrays.stream(graph.children(v)).map(PersonGraph::node))
+                    .filter(v -> pending.decrementAndGet(v) == 0)
+                    .toArray();
+        }
+        int[] left = IntStream.range(0, n).parallel().filter(v -> pending.get(v) > 0).toArray();
+        return left.length == 0 ? List.of() : components(left, pending);
+    }
+
+    // Tarjan's algorithm, iterative, over the people not peeled; reports components that contain a cycle
+    private List<IntegrityIssue> components(int[] nodes, AtomicIntegerArray pending) {
+        int n = pending.length();
+        int[] index = new int[n], low = new int[n], edgeAt = new int[n];
+        Arrays.fill(index, -1);
+        boolean[] onStack = new boolean[n];
+        int[] stack = new int[nodes.length], path = new int[nodes.length];
+        int[][] pathChildren = new int[nodes.length][];
+        int sp = 0, next = 0;
+        List<IntegrityIssue> res = new ArrayList<>();
+        for (int root : nodes) {
+            if (index[root] >= 0) continue;
+            int depth = 0;
+            pathChildren[depth] = graph.children(root);
+            path[depth++] = root;
+            index[root] = low[root] = next++;
+            stack[sp++] = root;
+            onStack[root] = true;
+            while (depth > 0) {
+                int v = path[depth - 1];
+                int[] children = pathChildren[depth - 1];
+                if (edgeAt[v] < children.length) {
+                    int w = PersonGraph.node(children[edgeAt[v]++]);
+                    if (pending.get(w) == 0) continue;
+                    if (index[w] < 0) {
+                        pathChildren[depth] = graph.children(w);
+                        path[depth++] = w;
+                        index[w] = low[w] = next++;
+                        stack[sp++] = w;
+                        onStack[w] = true;
+                    } else if (onStack[w]) {
+                        low[v] = Math.min(low[v], index[w]);
+                    }
+                    continue;
+                }
+                depth--;
+                if (depth > 0) low[path[depth - 1]] = Math.min(low[path[depth - 1]], low[v]);
+                if (low[v] != index[v]) continue;
+                int from = sp;
+                do {
+                    onStack[stack[--from]] = false;
+                } while (stack[from] != v);
+                int[] members = Arrays.copyOfRange(stack, from, sp);
+                sp = from;
+                if (members.length > 1 || selfLinked(v)) {
+                    Arrays.sort(members);
+                    res.add(new IntegrityIssue(IntegrityIssue.Kind.CYCLE, Arrays.stream(members).mapToObj(tree::person).toList()));
+                }
+            }
+        }
+        return res;
+    }
+
+    private boolean selfLinked(int v) {
+        for (int e : graph.children(v)) {
+            if (PersonGraph.node(e) == v) return true;
+        }
+        return false;
+    }
+}
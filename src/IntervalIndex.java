@@ -0,0 +1,134 @@
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable index of closed int intervals, e.g. epoch days, each carrying an
+ * int payload. {@link #OPEN_START} and {@link #OPEN_END} stand for unknown
+ * ends and compare below and above every real value.
+ * <p>
+ * A centered interval tree answers stabbing queries: each node keeps the
+ * intervals containing its center once sorted by start and once by end, so a
+ * query walks one root-to-leaf path and stops scanning each node's list at
+ * the first miss, O(log n + k). A range query adds the intervals starting
+ * inside the range, found by binary search over all starts.
+ */
+final class IntervalIndex {
+    static final int OPEN_START = Integer.MIN_VALUE;
+    static final int OPEN_END = Integer.MAX_VALUE;
+
+    /** Changes kept outside a built index and scanned by every query before it is rebuilt. */
+    static final int SCAN_LIMIT = 1024;
+
+    // Intervals ordered by start
+    private final int[] start;
+    private final int[] end;
+    private final int[] payload;
+
+    // Tree nodes; node n owns positions [from[n], to[n]) of byStart and byEnd
+    private int[] center = new int[16];
+    private int[] left = new int[16];
+    private int[] right = new int[16];
+    private int[] from = new int[16];
+    private int[] to = new int[16];
+    private int nodes;
+    private final int[] byStart;
+    private final int[] byEnd;
+    private final int root;
+
+    /** Takes ownership of the arrays; entry i is the interval [start[i], end[i]] with payload[i]. */
+    IntervalIndex(int[] start, int[] end, int[] payload, int size) {
+        long[] order = new long[size];
+        for (int i = 0; i < size; i++) order[i] = (long) start[i] << 32 | i;
+        Arrays.sort(order);
+        this.start = new int[size];
+        this.end = new int[size];
+        this.payload = new int[size];
+        for (int i = 0; i < size; i++) {
+            int j = (int) order[i];
+            this.start[i] = start[j];
+            this.end[i] = end[j];
+            this.payload[i] = payload[j];
+        }
+        byStart = new int[size];
+        byEnd = new int[size];
+        int[] all = new int[size];
+        Arrays.setAll(all, i -> i);
+        root = build(all, size, new int[]{0});
+    }
+
+    int size() {
+        return start.length;
+    }
+
+    /** Payloads of the intervals containing point. */
+    void stab(int point, IntConsumer sink) {
+        for (int n = root; n >= 0; ) {
+            if (point < center[n]) {
+                for (int i = from[n]; i < to[n] && start[byStart[i]] <= point; i++) sink.accept(payload[byStart[i]]);
+                n = left[n];
+            } else if (point > center[n]) {
+                for (int i = from[n]; i < to[n] && end[byEnd[i]] >= point; i++) sink.accept(payload[byEnd[i]]);
+                n = right[n];
+            } else {
+                for (int i = from[n]; i < to[n]; i++) sink.accept(payload[byStart[i]]);
+                return;
+            }
+        }
+    }
+
+    /** Payloads of the intervals sharing at least one point with [lo, hi]; each reported once. */
+    void overlapping(int lo, int hi, IntConsumer sink) {
+        if (lo > hi) return;
+        stab(lo, sink);
+        if (lo == hi) return;
+        // Those not containing lo start after it
+        for (int i = firstStartAfter(lo); i < start.length && start[i] <= hi; i++) sink.accept(payload[i]);
+    }
+
+    private int firstStartAfter(int value) {
+        int lo = 0, hi = start.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (start[mid] <= value) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // ids are sorted by start. The center is the start of the middle interval,
+    // so at most half of them lie wholly on either side and the depth is O(log n).
+    private int build(int[] ids, int count, int[] next) {
+        if (count == 0) return -1;
+        int c = start[ids[count >>> 1]];
+        int[] lower = new int[count], upper = new int[count];
+        int nl = 0, nu = 0, here = next[0];
+        for (int k = 0; k < count; k++) {
+            int id = ids[k];
+            if (end[id] < c) lower[nl++] = id;
+            else if (start[id] > c) upper[nu++] = id;
+            else byStart[next[0]++] = id;
+        }
+        long[] ends = new long[next[0] - here];
+        for (int i = here; i < next[0]; i++) ends[i - here] = (long) end[byStart[i]] << 32 | byStart[i];
+        Arrays.sort(ends);
+        for (int i = 0; i < ends.length; i++) byEnd[next[0] - 1 - i] = (int) ends[i];
+
+        int n = nodes++;
+        if (n == center.length) {
+            int cap = n << 1;
+            center = Arrays.copyOf(center, cap);
+            left = Arrays.copyOf(left, cap);
+            right = Arrays.copyOf(right, cap);
+            from = Arrays.copyOf(from, cap);
+            to = Arrays.copyOf(to, cap);
+        }
+        center[n] = c;
+        from[n] = here;
+        to[n] = next[0];
+        int l = build(lower, nl, next);
+        int r = build(upper, nu, next); // may grow the node arrays, so assign after
+        left[n] = l;
+        right[n] = r;
+        return n;
+    }
+}
@@ -0,0 +1,194 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Memoised ancestor sets for relationship queries. Each person's ancestors up
+ * to {@link #MAX_GENERATIONS} are kept as a sorted long array of
+ * {@code ancestor << 32 | depth << 1 | adoptive} and built from the parents'
+ * arrays, so every ancestor set is computed once and a lookup is a linear
+ * merge of two short arrays instead of a graph search.
+ * <p>
+ * Safe for concurrent lookups over a graph that no longer changes: finished
+ * arrays are published with release/acquire semantics, and two threads at
+ * worst compute the same entry twice.
+ */
+final class KinshipIndex {
+    /** Covers 8th cousins and 9th great-grandparents. */
+    static final int MAX_GENERATIONS = 10;
+
+    private static final long[] NONE = new long[0];
+    private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(long[][].class);
+    private static final Metrics.Cache MEMO = Metrics.cache("kinship.ancestorSets");
+
+    private final PersonGraph graph;
+    private volatile long[][] ancestors;
+
+    KinshipIndex(PersonGraph graph, int personCount) {
+        this.graph = graph;
+        this.ancestors = new long[personCount][];
+    }
+
+    /**
+     * Closest common ancestry of a and b, as {up, down, commonAncestorCount, adoptive, half},
+     * or null when they share no ancestor within MAX_GENERATIONS.
+     */
+    int[] closest(int a, int b) {
+        long[] ua = withSelf(a);
+        long[] ub = withSelf(b);
+        int bestUp = -1, bestDown = -1, count = 0, common = -1;
+        boolean adoptive = true;
+
+        int i = 0, j = 0;
+        while (i < ua.length && j < ub.length) {
+            int ca = (int) (ua[i] >>> 32);
+            int cb = (int) (ub[j] >>> 32);
+            if (ca < cb) { i++; continue; }
+            if (cb < ca) { j++; continue; }
+            int up = depth(ua[i]);
+            int down = depth(ub[j]);
+            boolean adopted = isAdoptive(ua[i]) || isAdoptive(ub[j]);
+            int cmp = bestUp < 0 ? -1 : compare(up, down, bestUp, bestDown);
+            if (cmp < 0) {
+                bestUp = up;
+                bestDown = down;
+                count = 1;
+                common = ca;
+                adoptive = adopted;
+            } else if (cmp == 0) {
+                count++;
+                adoptive &= adopted;
+            }
+            i++;
+            j++;
+        }
+        if (bestUp < 0) return null;
+        boolean half = count == 1 && bestUp > 0 && bestDown > 0
+                && hasOtherParent(ua, bestUp - 1, common) && hasOtherParent(ub, bestDown - 1, common);
+        return new int[]{bestUp, bestDown, count, adoptive ? 1 : 0, half ? 1 : 0};
+    }
+
+    // Whether a child of common on this side's line, at the given depth, has a
+    // recorded parent besides common. One shared ancestor is half kinship only
+    // when both sides record a partner who is not shared; with the second parent
+    // missing the two may well be full kin.
+    private boolean hasOtherParent(long[] line, int depth, int common) {
+        for (int e : graph.children(common)) {
+            int child = PersonGraph.node(e);
+            int at = Arrays.binarySearch(line, (long) child << 32);
+            if (at < 0) at = -at - 1;
+            if (at == line.length || (int) (line[at] >>> 32) != child || depth(line[at]) != depth) continue;
+            for (int p : graph.parents(child)) {
+                if (PersonGraph.node(p) != common) return true;
+            }
+        }
+        return false;
+    }
+
+    // Fewest total generations first, then the most even split
+    private static int compare(int up, int down, int bestUp, int bestDown) {
+        int c = Integer.compare(up + down, bestUp + bestDown);
+        return c != 0 ? c : Integer.compare(Math.abs(up - down), Math.abs(bestUp - bestDown));
+    }
+
+    private long[] withSelf(int node) {
+        long[] anc = ancestorsOf(node);
+        long self = (long) node << 32;
+        int at = -Arrays.binarySearch(anc, self) - 1;
+        if (at < 0) return anc; // only possible with looped data
+        long[] res = new long[anc.length + 1];
+        System.arraycopy(anc, 0, res, 0, at);
+        res[at] = self;
+        System.arraycopy(anc, at, res, at + 1, anc.length - at);
+        return res;
+    }
+
+    long[] ancestorsOf(int node) {
+        long[] cached = cached(node);
+        if (cached != null) {
+            MEMO.hit();
+            return cached;
+        }
+        MEMO.miss();
+
+        // Iterative post-order over parents so deep pedigrees cannot overflow the stack.
+        // A node is open from its first visit until built; meeting an open parent means a loop.
+        BitSet open = new BitSet();
+        int[] stack = new int[16];
+        int top = 0;
+        stack[top++] = node;
+        while (top > 0) {
+            int v = stack[top - 1];
+            if (!open.get(v)) {
+                open.set(v);
+                for (int e : graph.parents(v)) {
+                    int p = PersonGraph.node(e);
+                    if (!open.get(p) && cached(p) == null) {
+                        if (top == stack.length) stack = Arrays.copyOf(stack, top << 1);
+                        stack[top++] = p;
+                    }
+                }
+                continue;
+            }
+            top--;
+            if (cached(v) == null) publish(v, build(v));
+        }
+        return cached(node);
+    }
+
+    private long[] cached(int node) {
+        long[][] a = ancestors;
+        return node < a.length ? (long[]) SLOT.getAcquire(a, node) : null;
+    }
+
+    // Only a tree still being built (single-threaded) adds people past the initial size
+    private void publish(int node, long[] value) {
+        long[][] a = ancestors;
+        if (node >= a.length) {
+            a = Arrays.copyOf(a, Math.max(node + 1, a.length * 3 / 2));
+            ancestors = a;
+        }
+        SLOT.setRelease(a, node, value);
+    }
+
+    private long[] build(int v) {
+        int[] parents = graph.parents(v);
+        if (parents.length == 0) return NONE;
+
+        int size = 0;
+        long[] buf = new long[16];
+        for (int e : parents) {
+            int p = PersonGraph.node(e);
+            long flag = PersonGraph.adopted(e) ? 1 : 0;
+            long[] up = cached(p);
+            // A parent not built yet is still open: a loop in the data; its ancestry is cut there
+            int need = size + 1 + (up == null ? 0 : up.length);
+            if (need > buf.length) buf = Arrays.copyOf(buf, Math.max(need, buf.length << 1));
+            buf[size++] = (long) p << 32 | 1 << 1 | flag;
+            if (up == null) continue;
+            for (long a : up) {
+                int d = depth(a) + 1;
+                if (d > MAX_GENERATIONS) continue;
+                buf[size++] = (a & 0xFFFFFFFF00000000L) | (long) d << 1 | (a & 1) | flag;
+            }
+        }
+
+        // Sort, then keep one entry per ancestor: shallowest depth, biological over adoptive
+        Arrays.sort(buf, 0, size);
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            if (n > 0 && (buf[n - 1] >>> 32) == (buf[i] >>> 32)) continue;
+            buf[n++] = buf[i];
+        }
+        return Arrays.copyOf(buf, n);
+    }
+
+    private static int depth(long entry) {
+        return (int) (entry & 0xFFFFFFFFL) >>> 1;
+    }
+
+    private static boolean isAdoptive(long entry) {
+        return (entry & 1) != 0;
+    }
+}
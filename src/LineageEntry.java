@@ -0,0 +1,3 @@
+/** A person reached by an ancestor/descendant traversal, with its distance in generations. */
+public record LineageEntry(Person person, int generation) {
+}
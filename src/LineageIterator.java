@@ -0,0 +1,77 @@
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntFunction;
+
+/**
+ * Lazy breadth-first walk up or down the parent/child graph. Only the current
+ * and next generation are held in memory, and a visited bitset guarantees
+ * termination even when bad data contains loops.
+ */
+final class LineageIterator implements Iterator<LineageEntry> {
+    private final IntFunction<int[]> step;
+    private final IntFunction<Person> person;
+    private final int maxDepth;
+    private final BitSet visited = new BitSet();
+
+    private int[] level;
+    private int levelSize;
+    private int pos;
+    private int generation;
+    private int[] next = new int[16];
+    private int nextSize;
+    private boolean exhausted;
+
+    /**
+     * @param step     neighbours of a node in the walk direction, as encoded edges
+     * @param maxDepth generations to walk; negative means unlimited
+     */
+    LineageIterator(int start, IntFunction<int[]> step, IntFunction<Person> person, int maxDepth) {
+        this.step = step;
+        this.person = person;
+        this.maxDepth = maxDepth;
+        visited.set(start);
+        level = new int[]{start};
+        levelSize = 1;
+        pos = 1; // the start person itself is not reported
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (pos == levelSize) {
+            if (exhausted || maxDepth >= 0 && generation >= maxDepth) return false;
+            expand(level, levelSize);
+            if (nextSize == 0) {
+                exhausted = true;
+                return false;
+            }
+            int[] tmp = level;
+            level = next;
+            levelSize = nextSize;
+            next = tmp;
+            nextSize = 0;
+            pos = 0;
+            generation++;
+        }
+        return true;
+    }
+
+    @Override
+    public LineageEntry next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        return new LineageEntry(person.apply(level[pos++]), generation);
+    }
+
+    private void expand(int[] nodes, int count) {
+        for (int i = 0; i < count; i++) {
+            for (int e : step.apply(nodes[i])) {
+                int n = PersonGraph.node(e);
+                if (visited.get(n)) continue;
+                visited.set(n);
+                if (nextSize == next.length) next = Arrays.copyOf(next, Math.max(16, nextSize << 1));
+                next[nextSize++] = n;
+            }
+        }
+    }
+}
@@ -2,23 +2,38 @@ import javax.swing.*;
 import java.awt.*;
 import java.util.List;
 
+/**
+ * Picks a parent and a child by typing part of a name: each side queries the
+ * repository's full-text search after a pause in typing, as the main window's
+ * search box does, so nobody is loaded who was not asked for.
+ */
 public class LinkParentChildDialog extends JDialog {
-    private final JComboBox<Person> parentCombo;
-    private final JComboBox<Person> childCombo;
+    private static final int SEARCH_LIMIT = 50;
+
+    private final FamilyTreeRepository repo;
+    private final JTextField parentSearch = new JTextField(20);
+    private final JTextField childSearch = new JTextField(20);
+    private final JComboBox<Person> parentCombo = new JComboBox<>();
+    private final JComboBox<Person> childCombo = new JComboBox<>();
     private final JCheckBox adoptedCheck;
 
     private Person selectedParent;
     private Person selectedChild;
     private boolean adopted;
 
-    public LinkParentChildDialog(Frame owner, List<Person> people) {
+    public LinkParentChildDialog(Frame owner, FamilyTreeRepository repo) {
         super(owner, "Link Parent ↔ Child", true);
-        parentCombo = new JComboBox<>(people.toArray(new Person[0]));
-        childCombo = new JComboBox<>(people.toArray(new Person[0]));
+        this.repo = repo;
         adoptedCheck = new JCheckBox("Adopted");
 
         parentCombo.setRenderer(new PersonRenderer());
         childCombo.setRenderer(new PersonRenderer());
+        // Sized for a typical name; both lists start empty
+        Person prototype = new Person("Wwwwwwwwww", "Wwwwwwwwwwwwww", Sex.UNKNOWN);
+        parentCombo.setPrototypeDisplayValue(prototype);
+        childCombo.setPrototypeDisplayValue(prototype);
+        searchAsTyped(parentSearch, parentCombo);
+        searchAsTyped(childSearch, childCombo);
 
         initUi();
         pack();
@@ -33,7 +48,9 @@ public class LinkParentChildDialog extends JDialog {
         gbc.fill = GridBagConstraints.HORIZONTAL;
 
         int row = 0;
+        addRow(form, gbc, row++, "Find parent:", parentSearch);
         addRow(form, gbc, row++, "Parent:", parentCombo);
+        addRow(form, gbc, row++, "Find child:", childSearch);
         addRow(form, gbc, row++, "Child:", childCombo);
 
         gbc.gridx = 1; gbc.gridy = row++; gbc.gridwidth = 2;
@@ -60,6 +77,30 @@ public class LinkParentChildDialog extends JDialog {
         panel.add(comp, gbc);
     }
 
+    private void searchAsTyped(JTextField field, JComboBox<Person> results) {
+        Timer timer = new Timer(250, e -> search(field.getText().trim(), results));
+        timer.setRepeats(false);
+        field.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            @Override public void insertUpdate(javax.swing.event.DocumentEvent e) { timer.restart(); }
+            @Override public void removeUpdate(javax.swing.event.DocumentEvent e) { timer.restart(); }
+            @Override public void changedUpdate(javax.swing.event.DocumentEvent e) { timer.restart(); }
+        });
+    }
+
+    private void search(String text, JComboBox<Person> results) {
+        DefaultComboBoxModel<Person> model = new DefaultComboBoxModel<>();
+        if (!text.isEmpty()) {
+            try {
+                List<Person> matches = repo.searchPersons(text, SEARCH_LIMIT);
+                model.addAll(matches);
+                if (!matches.isEmpty()) model.setSelectedItem(matches.get(0));
+            } catch (Exception ex) {
+                Metrics.error("ui.search", ex);
+            }
+        }
+        results.setModel(model);
+    }
+
     private void onOk() {
         Person parent = (Person) parentCombo.getSelectedItem();
         Person child = (Person) childCombo.getSelectedItem();
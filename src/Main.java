@@ -3,33 +3,29 @@ import javax.swing.UIManager;
 
 public class Main {
     public static void main(String[] args) {
+        if (args.length > 0) {
+            System.exit(runCommand(args));
+        }
+
         SwingUtilities.invokeLater(() -> {
             try {
                 UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
             } catch (Exception ignored) {}
 
+            Metrics.exposeJmx();
+
             // --- Open database connection and keep it alive during GUI lifetime ---
             Database db = new Database("familytree3.db");
             try {
+                long t = System.nanoTime();
                 db.connect();
-                db.runMigrations();
+                t = phase("connect", t);
 
                 FamilyTree tree = new FamilyTree();
                 FamilyTreeRepository repo = new FamilyTreeRepository(db);
 
-                // Load data from the database into memory
-                for (Person p : repo.loadAllPersons()) {
-                    tree.addPerson(p);
-                }
-                for (ParentChildLink link : repo.loadAllParentChildLinks()) {
-                    tree.linkParentChild(link.getParentId(), link.getChildId(), link.isAdopted());
-                }
-                for (UnionRecord u : repo.loadAllUnions()) {
-                    tree.addUnion(u);
-                }
-
                 // --- Launch main GUI window ---
-                FamilyTreeFrame frame = new FamilyTreeFrame(tree, repo);
+                FamilyTreeFrame frame = new FamilyTreeFrame(tree, repo, new PagedPersonListModel(db, repo));
 
                 // Close DB cleanly when window exits
                 frame.addWindowListener(new java.awt.event.WindowAdapter() {
@@ -40,9 +36,13 @@ public class Main {
                 });
 
                 frame.setVisible(true);
+                phase("window", t);
+
+                // Bring the schema up to date, then load data into memory, without blocking the EDT
+                frame.migrateInBackground(db, MIGRATION_PROGRESS);
 
             } catch (Exception ex) {
-                ex.printStackTrace();
+                Metrics.error("startup", ex);
                 javax.swing.JOptionPane.showMessageDialog(
                         null,
                         "Database error: " + ex.getMessage(),
@@ -53,4 +53,129 @@ public class Main {
             }
         });
     }
+
+    // --- Headless commands: GEDCOM import/export without opening the window ---
+    private static int runCommand(String[] args) {
+        String usage = "Usage: Main --import <file.ged> | --export <file.ged> [5.5.1|7.0] | --generate <people> [seed]"
+                + " | --serve [port] | --duplicates [limit] | --merge <keepId> <duplicateId> | --check";
+        if (args.length < 2 && !args[0].equals("--serve") && !args[0].equals("--duplicates") && !args[0].equals("--check")) {
+            System.err.println(usage);
+            return 2;
+        }
+        try (Database db = new Database("familytree3.db")) {
+            long t = System.nanoTime();
+            db.connect();
+            t = phase("connect", t);
+            db.runMigrations(MIGRATION_PROGRESS);
+            phase("migrate", t);
+            FamilyTreeRepository repo = new FamilyTreeRepository(db);
+            if (args[0].equals("--generate")) {
+                long seed = args.length > 2 ? Long.parseLong(args[2]) : 1L;
+                System.out.println(new DatasetGenerator(seed).writeTo(db, repo, Integer.parseInt(args[1])));
+                return 0;
+            }
+            if (args[0].equals("--serve")) {
+                return serve(db, repo, args.length > 1 ? Integer.parseInt(args[1]) : TreeServer.DEFAULT_PORT);
+            }
+            if (args[0].equals("--duplicates")) {
+                FamilyTree tree = new TreeLoader(db, repo).load((done, total) -> {});
+                long start = System.nanoTime();
+                java.util.List<MergeCandidate> found = new DuplicateFinder(tree).find(args.length > 1 ? Integer.parseInt(args[1]) : 100);
+                found.forEach(System.out::println);
+                System.out.printf("%,d candidates among %,d people in %,d ms%n",
+                        found.size(), tree.listPeople().size(), (System.nanoTime() - start) / 1_000_000);
+                return 0;
+            }
+            if (args[0].equals("--check")) {
+                FamilyTree tree = new TreeLoader(db, repo).load((done, total) -> {});
+                long start = System.nanoTime();
+                java.util.List<IntegrityIssue> found = new IntegrityScanner(tree).scan();
+                found.forEach(System.out::println);
+                System.out.printf("%,d issues among %,d people and %,d links in %,d ms%n",
+                        found.size(), tree.listPeople().size(), tree.linkCount(), (System.nanoTime() - start) / 1_000_000);
+                return 0;
+            }
+            if (args[0].equals("--merge")) {
+                if (args.length < 3) {
+                    System.err.println(usage);
+                    return 2;
+                }
+                int moved = repo.mergePersons(java.util.UUID.fromString(args[1]), java.util.UUID.fromString(args[2]));
+                System.out.printf("Merged %s into %s; %,d links and unions moved%n", args[2], args[1], moved);
+                return 0;
+            }
+            java.nio.file.Path file = java.nio.file.Path.of(args[1]);
+            switch (args[0]) {
+                case "--import" -> System.out.println(new GedcomImporter(db, repo).importFile(file));
+                case "--export" -> {
+                    GedcomExporter.Version version = args.length > 2 && args[2].startsWith("5")
+                            ? GedcomExporter.Version.GEDCOM_5_5_1 : GedcomExporter.Version.GEDCOM_7_0;
+                    long start = System.nanoTime();
+                    int n = new GedcomExporter(db).export(file, version);
+                    System.out.printf("Exported %,d people in %,d ms%n", n, (System.nanoTime() - start) / 1_000_000);
+                }
+                default -> {
+                    System.err.println(usage);
+                    return 2;
+                }
+            }
+            return 0;
+        } catch (Exception ex) {
+            Metrics.error("command", ex);
+            return 1;
+        } finally {
+            if (Metrics.enabled()) System.err.print(Metrics.dump());
+        }
+    }
+
+    // Headless query service on localhost; runs until the process is stopped
+    private static int serve(Database db, FamilyTreeRepository repo, int port) throws Exception {
+        Metrics.exposeJmx();
+        long start = System.nanoTime();
+        ConcurrentFamilyTree tree = new ConcurrentFamilyTree(new FamilyTree());
+        TreeSync sync = new TreeSync(db, repo, tree);
+        FamilyTree loaded = sync.load((done, total) -> {});
+        long t = System.nanoTime();
+        TreeServer server = new TreeServer(tree, repo, new java.net.InetSocketAddress(java.net.InetAddress.getLoopbackAddress(), port));
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        server.start();
+        // Writes from other processes reach the served tree within a second
+        java.util.concurrent.ScheduledExecutorService poller = java.util.concurrent.Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread th = new Thread(r, "tree-sync");
+            th.setDaemon(true);
+            return th;
+        });
+        poller.scheduleWithFixedDelay(() -> {
+            try {
+                sync.poll();
+            } catch (Exception ex) {
+                Metrics.error("serve.sync", ex);
+            }
+        }, 1, 1, java.util.concurrent.TimeUnit.SECONDS);
+        phase("listen", t);
+        System.out.printf("Loaded %,d people in %,d ms; serving on http://localhost:%d/%n",
+                loaded.listPeople().size(), (System.nanoTime() - start) / 1_000_000, server.address().getPort());
+        Thread.currentThread().join();
+        return 0;
+    }
+
+    // Records the time since `since` as a startup phase and returns the current time
+    private static long phase(String name, long since) {
+        long now = System.nanoTime();
+        Metrics.timer("startup." + name).record(now - since);
+        return now;
+    }
+
+    private static final Database.MigrationProgress MIGRATION_PROGRESS = new Database.MigrationProgress() {
+        @Override
+        public void update(String table, long copied, long total) {
+            System.out.printf("Converting %s to the compact layout: %,d / %,d rows%n", table, copied, total);
+        }
+
+        @Override
+        public void unconverted(String table, String column, long count, java.util.List<String> examples) {
+            System.err.printf("Warning: %,d values of %s.%s are not dates and were left empty, e.g. %s%n",
+                    count, table, column, examples);
+        }
+    };
 }
@@ -0,0 +1,11 @@
+/**
+ * Two people who are probably the same person. Score is between 0 and 1;
+ * sharedRelatives counts parents, children and spouses found on both sides.
+ */
+public record MergeCandidate(Person a, Person b, double score, int sharedRelatives) {
+    @Override
+    public String toString() {
+        return String.format("%.3f  %s [%s]  <->  %s [%s]  (%d shared relatives)",
+                score, a, a.getId(), b, b.getId(), sharedRelatives);
+    }
+}
@@ -0,0 +1,212 @@
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide timers, cache counters and error counts. Off by default
+ * ({@code -Dfamilytree.metrics=true} or the JMX Enabled attribute turns it
+ * on); when off, an instrumented call costs one volatile read. Call sites
+ * keep their metric in a static final field:
+ * <pre>
+ * private static final Metrics.Timer LOAD = Metrics.timer("sql.loadAllPersons");
+ * long t = Metrics.start();
+ * ...
+ * LOAD.stop(t, rows);
+ * </pre>
+ * Everything is readable as a text {@link #dump()} and, after
+ * {@link #exposeJmx()}, as MBeans under the {@code familytree} domain.
+ */
+public final class Metrics {
+    private static final String DOMAIN = "familytree";
+
+    private static volatile boolean enabled = Boolean.getBoolean("familytree.metrics");
+    private static volatile MBeanServer jmx;
+
+    private static final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private static final Map<String, Cache> caches = new ConcurrentHashMap<>();
+    private static final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+    private Metrics() {}
+
+    public interface ControlMXBean {
+        boolean isEnabled();
+        void setEnabled(boolean enabled);
+        String dump();
+        void reset();
+    }
+
+    public interface TimerMXBean {
+        long getCount();
+        long getRows();
+        double getMeanMillis();
+        double getP50Millis();
+        double getP99Millis();
+        double getP999Millis();
+        double getMaxMillis();
+    }
+
+    public interface CacheMXBean {
+        long getHits();
+        long getMisses();
+        double getHitRatio();
+    }
+
+    /** Latency histogram plus a row count for one operation. */
+    public static final class Timer implements TimerMXBean {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder rows = new LongAdder();
+
+        private Timer() {}
+
+        /** Records the time since {@code start} from {@link Metrics#start()}; no-op when that was 0. */
+        public void stop(long start) {
+            if (start != 0) latency.record(System.nanoTime() - start);
+        }
+
+        public void stop(long start, long rowCount) {
+            if (start == 0) return;
+            latency.record(System.nanoTime() - start);
+            rows.add(rowCount);
+        }
+
+        /** Records a duration whether or not metrics are on; for rare events such as startup phases. */
+        public void record(long nanos) {
+            latency.record(nanos);
+        }
+
+        @Override public long getCount() { return latency.count(); }
+        @Override public long getRows() { return rows.sum(); }
+        @Override public double getMeanMillis() { return latency.mean() / 1e6; }
+        @Override public double getP50Millis() { return latency.percentile(0.50) / 1e6; }
+        @Override public double getP99Millis() { return latency.percentile(0.99) / 1e6; }
+        @Override public double getP999Millis() { return latency.percentile(0.999) / 1e6; }
+        @Override public double getMaxMillis() { return latency.max() / 1e6; }
+
+        private void reset() {
+            latency.reset();
+            rows.reset();
+        }
+    }
+
+    public static final class Cache implements CacheMXBean {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+
+        private Cache() {}
+
+        public void hit() {
+            if (enabled) hits.increment();
+        }
+
+        public void miss() {
+            if (enabled) misses.increment();
+        }
+
+        @Override public long getHits() { return hits.sum(); }
+        @Override public long getMisses() { return misses.sum(); }
+
+        @Override
+        public double getHitRatio() {
+            long h = hits.sum(), total = h + misses.sum();
+            return total == 0 ? 0 : (double) h / total;
+        }
+
+        private void reset() {
+            hits.reset();
+            misses.reset();
+        }
+    }
+
+    public static boolean enabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    /** Start time for {@link Timer#stop}, or 0 when metrics are off. */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public static Timer timer(String name) {
+        return timers.computeIfAbsent(name, n -> register("Timer", n, new Timer()));
+    }
+
+    public static Cache cache(String name) {
+        return caches.computeIfAbsent(name, n -> register("Cache", n, new Cache()));
+    }
+
+    /** Counts an error under {@code where}, whether or not metrics are on, and prints it. */
+    public static void error(String where, Throwable t) {
+        errors.computeIfAbsent(where, w -> new LongAdder()).increment();
+        t.printStackTrace();
+    }
+
+    public static void reset() {
+        timers.values().forEach(Timer::reset);
+        caches.values().forEach(Cache::reset);
+        errors.clear();
+    }
+
+    public static String dump() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("metrics ").append(enabled ? "on" : "off").append('\n');
+        sb.append(String.format("%-34s %10s %12s %9s %9s %9s %9s %9s%n",
+                "timer (ms)", "count", "rows", "mean", "p50", "p99", "p99.9", "max"));
+        new TreeMap<>(timers).forEach((name, t) -> {
+            if (t.getCount() == 0) return;
+            sb.append(String.format("%-34s %,10d %,12d %9.3f %9.3f %9.3f %9.3f %9.3f%n", name, t.getCount(), t.getRows(),
+                    t.getMeanMillis(), t.getP50Millis(), t.getP99Millis(), t.getP999Millis(), t.getMaxMillis()));
+        });
+        sb.append(String.format("%-34s %10s %12s %9s%n", "cache", "hits", "misses", "ratio"));
+        new TreeMap<>(caches).forEach((name, c) -> {
+            if (c.getHits() + c.getMisses() == 0) return;
+            sb.append(String.format("%-34s %,10d %,12d %8.1f%%%n", name, c.getHits(), c.getMisses(), c.getHitRatio() * 100));
+        });
+        if (!errors.isEmpty()) {
+            sb.append("errors\n");
+            new TreeMap<>(errors).forEach((where, n) -> sb.append(String.format("  %-32s %,10d%n", where, n.sum())));
+        }
+        return sb.toString();
+    }
+
+    /** Registers the control MBean and every metric, present and future, with the platform MBean server. */
+    public static synchronized void exposeJmx() {
+        if (jmx != null) return;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ControlMXBean control = new ControlMXBean() {
+            @Override public boolean isEnabled() { return enabled; }
+            @Override public void setEnabled(boolean on) { enabled = on; }
+            @Override public String dump() { return Metrics.dump(); }
+            @Override public void reset() { Metrics.reset(); }
+        };
+        try {
+            server.registerMBean(control, new ObjectName(DOMAIN + ":type=Metrics"));
+        } catch (JMException e) {
+            error("metrics.jmx", e);
+            return;
+        }
+        jmx = server;
+        timers.forEach((name, t) -> register("Timer", name, t));
+        caches.forEach((name, c) -> register("Cache", name, c));
+    }
+
+    private static <T> T register(String type, String name, T bean) {
+        MBeanServer server = jmx;
+        if (server == null) return bean;
+        try {
+            ObjectName on = new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+            if (!server.isRegistered(on)) server.registerMBean(bean, on);
+        } catch (JMException e) {
+            error("metrics.jmx", e);
+        }
+        return bean;
+    }
+}
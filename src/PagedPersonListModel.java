@@ -0,0 +1,168 @@
+import javax.swing.*;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A ListModel over the Person table that only holds the pages the JList has
+ * asked for. Missing rows read as null while a background thread fetches
+ * their page (plus one page of read-ahead) on its own read-only connection.
+ * Pages after a cached page are fetched by keyset; jumps use OFFSET.
+ */
+public class PagedPersonListModel extends AbstractListModel<Person> implements AutoCloseable {
+    private static final int PAGE_SIZE = 200;
+    private static final int MAX_CACHED_PAGES = 64;
+
+    private final Database db;
+    private final FamilyTreeRepository repo;
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "person-list-loader");
+        t.setDaemon(true);
+        return t;
+    });
+    private Connection conn; // only touched on the loader thread
+
+    // EDT-only state
+    private PersonSort sort = PersonSort.NAME;
+    private int size;
+    private int version;
+    private final Set<Integer> requested = new HashSet<>();
+    private final Map<Integer, List<Person>> pages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<Person>> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+
+    public PagedPersonListModel(Database db, FamilyTreeRepository repo) {
+        this.db = db;
+        this.repo = repo;
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public Person getElementAt(int index) {
+        int page = index / PAGE_SIZE;
+        List<Person> rows = pages.get(page);
+        if (rows == null) {
+            request(page);
+            return null;
+        }
+        if ((index + PAGE_SIZE / 2) / PAGE_SIZE > page) request(page + 1);
+        int i = index - page * PAGE_SIZE;
+        return i < rows.size() ? rows.get(i) : null;
+    }
+
+    public PersonSort getSort() {
+        return sort;
+    }
+
+    public void setSort(PersonSort sort) {
+        if (this.sort == sort) return;
+        this.sort = Objects.requireNonNull(sort, "sort");
+        refresh();
+    }
+
+    /** Drops cached pages and re-reads the row count; visible rows reload on demand. */
+    public void refresh() {
+        int v = ++version;
+        pages.clear();
+        requested.clear();
+        loader.submit(() -> {
+            try {
+                long count = repo.countPersons(connection());
+                SwingUtilities.invokeLater(() -> {
+                    if (v == version) resize((int) count);
+                });
+            } catch (SQLException ex) {
+                Metrics.error("ui.personCount", ex);
+            }
+        });
+    }
+
+    /**
+     * Applies changed people without re-counting the table. previous holds
+     * each person as it was before, or null if new; size is the row count
+     * now. When no row was added and no sort key changed, the people are
+     * swapped into the pages that hold them; otherwise the cached pages are
+     * dropped and the visible ones reload.
+     */
+    public void applyChanges(List<Person> previous, List<Person> current, int size) {
+        boolean moved = size != this.size;
+        Map<UUID, Person> changed = new HashMap<>();
+        for (int i = 0; i < current.size() && !moved; i++) {
+            Person before = previous.get(i), after = current.get(i);
+            moved = before == null || !Arrays.deepEquals(sort.keyOf(before), sort.keyOf(after));
+            changed.put(after.getId(), after);
+        }
+        if (moved) {
+            version++;
+            pages.clear();
+            requested.clear();
+            resize(size);
+            return;
+        }
+        for (Map.Entry<Integer, List<Person>> page : pages.entrySet()) {
+            List<Person> rows = page.getValue();
+            for (int i = 0; i < rows.size(); i++) {
+                Person p = changed.get(rows.get(i).getId());
+                if (p == null) continue;
+                rows.set(i, p);
+                int index = page.getKey() * PAGE_SIZE + i;
+                fireContentsChanged(this, index, index);
+            }
+        }
+    }
+
+    private void resize(int newSize) {
+        int old = size;
+        size = newSize;
+        if (old > 0) fireIntervalRemoved(this, 0, old - 1);
+        if (size > 0) fireIntervalAdded(this, 0, size - 1);
+    }
+
+    private void request(int page) {
+        if (page * PAGE_SIZE >= size || pages.containsKey(page) || !requested.add(page)) return;
+        int v = version;
+        PersonSort s = sort;
+        List<Person> previous = pages.get(page - 1);
+        Person after = previous == null || previous.size() < PAGE_SIZE ? null : previous.get(PAGE_SIZE - 1);
+        loader.submit(() -> {
+            try {
+                List<Person> rows = repo.findPersonsPage(connection(), s, after, page * PAGE_SIZE, PAGE_SIZE);
+                SwingUtilities.invokeLater(() -> {
+                    if (v != version) return;
+                    requested.remove(page);
+                    pages.put(page, rows);
+                    int first = page * PAGE_SIZE;
+                    int last = Math.min(size, first + PAGE_SIZE) - 1;
+                    if (last >= first) fireContentsChanged(this, first, last);
+                });
+            } catch (SQLException ex) {
+                SwingUtilities.invokeLater(() -> requested.remove(page));
+                Metrics.error("ui.personPage", ex);
+            }
+        });
+    }
+
+    private Connection connection() throws SQLException {
+        if (conn == null) conn = db.openReadConnection();
+        return conn;
+    }
+
+    @Override
+    public void close() {
+        loader.submit(() -> {
+            if (conn != null) {
+                try { conn.close(); } catch (Exception ignored) {}
+            }
+        });
+        loader.shutdown();
+    }
+}
@@ -1,6 +1,7 @@
 import java.util.UUID;
 
 public class ParentChildLink {
+    private UUID id; // null until stored, or when the caller does not care
     private UUID parentId;
     private UUID childId;
     private boolean adopted;
@@ -11,6 +12,14 @@ public class ParentChildLink {
         this.adopted = adopted;
     }
 
+    public ParentChildLink(UUID id, UUID parentId, UUID childId, boolean adopted) {
+        this(parentId, childId, adopted);
+        this.id = id;
+    }
+
+    public UUID getId() { return id; }
+    public void setId(UUID id) { this.id = id; }
+
     public UUID getParentId() { return parentId; }
     public void setParentId(UUID parentId) { this.parentId = parentId; }
 
@@ -2,6 +2,9 @@ import java.time.LocalDate;
 import java.util.UUID;
 
 public class Person {
+    /** Longest life assumed when only one of the birth and death dates is known: 110 years. */
+    public static final int MAX_LIFESPAN_DAYS = 40_177;
+
     private UUID id;
     private String givenName;
     private String familyName;
@@ -9,6 +12,8 @@ public class Person {
     private Sex sex = Sex.UNKNOWN;
     private LocalDate birthDate;
     private LocalDate deathDate;
+    private int birthDatePrecision = SqlCodec.DAY;
+    private int deathDatePrecision = SqlCodec.DAY;
     private String birthPlace;
     private String notes;
 
@@ -39,10 +44,21 @@ public class Person {
     public void setSex(Sex sex) { this.sex = sex; }
 
     public LocalDate getBirthDate() { return birthDate; }
-    public void setBirthDate(LocalDate birthDate) { this.birthDate = birthDate; }
+    public void setBirthDate(LocalDate birthDate) { setBirthDate(birthDate, SqlCodec.DAY); }
+    /** A date known only to the month or year is its first day with SqlCodec.MONTH or YEAR precision. */
+    public void setBirthDate(LocalDate birthDate, int precision) {
+        this.birthDate = birthDate;
+        this.birthDatePrecision = precision;
+    }
+    public int getBirthDatePrecision() { return birthDatePrecision; }
 
     public LocalDate getDeathDate() { return deathDate; }
-    public void setDeathDate(LocalDate deathDate) { this.deathDate = deathDate; }
+    public void setDeathDate(LocalDate deathDate) { setDeathDate(deathDate, SqlCodec.DAY); }
+    public void setDeathDate(LocalDate deathDate, int precision) {
+        this.deathDate = deathDate;
+        this.deathDatePrecision = precision;
+    }
+    public int getDeathDatePrecision() { return deathDatePrecision; }
 
     public String getBirthPlace() { return birthPlace; }
     public void setBirthPlace(String birthPlace) { this.birthPlace = birthPlace; }
@@ -59,6 +75,33 @@ public class Person {
         return deathDate != null;
     }
 
+    /**
+     * Born on or before date and not dead before it. When only one of the two
+     * dates is known the other is taken to be {@link #MAX_LIFESPAN_DAYS} away;
+     * with neither known, or a death before the birth, the answer is false.
+     */
+    public boolean isAliveOn(LocalDate date) {
+        return isAliveBetween(date, date);
+    }
+
+    /** Alive on at least one day from {@code from} to {@code to}, inclusive, by the rules of {@link #isAliveOn}. */
+    public boolean isAliveBetween(LocalDate from, LocalDate to) {
+        LocalDate first = lifeStart(), last = lifeEnd();
+        return first != null && !last.isBefore(first) && !first.isAfter(to) && !last.isBefore(from);
+    }
+
+    /** First day of the assumed lifespan, or null if no date is known. */
+    LocalDate lifeStart() {
+        if (birthDate != null) return birthDate;
+        return deathDate == null ? null : deathDate.minusDays(MAX_LIFESPAN_DAYS);
+    }
+
+    /** Last day of the assumed lifespan, or null if no date is known. */
+    LocalDate lifeEnd() {
+        if (deathDate != null) return deathDate;
+        return birthDate == null ? null : birthDate.plusDays(MAX_LIFESPAN_DAYS);
+    }
+
     @Override
     public String toString() {
         return getFullName();
@@ -0,0 +1,37 @@
+/**
+ * Parent/child edges between people identified by dense int ordinals.
+ * Each neighbour is encoded as {@code ordinal << 1 | adopted} so the adoption
+ * flag travels with the edge without a second array.
+ */
+interface PersonGraph {
+    int[] NONE = new int[0];
+
+    static int edge(int node, boolean adopted) { return node << 1 | (adopted ? 1 : 0); }
+    static int node(int edge) { return edge >>> 1; }
+    static boolean adopted(int edge) { return (edge & 1) != 0; }
+
+    void addEdge(int parent, int child, boolean adopted);
+
+    /** Removes every edge from parent to child; returns how many there were. */
+    int removeEdges(int parent, int child);
+
+    /** Encoded edges to the children of node; the caller may not modify the array. */
+    int[] children(int node);
+
+    /** Encoded edges to the parents of node; the caller may not modify the array. */
+    int[] parents(int node);
+
+    int edgeCount();
+
+    /** An independent graph with the same edges; later changes to either are not seen by the other. */
+    PersonGraph copy();
+
+    /** Folds any buffered edges into the primary layout. */
+    default void pack() {}
+
+    /**
+     * Packs as much as needed for queries never to change the graph, so it
+     * can be shared between threads; small buffers are left to be scanned.
+     */
+    default void seal() {}
+}
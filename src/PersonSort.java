@@ -0,0 +1,43 @@
+/** Orderings for paging through the Person table; each ends with id so the order is total. */
+public enum PersonSort {
+    NAME("COALESCE(familyName, '')", "COALESCE(givenName, '')", "id"),
+    BIRTH_DATE("COALESCE(birthDate >> 2, " + SqlCodec.NO_DATE + ")", "id"); // by day, whatever the precision
+
+    private final String[] keyColumns;
+
+    PersonSort(String... keyColumns) {
+        this.keyColumns = keyColumns;
+    }
+
+    /** Comma-separated key expressions; the matching expression indexes are created in Database. */
+    String keySql() {
+        return String.join(", ", keyColumns);
+    }
+
+    /**
+     * WHERE clause selecting rows after a key bound to keyOf parameters. The
+     * redundant leading-column term lets SQLite seek the expression index,
+     * which it does not do for a row-value comparison on expressions alone.
+     */
+    String afterKeySql() {
+        return keyColumns[0] + " >= ? AND (" + keySql() + ") > (?" + ",?".repeat(keyColumns.length - 1) + ")";
+    }
+
+    /** The key values of p, in keySql order, for keyset pagination. */
+    Object[] keyOf(Person p) {
+        return switch (this) {
+            case NAME -> new Object[]{
+                    p.getFamilyName() == null ? "" : p.getFamilyName(),
+                    p.getGivenName() == null ? "" : p.getGivenName(),
+                    SqlCodec.id(p.getId())};
+            case BIRTH_DATE -> new Object[]{
+                    p.getBirthDate() == null ? SqlCodec.NO_DATE : p.getBirthDate().toEpochDay(),
+                    SqlCodec.id(p.getId())};
+        };
+    }
+
+    @Override
+    public String toString() {
+        return this == NAME ? "Sort by name" : "Sort by birth date";
+    }
+}
@@ -0,0 +1,41 @@
+import java.text.Normalizer;
+import java.util.Locale;
+
+/** Phonetic keys for matching spelling variants of names, e.g. "Schmidt" and "Smith". */
+public final class Phonetics {
+    //                                     ABCDEFGHIJKLMNOPQRSTUVWXYZ
+    private static final String SOUNDEX = "01230120022455012623010202";
+
+    private Phonetics() {}
+
+    /**
+     * American Soundex of the first word of name: a letter and three digits,
+     * or null when name has no latin letters. Diacritics are folded first.
+     */
+    public static String soundex(String name) {
+        if (name == null) return null;
+        String s = Normalizer.normalize(name, Normalizer.Form.NFD).toUpperCase(Locale.ROOT);
+
+        char[] key = new char[4];
+        int len = 0;
+        char last = 0;
+        for (int i = 0; i < s.length() && len < 4; i++) {
+            char c = s.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                if (len > 0 && Character.isWhitespace(c)) break;
+                continue;
+            }
+            char code = SOUNDEX.charAt(c - 'A');
+            if (len == 0) {
+                key[len++] = c;
+            } else if (code != '0' && code != last) {
+                key[len++] = code;
+            }
+            // H and W do not separate letters with the same code; vowels do
+            if (c != 'H' && c != 'W') last = code;
+        }
+        if (len == 0) return null;
+        while (len < 4) key[len++] = '0';
+        return new String(key);
+    }
+}
@@ -0,0 +1,80 @@
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * At most {@code size} read-only connections, opened on first demand and
+ * reused afterwards. Borrowers beyond that wait for a connection to be returned.
+ */
+final class ReadConnectionPool implements AutoCloseable {
+    @FunctionalInterface
+    interface Opener {
+        Connection open() throws SQLException;
+    }
+
+    private static final long ACQUIRE_TIMEOUT_SECONDS = 30;
+    private static final Metrics.Cache REUSE = Metrics.cache("db.readPool");
+    private static final Metrics.Timer WAIT = Metrics.timer("db.readPool.wait");
+
+    private final Opener opener;
+    private final Semaphore permits;
+    private final BlockingQueue<Connection> idle;
+    private volatile boolean closed;
+
+    ReadConnectionPool(Opener opener, int size) {
+        if (size < 1) throw new IllegalArgumentException("Pool size must be positive: " + size);
+        this.opener = opener;
+        this.permits = new Semaphore(size, true);
+        this.idle = new ArrayBlockingQueue<>(size);
+    }
+
+    Connection acquire() throws SQLException {
+        if (closed) throw new SQLException("Read pool is closed");
+        long t = Metrics.start();
+        try {
+            if (!permits.tryAcquire(ACQUIRE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new SQLException("Timed out waiting for a read connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for a read connection", e);
+        }
+        try {
+            WAIT.stop(t);
+            Connection c = idle.poll();
+            if (c != null && !c.isClosed()) {
+                REUSE.hit();
+                return c;
+            }
+            REUSE.miss();
+            return opener.open();
+        } catch (SQLException | RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    void release(Connection c) {
+        try {
+            if (closed || c.isClosed() || !idle.offer(c)) close(c);
+        } catch (SQLException ex) {
+            close(c);
+        } finally {
+            permits.release();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Connection c;
+        while ((c = idle.poll()) != null) close(c);
+    }
+
+    private static void close(Connection c) {
+        try { c.close(); } catch (Exception ignored) {}
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * How one person is related to another by blood or adoption. {@code up} counts
+ * generations from the first person to the closest common ancestor,
+ * {@code down} from the second person; {@link #describe()} names the first
+ * person relative to the second.
+ */
+public record Relationship(Person person, Person relative, int up, int down, boolean half, boolean adoptive) {
+
+    public String describe() {
+        String label = label();
+        if (half) label = "half-" + label;
+        if (adoptive) label = "adoptive " + label;
+        return label;
+    }
+
+    private String label() {
+        Sex sex = person.getSex();
+        if (up == 0 && down == 0) return "self";
+        if (up == 0) return lineal(down, gendered(sex, "father", "mother", "parent"), gendered(sex, "grandfather", "grandmother", "grandparent"));
+        if (down == 0) return lineal(up, gendered(sex, "son", "daughter", "child"), gendered(sex, "grandson", "granddaughter", "grandchild"));
+        if (up == 1 && down == 1) return gendered(sex, "brother", "sister", "sibling");
+        if (up == 1) return greats(down - 2, gendered(sex, "uncle", "aunt", "aunt/uncle"));
+        if (down == 1) return greats(up - 2, gendered(sex, "nephew", "niece", "niece/nephew"));
+
+        int degree = Math.min(up, down) - 1;
+        int removed = Math.abs(up - down);
+        String cousin = ordinal(degree) + " cousin";
+        return switch (removed) {
+            case 0 -> cousin;
+            case 1 -> cousin + " once removed";
+            case 2 -> cousin + " twice removed";
+            default -> cousin + " " + removed + " times removed";
+        };
+    }
+
+    private static String lineal(int generations, String first, String grand) {
+        return generations == 1 ? first : greats(generations - 2, grand);
+    }
+
+    // 0 -> "x", 1 -> "great-x", 2 -> "2nd great-x", ...
+    private static String greats(int n, String base) {
+        if (n == 0) return base;
+        if (n == 1) return "great-" + base;
+        return ordinal(n) + " great-" + base;
+    }
+
+    private static String gendered(Sex sex, String male, String female, String neutral) {
+        if (sex == Sex.MALE) return male;
+        if (sex == Sex.FEMALE) return female;
+        return neutral;
+    }
+
+    private static String ordinal(int n) {
+        int mod100 = n % 100;
+        String suffix = (mod100 >= 11 && mod100 <= 13) ? "th" : switch (n % 10) {
+            case 1 -> "st";
+            case 2 -> "nd";
+            case 3 -> "rd";
+            default -> "th";
+        };
+        return n + suffix;
+    }
+
+    @Override
+    public String toString() {
+        return person.getFullName() + " is the " + describe() + " of " + relative.getFullName();
+    }
+}
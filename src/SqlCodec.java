@@ -0,0 +1,82 @@
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Column encodings of the compact schema. Ids are 16-byte big-endian BLOBs.
+ * Dates are integers {@code epochDay << 2 | precision}: they sort by day, and
+ * a partial date (month or year only) is stored as its first day with
+ * {@link #MONTH} or {@link #YEAR} precision.
+ */
+final class SqlCodec {
+    static final int DAY = 0;
+    static final int MONTH = 1;
+    static final int YEAR = 2;
+
+    /** Sorts after every real date; used where a missing date must sort last. */
+    static final long NO_DATE = Long.MAX_VALUE;
+
+    private SqlCodec() {}
+
+    static byte[] id(UUID id) {
+        if (id == null) return null;
+        byte[] b = new byte[16];
+        long hi = id.getMostSignificantBits();
+        long lo = id.getLeastSignificantBits();
+        for (int i = 0; i < 8; i++) {
+            b[i] = (byte) (hi >>> (56 - 8 * i));
+            b[i + 8] = (byte) (lo >>> (56 - 8 * i));
+        }
+        return b;
+    }
+
+    static UUID id(byte[] b) {
+        if (b == null) return null;
+        if (b.length != 16) throw new IllegalArgumentException("Not a 16-byte id: " + b.length + " bytes");
+        long hi = 0, lo = 0;
+        for (int i = 0; i < 8; i++) {
+            hi = hi << 8 | (b[i] & 0xFF);
+            lo = lo << 8 | (b[i + 8] & 0xFF);
+        }
+        return new UUID(hi, lo);
+    }
+
+    static UUID id(ResultSet rs, int column) throws SQLException {
+        return id(rs.getBytes(column));
+    }
+
+    static void setId(PreparedStatement ps, int index, UUID id) throws SQLException {
+        if (id == null) ps.setNull(index, Types.BLOB);
+        else ps.setBytes(index, id(id));
+    }
+
+    static long date(LocalDate d, int precision) {
+        return d.toEpochDay() << 2 | precision;
+    }
+
+    static LocalDate date(long code) {
+        return LocalDate.ofEpochDay(code >> 2);
+    }
+
+    static int precision(long code) {
+        return (int) (code & 3);
+    }
+
+    static LocalDate date(ResultSet rs, int column) throws SQLException {
+        long code = rs.getLong(column);
+        return rs.wasNull() ? null : date(code);
+    }
+
+    /** Precision of the date in column; DAY when it is null. */
+    static int precision(ResultSet rs, int column) throws SQLException {
+        return precision(rs.getLong(column));
+    }
+
+    static void setDate(PreparedStatement ps, int index, LocalDate d, int precision) throws SQLException {
+        if (d == null) ps.setNull(index, Types.INTEGER);
+        else ps.setLong(index, date(d, precision));
+    }
+}
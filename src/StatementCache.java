@@ -0,0 +1,63 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Prepared statements of one connection, keyed by SQL text, least recently
+ * used evicted past {@code capacity}. Like the connection itself it is used
+ * by one thread at a time. Statements handed out belong to the cache:
+ * callers close their ResultSets but never the statement.
+ */
+final class StatementCache implements AutoCloseable {
+    private static final Metrics.Cache REUSE = Metrics.cache("db.statements");
+
+    private final Connection conn;
+    private final Map<String, PreparedStatement> statements;
+
+    StatementCache(Connection conn, int capacity) {
+        this.conn = conn;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= capacity) return false;
+                close(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    Connection connection() {
+        return conn;
+    }
+
+    /** A statement for sql with no parameters or pending batch left from its last use. */
+    PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement ps = statements.get(sql);
+        if (ps != null && !ps.isClosed()) {
+            REUSE.hit();
+            ps.clearParameters();
+            ps.clearBatch();
+            return ps;
+        }
+        REUSE.miss();
+        ps = conn.prepareStatement(sql);
+        statements.put(sql, ps);
+        return ps;
+    }
+
+    int size() {
+        return statements.size();
+    }
+
+    @Override
+    public void close() {
+        statements.values().forEach(StatementCache::close);
+        statements.clear();
+    }
+
+    private static void close(PreparedStatement ps) {
+        try { ps.close(); } catch (Exception ignored) {}
+    }
+}
@@ -0,0 +1,163 @@
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A topological order of the parent/child graph, ancestors first, kept
+ * current as edges are added (Pearce and Kelly, "A dynamic topological sort
+ * algorithm for directed acyclic graphs", 2006). With the order at hand a
+ * new edge parent to child is safe at once when the parent already comes
+ * first; otherwise only the people placed between the two are searched, and
+ * those the edge put out of order are moved, keeping their positions.
+ * Removing an edge never invalidates the order.
+ * <p>
+ * Copies share the arrays until either side changes them.
+ */
+final class TopologicalOrder {
+    private int[] pos;   // by ordinal
+    private int[] at;    // ordinal by position
+    private int size;
+    private boolean shared;
+
+    private TopologicalOrder(int[] pos, int[] at, int size) {
+        this.pos = pos;
+        this.at = at;
+        this.size = size;
+    }
+
+    /** Orders nodes 0..size-1 by Kahn's algorithm; null if the graph already has a cycle. */
+    static TopologicalOrder of(PersonGraph graph, int size) {
+        int[] pending = new int[size];
+        int[] at = new int[Math.max(16, size)];
+        int n = 0;
+        for (int node = 0; node < size; node++) {
+            pending[node] = graph.parents(node).length;
+            if (pending[node] == 0) at[n++] = node;
+        }
+        for (int i = 0; i < n; i++) {
+            for (int e : graph.children(at[i])) {
+                int child = PersonGraph.node(e);
+                if (--pending[child] == 0) at[n++] = child;
+            }
+        }
+        if (n < size) return null;
+        int[] pos = new int[at.length];
+        for (int i = 0; i < size; i++) pos[at[i]] = i;
+        return new TopologicalOrder(pos, at, size);
+    }
+
+    TopologicalOrder copy() {
+        shared = true;
+        TopologicalOrder c = new TopologicalOrder(pos, at, size);
+        c.shared = true;
+        return c;
+    }
+
+    /** Places a new node, which has no edges yet, last. */
+    void addNode(int node) {
+        if (node != size) throw new IllegalArgumentException("Nodes are added in ordinal order: " + node + " != " + size);
+        unshare();
+        if (size == at.length) {
+            at = Arrays.copyOf(at, size + (size >> 1));
+            pos = Arrays.copyOf(pos, at.length);
+        }
+        at[size] = node;
+        pos[node] = size++;
+    }
+
+    /** True if to is from or one of its descendants. */
+    boolean reaches(PersonGraph graph, int from, int to) {
+        if (from == to) return true;
+        if (pos[from] > pos[to]) return false;
+        return search(graph, from, to, new IntStack(), new BitSet());
+    }
+
+    /**
+     * Updates the order for a new edge from parent to child, before it is
+     * added to the graph. Returns false, leaving the order as it was, if the
+     * edge would close a cycle.
+     */
+    boolean addEdge(PersonGraph graph, int parent, int child) {
+        if (parent == child) return false;
+        int lower = pos[child], upper = pos[parent];
+        if (upper < lower) return true;
+
+        // Descendants of child placed no later than parent; reaching parent means a cycle
+        IntStack forward = new IntStack();
+        BitSet seen = new BitSet();
+        if (search(graph, child, parent, forward, seen)) return false;
+        // Ancestors of parent placed no earlier than child
+        IntStack backward = new IntStack();
+        backward.push(parent);
+        seen.set(parent);
+        for (int i = 0; i < backward.size; i++) {
+            for (int e : graph.parents(backward.items[i])) {
+                int up = PersonGraph.node(e);
+                if (pos[up] > lower && !seen.get(up)) {
+                    seen.set(up);
+                    backward.push(up);
+                }
+            }
+        }
+
+        // The ancestors take the lowest of the freed positions, in their old order, then the descendants
+        unshare();
+        int[] nodes = new int[backward.size + forward.size];
+        sortByPosition(backward);
+        sortByPosition(forward);
+        System.arraycopy(backward.items, 0, nodes, 0, backward.size);
+        System.arraycopy(forward.items, 0, nodes, backward.size, forward.size);
+        int[] slots = new int[nodes.length];
+        for (int i = 0; i < nodes.length; i++) slots[i] = pos[nodes[i]];
+        Arrays.sort(slots);
+        for (int i = 0; i < nodes.length; i++) {
+            pos[nodes[i]] = slots[i];
+            at[slots[i]] = nodes[i];
+        }
+        return true;
+    }
+
+    // Depth-first from start over nodes placed no later than target; collects them in visited
+    private boolean search(PersonGraph graph, int start, int target, IntStack visited, BitSet seen) {
+        int limit = pos[target];
+        IntStack stack = new IntStack();
+        stack.push(start);
+        seen.set(start);
+        while (stack.size > 0) {
+            int node = stack.items[--stack.size];
+            visited.push(node);
+            for (int e : graph.children(node)) {
+                int down = PersonGraph.node(e);
+                if (down == target) return true;
+                if (pos[down] < limit && !seen.get(down)) {
+                    seen.set(down);
+                    stack.push(down);
+                }
+            }
+        }
+        return false;
+    }
+
+    private void sortByPosition(IntStack nodes) {
+        long[] keyed = new long[nodes.size];
+        for (int i = 0; i < nodes.size; i++) keyed[i] = (long) pos[nodes.items[i]] << 32 | nodes.items[i];
+        Arrays.sort(keyed);
+        for (int i = 0; i < keyed.length; i++) nodes.items[i] = (int) keyed[i];
+    }
+
+    private void unshare() {
+        if (!shared) return;
+        pos = pos.clone();
+        at = at.clone();
+        shared = false;
+    }
+
+    private static final class IntStack {
+        int[] items = new int[16];
+        int size;
+
+        void push(int value) {
+            if (size == items.length) items = Arrays.copyOf(items, size << 1);
+            items[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Builds a FamilyTree from the database at startup. A {@link TreeSnapshot}
+ * taken at the database's current data version is opened directly; otherwise
+ * the three tables are decoded concurrently, each on its own read-only
+ * connection: people stream straight into the tree while links and unions are
+ * buffered compactly, then attached once every person has an ordinal. A fresh
+ * snapshot is written after a full load.
+ */
+public class TreeLoader {
+    /** Trees with more people than this use compact CSR edge storage. */
+    public static final long COMPACT_THRESHOLD = 100_000;
+
+    private static final Metrics.Cache SNAPSHOT = Metrics.cache("tree.snapshot");
+    private static final Metrics.Timer FROM_SNAPSHOT = Metrics.timer("startup.loadTree.snapshot");
+    private static final Metrics.Timer FROM_DATABASE = Metrics.timer("startup.loadTree.database");
+
+    @FunctionalInterface
+    public interface Progress {
+        void update(long rowsLoaded, long rowsTotal);
+    }
+
+    private final Database db;
+    private final FamilyTreeRepository repo;
+
+    public TreeLoader(Database db, FamilyTreeRepository repo) {
+        this.db = db;
+        this.repo = repo;
+    }
+
+    public FamilyTree load(Progress progress) throws SQLException, InterruptedException {
+        long start = System.nanoTime();
+        long personTotal, linkTotal, unionTotal;
+        DataVersion version;
+        try (Connection conn = db.openReadConnection()) {
+            version = repo.dataVersion(conn);
+            personTotal = repo.countPersons(conn);
+            linkTotal = repo.countParentChildLinks(conn);
+            unionTotal = repo.countUnions(conn);
+        }
+        long total = personTotal + linkTotal + unionTotal;
+
+        Path snapshot = TreeSnapshot.pathFor(db);
+        try {
+            FamilyTree cached = TreeSnapshot.open(snapshot, version);
+            if (cached != null) {
+                SNAPSHOT.hit();
+                FROM_SNAPSHOT.record(System.nanoTime() - start);
+                progress.update(total, total);
+                return cached;
+            }
+        } catch (IOException | RuntimeException ex) {
+            Metrics.error("tree.snapshot.read", ex); // unreadable snapshot: fall back to the database
+        }
+        SNAPSHOT.miss();
+        AtomicLong loaded = new AtomicLong();
+        Runnable tick = () -> {
+            long n = loaded.incrementAndGet();
+            if ((n & 0x3FFF) == 0) progress.update(n, total);
+        };
+
+        FamilyTree tree = new FamilyTree(personTotal > COMPACT_THRESHOLD);
+        tree.ensureCapacity((int) personTotal);
+        LinkBuffer links = new LinkBuffer((int) linkTotal);
+        List<UnionRecord> unions = new ArrayList<>((int) unionTotal);
+
+        ExecutorService pool = Executors.newFixedThreadPool(3, r -> {
+            Thread t = new Thread(r, "tree-loader");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            Future<?> persons = pool.submit(() -> {
+                try (Connection conn = db.openReadConnection()) {
+                    repo.forEachPerson(conn, p -> { tree.addPerson(p); tick.run(); });
+                }
+                return null;
+            });
+            Future<?> linkRows = pool.submit(() -> {
+                try (Connection conn = db.openReadConnection()) {
+                    repo.forEachParentChildLink(conn, l -> { links.add(l); tick.run(); });
+                }
+                return null;
+            });
+            Future<?> unionRows = pool.submit(() -> {
+                try (Connection conn = db.openReadConnection()) {
+                    repo.forEachUnion(conn, u -> { unions.add(u); tick.run(); });
+                }
+                return null;
+            });
+            await(persons);
+            await(linkRows);
+            await(unionRows);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        links.drainInto(tree);
+        tree.pack();
+        for (UnionRecord u : unions) {
+            tree.addUnion(u);
+        }
+        if (version != null) {
+            try {
+                TreeSnapshot.write(tree, version, snapshot);
+            } catch (IOException | RuntimeException ex) {
+                // Only a cache; the next start loads from the database again. Dates or
+                // string sizes past the format's int fields throw ArithmeticException
+                Metrics.error("tree.snapshot.write", ex);
+            }
+        }
+        FROM_DATABASE.record(System.nanoTime() - start);
+        progress.update(total, total);
+        return tree;
+    }
+
+    private static void await(Future<?> f) throws SQLException, InterruptedException {
+        try {
+            f.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException sql) throw sql;
+            throw new SQLException("Loading failed: " + e.getCause(), e.getCause());
+        }
+    }
+
+    // Four longs per link instead of a ParentChildLink with two UUID objects
+    private static final class LinkBuffer {
+        private long[] ids;
+        private final BitSet adopted = new BitSet();
+        private int size;
+
+        LinkBuffer(int expected) {
+            ids = new long[Math.max(16, expected) * 4];
+        }
+
+        void add(ParentChildLink l) {
+            if (size * 4 == ids.length) ids = Arrays.copyOf(ids, ids.length * 2);
+            int i = size * 4;
+            ids[i] = l.getParentId().getMostSignificantBits();
+            ids[i + 1] = l.getParentId().getLeastSignificantBits();
+            ids[i + 2] = l.getChildId().getMostSignificantBits();
+            ids[i + 3] = l.getChildId().getLeastSignificantBits();
+            if (l.isAdopted()) adopted.set(size);
+            size++;
+        }
+
+        void drainInto(FamilyTree tree) {
+            for (int k = 0; k < size; k++) {
+                int i = k * 4;
+                tree.tryLinkParentChild(new UUID(ids[i], ids[i + 1]), new UUID(ids[i + 2], ids[i + 3]), adopted.get(k));
+            }
+            ids = null;
+        }
+    }
+}
@@ -0,0 +1,328 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * Read-only JSON view of a {@link ConcurrentFamilyTree} over HTTP, one
+ * virtual thread per request. Every request queries the snapshot current
+ * when it arrived. Name search goes to the database through the pooled read
+ * connections. List endpoints stream their results with chunked encoding.
+ * <pre>
+ * GET /persons?offset=0&amp;limit=100
+ * GET /persons/{id}
+ * GET /persons/{id}/parents | children | siblings
+ * GET /persons/{id}/ancestors?depth=n | descendants?depth=n   (no depth: all generations)
+ * GET /generations/{n}?offset=0&amp;limit=100                      (0: people with no recorded parents)
+ * GET /relationship?a={id}&amp;b={id}
+ * GET /search?q=text&amp;limit=50
+ * GET /metrics                                                 (plain-text {@link Metrics#dump()})
+ * </pre>
+ */
+public final class TreeServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 8080;
+    private static final int BACKLOG = 1024;
+    private static final int DEFAULT_PAGE = 100;
+    private static final int DEFAULT_SEARCH_LIMIT = 50;
+    private static final Metrics.Timer REQUEST = Metrics.timer("server.request");
+
+    static {
+        // Headers and body go out as separate writes; with Nagle on, every
+        // keep-alive response after the first waits ~40 ms for a delayed ACK.
+        // Read once, when the first HttpServer is created.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    @FunctionalInterface
+    private interface Body {
+        void write(JsonWriter json) throws IOException, SQLException;
+    }
+
+    private static final class NotFound extends RuntimeException {
+        NotFound(String message) {
+            super(message);
+        }
+    }
+
+    // A streamed body failed after the 200 went out
+    private static final class StreamAborted extends IOException {
+        StreamAborted(Throwable cause) {
+            super(cause);
+        }
+    }
+
+    private final ConcurrentFamilyTree tree;
+    private final FamilyTreeRepository repo;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public TreeServer(ConcurrentFamilyTree tree, FamilyTreeRepository repo, InetSocketAddress address) throws IOException {
+        this.tree = tree;
+        this.repo = repo;
+        this.server = HttpServer.create(address, BACKLOG);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public InetSocketAddress address() {
+        return server.getAddress();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.close();
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        long t = Metrics.start();
+        boolean aborted = false;
+        try {
+            if (!ex.getRequestMethod().equals("GET")) {
+                ex.getResponseHeaders().set("Allow", "GET");
+                error(ex, 405, "Method not allowed");
+                return;
+            }
+            try {
+                route(ex);
+            } catch (StreamAborted e) {
+                // No status left to send: leave the body unterminated and throw, so the
+                // server drops the connection and the client sees a cut-off response
+                aborted = true;
+                Metrics.error("server", e.getCause());
+                throw e;
+            } catch (NotFound e) {
+                error(ex, 404, e.getMessage());
+            } catch (IllegalArgumentException e) {
+                error(ex, 400, e.getMessage());
+            } catch (IOException e) {
+                throw e; // client went away mid-response
+            } catch (Exception e) {
+                Metrics.error("server", e);
+                error(ex, 500, e.toString());
+            }
+        } finally {
+            if (!aborted) ex.close();
+            REQUEST.stop(t);
+        }
+    }
+
+    private void route(HttpExchange ex) throws IOException, SQLException {
+        String[] path = ex.getRequestURI().getPath().split("/");
+        Map<String, String> query = query(ex.getRequestURI().getRawQuery());
+        FamilyTree t = tree.snapshot();
+        if (path.length < 2) throw new NotFound("No such endpoint");
+
+        switch (path[1]) {
+            case "persons" -> {
+                if (path.length == 2) {
+                    int offset = intParam(query, "offset", 0);
+                    int limit = intParam(query, "limit", DEFAULT_PAGE);
+                    if (offset < 0 || limit < 0) throw new IllegalArgumentException("offset and limit must not be negative");
+                    List<Person> people = t.listPeople() instanceof List<Person> l ? l : List.copyOf(t.listPeople());
+                    int from = Math.min(offset, people.size());
+                    int to = (int) Math.min(people.size(), (long) from + limit);
+                    stream(ex, json -> persons(json, people.subList(from, to).iterator()));
+                    return;
+                }
+                UUID id = uuid(path[2]);
+                Person p = t.findPerson(id).orElseThrow(() -> new NotFound("No person " + id));
+                if (path.length == 3) {
+                    send(ex, json -> person(json, p));
+                    return;
+                }
+                if (path.length > 4) throw new NotFound("No such endpoint");
+                switch (path[3]) {
+                    case "parents" -> send(ex, json -> persons(json, t.getParentsOf(id).iterator()));
+                    case "children" -> send(ex, json -> persons(json, t.getChildrenOf(id).iterator()));
+                    case "siblings" -> send(ex, json -> persons(json, t.getSiblingsOf(id).iterator()));
+                    case "ancestors" -> lineage(ex, t.ancestorsOf(id, intParam(query, "depth", -1)));
+                    case "descendants" -> lineage(ex, t.descendantsOf(id, intParam(query, "depth", -1)));
+                    default -> throw new NotFound("No such endpoint");
+                }
+            }
+            case "generations" -> {
+                if (path.length != 3) throw new NotFound("No such endpoint");
+                int generation = intValue("generation", path[2]);
+                int offset = intParam(query, "offset", 0);
+                int limit = intParam(query, "limit", DEFAULT_PAGE);
+                if (offset < 0 || limit < 0) throw new IllegalArgumentException("offset and limit must not be negative");
+                Stream<Person> people = t.peopleInGeneration(generation).skip(offset).limit(limit);
+                stream(ex, json -> persons(json, people.iterator()));
+            }
+            case "relationship" -> {
+                UUID a = uuid(required(query, "a"));
+                UUID b = uuid(required(query, "b"));
+                if (t.findPerson(a).isEmpty()) throw new NotFound("No person " + a);
+                if (t.findPerson(b).isEmpty()) throw new NotFound("No person " + b);
+                Optional<Relationship> r = t.relationshipBetween(a, b);
+                send(ex, json -> {
+                    json.beginObject();
+                    json.name("related").value(r.isPresent());
+                    if (r.isPresent()) {
+                        json.name("description").value(r.get().describe());
+                        json.name("up").value(r.get().up());
+                        json.name("down").value(r.get().down());
+                        json.name("half").value(r.get().half());
+                        json.name("adoptive").value(r.get().adoptive());
+                        json.name("text").value(r.get().toString());
+                    }
+                    json.endObject();
+                });
+            }
+            case "metrics" -> {
+                byte[] text = Metrics.dump().getBytes(StandardCharsets.UTF_8);
+                ex.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+                ex.sendResponseHeaders(200, text.length);
+                try (OutputStream out = ex.getResponseBody()) {
+                    out.write(text);
+                }
+            }
+            case "search" -> {
+                List<Person> found = repo.searchPersons(required(query, "q"), intParam(query, "limit", DEFAULT_SEARCH_LIMIT));
+                send(ex, json -> persons(json, found.iterator()));
+            }
+            default -> throw new NotFound("No such endpoint");
+        }
+    }
+
+    private static void lineage(HttpExchange ex, Stream<LineageEntry> entries) throws IOException {
+        stream(ex, json -> {
+            json.beginArray();
+            Iterator<LineageEntry> it = entries.iterator();
+            while (it.hasNext()) {
+                LineageEntry e = it.next();
+                json.beginObject();
+                json.name("generation").value(e.generation());
+                json.name("person");
+                person(json, e.person());
+                json.endObject();
+            }
+            json.endArray();
+        });
+    }
+
+    private static void persons(JsonWriter json, Iterator<Person> people) throws IOException {
+        json.beginArray();
+        while (people.hasNext()) person(json, people.next());
+        json.endArray();
+    }
+
+    private static void person(JsonWriter json, Person p) throws IOException {
+        json.beginObject();
+        json.name("id").value(p.getId());
+        json.name("givenName").value(p.getGivenName());
+        json.name("middleNames").value(p.getMiddleNames());
+        json.name("familyName").value(p.getFamilyName());
+        json.name("sex").value(p.getSex());
+        json.name("birthDate").value(p.getBirthDate());
+        json.name("deathDate").value(p.getDeathDate());
+        json.name("birthPlace").value(p.getBirthPlace());
+        json.name("notes").value(p.getNotes());
+        json.endObject();
+    }
+
+    // Small bodies: buffered, sent with a Content-Length
+    private static void send(HttpExchange ex, Body body) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(512);
+        try (Writer w = new OutputStreamWriter(buf, StandardCharsets.UTF_8)) {
+            body.write(new JsonWriter(w));
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(200, buf.size());
+        try (OutputStream out = ex.getResponseBody()) {
+            buf.writeTo(out);
+        }
+    }
+
+    // Large bodies: chunked, written as they are produced
+    private static void stream(HttpExchange ex, Body body) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(200, 0);
+        Writer w = new BufferedWriter(new OutputStreamWriter(ex.getResponseBody(), StandardCharsets.UTF_8), 1 << 14);
+        try {
+            body.write(new JsonWriter(w));
+        } catch (Exception e) {
+            throw new StreamAborted(e); // closing w would end the chunked body as if it were complete
+        }
+        w.close();
+    }
+
+    private static void error(HttpExchange ex, int status, String message) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(128);
+        try (Writer w = new OutputStreamWriter(buf, StandardCharsets.UTF_8)) {
+            new JsonWriter(w).beginObject().name("error").value(message).endObject();
+        }
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(status, buf.size());
+        try (OutputStream out = ex.getResponseBody()) {
+            buf.writeTo(out);
+        }
+    }
+
+    private static Map<String, String> query(String raw) {
+        Map<String, String> res = new HashMap<>();
+        if (raw == null || raw.isEmpty()) return res;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            res.put(key, value);
+        }
+        return res;
+    }
+
+    private static String required(Map<String, String> query, String name) {
+        String v = query.get(name);
+        if (v == null || v.isEmpty()) throw new IllegalArgumentException("Missing parameter: " + name);
+        return v;
+    }
+
+    private static int intParam(Map<String, String> query, String name, int fallback) {
+        String v = query.get(name);
+        if (v == null || v.isEmpty()) return fallback;
+        return intValue(name, v);
+    }
+
+    private static int intValue(String name, String v) {
+        try {
+            return Integer.parseInt(v);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not an integer: " + name + "=" + v);
+        }
+    }
+
+    private static UUID uuid(String s) {
+        try {
+            return UUID.fromString(s);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Not a person id: " + s);
+        }
+    }
+}
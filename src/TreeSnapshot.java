@@ -0,0 +1,342 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Binary side file holding a whole FamilyTree, so startup can skip parsing
+ * millions of UUID and date strings out of SQLite.
+ *
+ * <p>Layout (little endian): a fixed header with the {@link DataVersion} the
+ * snapshot was taken at and the offset of each section; an interned string
+ * table; fixed-width person records in ordinal order; the parent/child edges
+ * as CSR offset/target arrays in both directions; fixed-width union records.
+ * Opening memory-maps the file, bulk-copies the edge arrays and rebuilds the
+ * id index; Person and UnionRecord objects are decoded from the mapping only
+ * when first asked for.
+ */
+public final class TreeSnapshot {
+    private static final long MAGIC = 0x50414E5345455254L; // "TREESNAP"
+    private static final int FORMAT = 2;
+    private static final int HEADER_SIZE = 128;
+    private static final int DATABASE_ID_BYTES = 32;
+    private static final int PERSON_SIZE = 48;
+    private static final int UNION_SIZE = 72;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    private TreeSnapshot() {}
+
+    /** The snapshot file kept next to a database. */
+    public static Path pathFor(Database db) {
+        return Path.of(db.getFilePath() + ".snapshot");
+    }
+
+    /**
+     * Opens the snapshot at file if it exists, has this format and was taken
+     * at exactly the given data version; otherwise returns null.
+     */
+    public static FamilyTree open(Path file, DataVersion expected) throws IOException {
+        if (expected == null || !Files.isRegularFile(file)) return null;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ch.size() < HEADER_SIZE) return null;
+            ByteBuffer h = ch.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (h.getLong(0) != MAGIC || h.getInt(8) != FORMAT) return null;
+            int personCount = h.getInt(12);
+            int edgeCount = h.getInt(16);
+            int unionCount = h.getInt(20);
+            int stringCount = h.getInt(24);
+            long version = h.getLong(32);
+            byte[] id = new byte[DATABASE_ID_BYTES];
+            h.get(40, id);
+            if (version != expected.version() || !databaseIdOf(expected).equals(new String(id, StandardCharsets.US_ASCII))) {
+                return null;
+            }
+            long strings = h.getLong(72), persons = h.getLong(80), graph = h.getLong(88), unions = h.getLong(96), end = h.getLong(104);
+            if (end != ch.size()) return null;
+
+            Mapping m = new Mapping(map(ch, strings, persons), stringCount,
+                    map(ch, persons, graph), map(ch, unions, end), unionCount);
+
+            UuidIndex ordinals = new UuidIndex(personCount);
+            for (int ord = 0; ord < personCount; ord++) {
+                int at = ord * PERSON_SIZE;
+                ordinals.put(m.persons.getLong(at), m.persons.getLong(at + 8), ord);
+            }
+
+            ByteBuffer g = map(ch, graph, unions);
+            int[] outOff = new int[personCount + 1];
+            int[] outTgt = new int[edgeCount];
+            int[] inOff = new int[personCount + 1];
+            int[] inTgt = new int[edgeCount];
+            g.asIntBuffer().get(outOff).get(outTgt).get(inOff).get(inTgt);
+            PersonGraph edges = new CsrGraph(personCount, outOff, outTgt, inOff, inTgt);
+
+            return new FamilyTree(ordinals, personCount, edges, m::person, m::unions);
+        }
+    }
+
+    /** Writes tree to file (atomically replacing it), stamped with the data version it reflects. */
+    public static void write(FamilyTree tree, DataVersion version, Path file) throws IOException {
+        tree.pack();
+        int personCount = tree.personCount();
+        PersonGraph graph = tree.graph();
+        Collection<UnionRecord> unions = tree.listUnions();
+
+        // Intern every string up front; index 0 stands for null
+        Map<String, Integer> index = new HashMap<>();
+        List<byte[]> strings = new ArrayList<>();
+        strings.add(new byte[0]);
+        for (int ord = 0; ord < personCount; ord++) {
+            Person p = tree.person(ord);
+            intern(index, strings, p.getGivenName());
+            intern(index, strings, p.getFamilyName());
+            intern(index, strings, p.getMiddleNames());
+            intern(index, strings, p.getBirthPlace());
+            intern(index, strings, p.getNotes());
+        }
+        for (UnionRecord u : unions) {
+            intern(index, strings, u.getLocation());
+            intern(index, strings, u.getNotes());
+        }
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+             Out out = new Out(ch, HEADER_SIZE)) {
+            long stringsAt = out.position();
+            int offset = 0;
+            for (byte[] s : strings) {
+                out.putInt(offset);
+                offset = Math.addExact(offset, s.length);
+            }
+            out.putInt(offset);
+            for (byte[] s : strings) out.put(s);
+
+            long personsAt = out.position();
+            for (int ord = 0; ord < personCount; ord++) {
+                Person p = tree.person(ord);
+                out.putLong(p.getId().getMostSignificantBits());
+                out.putLong(p.getId().getLeastSignificantBits());
+                out.putInt(index.getOrDefault(p.getGivenName(), 0));
+                out.putInt(index.getOrDefault(p.getFamilyName(), 0));
+                out.putInt(index.getOrDefault(p.getMiddleNames(), 0));
+                out.putInt(index.getOrDefault(p.getBirthPlace(), 0));
+                out.putInt(index.getOrDefault(p.getNotes(), 0));
+                out.putInt(dateCode(p.getBirthDate(), p.getBirthDatePrecision()));
+                out.putInt(dateCode(p.getDeathDate(), p.getDeathDatePrecision()));
+                out.putInt(p.getSex() == null ? Sex.UNKNOWN.ordinal() : p.getSex().ordinal());
+            }
+
+            long graphAt = out.position();
+            int edgeCount = writeCsr(out, personCount, false, graph);
+            writeCsr(out, personCount, true, graph);
+
+            long unionsAt = out.position();
+            for (UnionRecord u : unions) {
+                out.putLong(u.getId().getMostSignificantBits());
+                out.putLong(u.getId().getLeastSignificantBits());
+                putId(out, u.getPartnerA());
+                putId(out, u.getPartnerB());
+                out.putInt(u.getType() == null ? UnionType.MARRIAGE.ordinal() : u.getType().ordinal());
+                out.putInt((u.getPartnerA() != null ? 1 : 0) | (u.getPartnerB() != null ? 2 : 0));
+                out.putInt(dateCode(u.getStartDate(), u.getStartDatePrecision()));
+                out.putInt(dateCode(u.getEndDate(), u.getEndDatePrecision()));
+                out.putInt(index.getOrDefault(u.getLocation(), 0));
+                out.putInt(index.getOrDefault(u.getNotes(), 0));
+            }
+            long end = out.position();
+            out.flush();
+
+            ByteBuffer h = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            h.putLong(0, MAGIC).putInt(8, FORMAT)
+                    .putInt(12, personCount).putInt(16, edgeCount).putInt(20, unions.size()).putInt(24, strings.size())
+                    .putLong(32, version.version())
+                    .put(40, databaseIdOf(version).getBytes(StandardCharsets.US_ASCII))
+                    .putLong(72, stringsAt).putLong(80, personsAt).putLong(88, graphAt).putLong(96, unionsAt).putLong(104, end);
+            ch.write(h, 0);
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(tmp);
+            throw ex;
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Offsets then targets for one direction; returns the edge count
+    private static int writeCsr(Out out, int personCount, boolean parents, PersonGraph graph) throws IOException {
+        int offset = 0;
+        out.putInt(0);
+        for (int ord = 0; ord < personCount; ord++) {
+            offset += (parents ? graph.parents(ord) : graph.children(ord)).length;
+            out.putInt(offset);
+        }
+        for (int ord = 0; ord < personCount; ord++) {
+            for (int e : parents ? graph.parents(ord) : graph.children(ord)) out.putInt(e);
+        }
+        return offset;
+    }
+
+    private static void intern(Map<String, Integer> index, List<byte[]> strings, String s) {
+        if (s == null || index.containsKey(s)) return;
+        index.put(s, strings.size());
+        strings.add(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void putId(Out out, UUID id) throws IOException {
+        out.putLong(id == null ? 0 : id.getMostSignificantBits());
+        out.putLong(id == null ? 0 : id.getLeastSignificantBits());
+    }
+
+    // Dates are SqlCodec codes narrowed to an int
+    private static int dateCode(LocalDate d, int precision) {
+        return d == null ? NO_DATE : Math.toIntExact(SqlCodec.date(d, precision));
+    }
+
+    private static LocalDate date(int code) {
+        return code == NO_DATE ? null : SqlCodec.date(code);
+    }
+
+    // Fixed width, padded with zeros (database ids are 32 hex digits)
+    private static String databaseIdOf(DataVersion v) {
+        StringBuilder sb = new StringBuilder(DATABASE_ID_BYTES);
+        String id = v.databaseId() == null ? "" : v.databaseId();
+        sb.append(id, 0, Math.min(id.length(), DATABASE_ID_BYTES));
+        while (sb.length() < DATABASE_ID_BYTES) sb.append('\0');
+        return sb.toString();
+    }
+
+    private static ByteBuffer map(FileChannel ch, long from, long to) throws IOException {
+        if (to < from || to - from > Integer.MAX_VALUE) throw new IOException("Snapshot section out of range");
+        MappedByteBuffer b = ch.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        return b.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // Decodes records straight out of the mapped sections; absolute reads only, so safe to share
+    private static final class Mapping {
+        private final ByteBuffer strings;
+        private final int stringBase;
+        private final String[] decoded;
+        private final ByteBuffer persons;
+        private final ByteBuffer unions;
+        private final int unionCount;
+
+        Mapping(ByteBuffer strings, int stringCount, ByteBuffer persons, ByteBuffer unions, int unionCount) {
+            this.strings = strings;
+            this.stringBase = (stringCount + 1) * Integer.BYTES;
+            this.decoded = new String[stringCount];
+            this.persons = persons;
+            this.unions = unions;
+            this.unionCount = unionCount;
+        }
+
+        Person person(int ord) {
+            int at = ord * PERSON_SIZE;
+            Person p = new Person();
+            p.setId(new UUID(persons.getLong(at), persons.getLong(at + 8)));
+            p.setGivenName(string(persons.getInt(at + 16)));
+            p.setFamilyName(string(persons.getInt(at + 20)));
+            p.setMiddleNames(string(persons.getInt(at + 24)));
+            p.setBirthPlace(string(persons.getInt(at + 28)));
+            p.setNotes(string(persons.getInt(at + 32)));
+            int birth = persons.getInt(at + 36), death = persons.getInt(at + 40);
+            p.setBirthDate(date(birth), SqlCodec.precision(birth));
+            p.setDeathDate(date(death), SqlCodec.precision(death));
+            p.setSex(Sex.values()[persons.getInt(at + 44)]);
+            return p;
+        }
+
+        Collection<UnionRecord> unions() {
+            List<UnionRecord> res = new ArrayList<>(unionCount);
+            for (int i = 0; i < unionCount; i++) {
+                int at = i * UNION_SIZE;
+                int flags = unions.getInt(at + 52);
+                UnionRecord u = new UnionRecord();
+                u.setId(new UUID(unions.getLong(at), unions.getLong(at + 8)));
+                if ((flags & 1) != 0) u.setPartnerA(new UUID(unions.getLong(at + 16), unions.getLong(at + 24)));
+                if ((flags & 2) != 0) u.setPartnerB(new UUID(unions.getLong(at + 32), unions.getLong(at + 40)));
+                u.setType(UnionType.values()[unions.getInt(at + 48)]);
+                int start = unions.getInt(at + 56), end = unions.getInt(at + 60);
+                u.setStartDate(date(start), SqlCodec.precision(start));
+                u.setEndDate(date(end), SqlCodec.precision(end));
+                u.setLocation(string(unions.getInt(at + 64)));
+                u.setNotes(string(unions.getInt(at + 68)));
+                res.add(u);
+            }
+            return res;
+        }
+
+        private String string(int i) {
+            if (i == 0) return null;
+            String s = decoded[i];
+            if (s == null) {
+                int from = strings.getInt(i * Integer.BYTES);
+                int to = strings.getInt((i + 1) * Integer.BYTES);
+                byte[] bytes = new byte[to - from];
+                strings.get(stringBase + from, bytes);
+                s = new String(bytes, StandardCharsets.UTF_8);
+                decoded[i] = s;
+            }
+            return s;
+        }
+    }
+
+    // Buffered little-endian writer over a channel
+    private static final class Out implements AutoCloseable {
+        private final FileChannel ch;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        private long position;
+
+        Out(FileChannel ch, long start) {
+            this.ch = ch;
+            this.position = start;
+        }
+
+        long position() {
+            return position + buf.position();
+        }
+
+        void putInt(int v) throws IOException {
+            if (buf.remaining() < Integer.BYTES) flush();
+            buf.putInt(v);
+        }
+
+        void putLong(long v) throws IOException {
+            if (buf.remaining() < Long.BYTES) flush();
+            buf.putLong(v);
+        }
+
+        void put(byte[] bytes) throws IOException {
+            for (int off = 0; off < bytes.length; ) {
+                if (!buf.hasRemaining()) flush();
+                int n = Math.min(buf.remaining(), bytes.length - off);
+                buf.put(bytes, off, n);
+                off += n;
+            }
+        }
+
+        void flush() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) {
+                position += ch.write(buf, position);
+            }
+            buf.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Keeps a {@link ConcurrentFamilyTree} in step with the database, including
+ * writes made by other processes. {@link #poll()} costs one
+ * {@code PRAGMA data_version} when nothing was committed since the last call;
+ * otherwise it reads the change log after the last seq applied and publishes
+ * the rows it names as one tree update, so catching up costs O(changes), not
+ * O(database). Only when the log cannot be applied in place (see
+ * {@link ChangeSet#needsReload()}) is the whole tree loaded again.
+ * <p>
+ * Polls run one at a time on a read-only connection of their own; data_version
+ * only means something when asked of the same connection each time.
+ */
+public final class TreeSync implements AutoCloseable {
+    /** Past this many log entries a full reload is cheaper than applying them. */
+    public static final int MAX_INCREMENTAL_CHANGES = 50_000;
+
+    private static final Metrics.Timer POLL = Metrics.timer("sync.poll");
+    private static final Metrics.Cache INCREMENTAL = Metrics.cache("sync.incremental");
+
+    private final Database db;
+    private final FamilyTreeRepository repo;
+    private final ConcurrentFamilyTree tree;
+    private final TreeLoader loader;
+    private Connection conn;
+    private long seq = -1; // last change log entry reflected in the tree; -1 before the first load
+    private long dataVersion = -1;
+
+    public TreeSync(Database db, FamilyTreeRepository repo, ConcurrentFamilyTree tree) {
+        this.db = db;
+        this.repo = repo;
+        this.tree = tree;
+        this.loader = new TreeLoader(db, repo);
+    }
+
+    /** Last change log seq applied to the tree. */
+    public synchronized long seq() {
+        return seq;
+    }
+
+    /** Loads the whole tree and publishes it; polls after this apply only later changes. */
+    public synchronized FamilyTree load(TreeLoader.Progress progress) throws SQLException, InterruptedException {
+        // Read before loading: rows committed during the load are applied again by the next poll, which is harmless
+        dataVersion = dataVersion();
+        long from = repo.lastChangeSeq(connection());
+        FamilyTree loaded = tree.replace(loader.load(progress));
+        seq = from;
+        return loaded;
+    }
+
+    /**
+     * Brings the tree up to date with the database and returns what was
+     * applied; an empty change set if nothing was committed since the last poll.
+     */
+    public synchronized ChangeSet poll() throws SQLException, InterruptedException {
+        if (seq < 0) throw new IllegalStateException("Nothing loaded yet; call load first");
+        long version = dataVersion();
+        if (version == dataVersion) return ChangeSet.none(seq);
+        long t = Metrics.start();
+
+        ChangeSet changes = repo.changesSince(connection(), seq, MAX_INCREMENTAL_CHANGES);
+        if (changes.needsReload()) {
+            INCREMENTAL.miss();
+            load((done, total) -> {});
+        } else {
+            INCREMENTAL.hit();
+            if (!changes.isEmpty()) tree.update(changes::applyTo);
+            seq = changes.toSeq();
+            dataVersion = version;
+        }
+        POLL.stop(t, changes.size());
+        return changes;
+    }
+
+    // Changes whenever another connection, in this process or not, commits to the file
+    private long dataVersion() throws SQLException {
+        try (Statement st = connection().createStatement();
+             ResultSet rs = st.executeQuery("PRAGMA data_version")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private Connection connection() throws SQLException {
+        if (conn == null) conn = db.openReadConnection();
+        return conn;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (conn != null) {
+            try { conn.close(); } catch (Exception ignored) {}
+            conn = null;
+        }
+    }
+}
@@ -8,6 +8,8 @@ public class UnionRecord {
     private UUID partnerB;
     private LocalDate startDate;
     private LocalDate endDate;
+    private int startDatePrecision = SqlCodec.DAY;
+    private int endDatePrecision = SqlCodec.DAY;
     private String location;
     private String notes;
 
@@ -36,10 +38,21 @@ public class UnionRecord {
     public void setPartnerB(UUID partnerB) { this.partnerB = partnerB; }
 
     public LocalDate getStartDate() { return startDate; }
-    public void setStartDate(LocalDate startDate) { this.startDate = startDate; }
+    public void setStartDate(LocalDate startDate) { setStartDate(startDate, SqlCodec.DAY); }
+    /** A date known only to the month or year is its first day with SqlCodec.MONTH or YEAR precision. */
+    public void setStartDate(LocalDate startDate, int precision) {
+        this.startDate = startDate;
+        this.startDatePrecision = precision;
+    }
+    public int getStartDatePrecision() { return startDatePrecision; }
 
     public LocalDate getEndDate() { return endDate; }
-    public void setEndDate(LocalDate endDate) { this.endDate = endDate; }
+    public void setEndDate(LocalDate endDate) { setEndDate(endDate, SqlCodec.DAY); }
+    public void setEndDate(LocalDate endDate, int precision) {
+        this.endDate = endDate;
+        this.endDatePrecision = precision;
+    }
+    public int getEndDatePrecision() { return endDatePrecision; }
 
     public String getLocation() { return location; }
     public void setLocation(String location) { this.location = location; }
@@ -51,6 +64,17 @@ public class UnionRecord {
         return endDate == null || endDate.isAfter(LocalDate.now());
     }
 
+    /** Started on or before date (or start unknown) and not yet ended. */
+    public boolean isActiveOn(LocalDate date) {
+        return isActiveBetween(date, date);
+    }
+
+    /** Active on at least one day from {@code from} to {@code to}, inclusive; never if it ends the day it starts, or before. */
+    public boolean isActiveBetween(LocalDate from, LocalDate to) {
+        if (startDate != null && endDate != null && !endDate.isAfter(startDate)) return false;
+        return (startDate == null || !startDate.isAfter(to)) && (endDate == null || endDate.isAfter(from));
+    }
+
     @Override
     public String toString() {
         return type + ": " + partnerA + " <> " + partnerB + " @ " + startDate + (endDate == null ? "" : " - " + endDate);
@@ -0,0 +1,103 @@
+import java.util.UUID;
+
+/**
+ * Open-addressing map from UUID to a dense int ordinal. Keys are kept as two
+ * primitive longs, so no UUID or boxed Integer is retained per entry.
+ */
+final class UuidIndex {
+    private long[] msb;
+    private long[] lsb;
+    private int[] values; // ordinal + 1, 0 marks an empty slot
+    private int size;
+
+    UuidIndex() {
+        this(16);
+    }
+
+    UuidIndex(int expected) {
+        int cap = capacityFor(expected);
+        msb = new long[cap];
+        lsb = new long[cap];
+        values = new int[cap];
+    }
+
+    private UuidIndex(UuidIndex other) {
+        msb = other.msb.clone();
+        lsb = other.lsb.clone();
+        values = other.values.clone();
+        size = other.size;
+    }
+
+    UuidIndex copy() {
+        return new UuidIndex(this);
+    }
+
+    int size() {
+        return size;
+    }
+
+    void ensureCapacity(int expected) {
+        int cap = capacityFor(expected);
+        if (cap > values.length) rehash(cap);
+    }
+
+    int get(UUID id) {
+        if (id == null) return -1;
+        long hi = id.getMostSignificantBits();
+        long lo = id.getLeastSignificantBits();
+        int mask = values.length - 1;
+        for (int i = slot(hi, lo, mask); ; i = (i + 1) & mask) {
+            int v = values[i];
+            if (v == 0) return -1;
+            if (msb[i] == hi && lsb[i] == lo) return v - 1;
+        }
+    }
+
+    /** Maps id to ordinal, replacing any previous ordinal. */
+    void put(UUID id, int ordinal) {
+        put(id.getMostSignificantBits(), id.getLeastSignificantBits(), ordinal);
+    }
+
+    void put(long hi, long lo, int ordinal) {
+        if ((size + 1) * 10L > values.length * 6L) rehash(values.length << 1);
+        insert(hi, lo, ordinal + 1);
+    }
+
+    private void insert(long hi, long lo, int value) {
+        int mask = values.length - 1;
+        for (int i = slot(hi, lo, mask); ; i = (i + 1) & mask) {
+            if (values[i] == 0) {
+                msb[i] = hi;
+                lsb[i] = lo;
+                values[i] = value;
+                size++;
+                return;
+            }
+            if (msb[i] == hi && lsb[i] == lo) {
+                values[i] = value;
+                return;
+            }
+        }
+    }
+
+    private void rehash(int cap) {
+        long[] oldMsb = msb, oldLsb = lsb;
+        int[] oldValues = values;
+        msb = new long[cap];
+        lsb = new long[cap];
+        values = new int[cap];
+        size = 0;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != 0) insert(oldMsb[i], oldLsb[i], oldValues[i]);
+        }
+    }
+
+    private static int capacityFor(int expected) {
+        return Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+    }
+
+    private static int slot(long hi, long lo, int mask) {
+        long h = (hi ^ lo) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
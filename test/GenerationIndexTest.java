@@ -0,0 +1,82 @@
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Generations kept current edge by edge against generations of a tree built
+ * afresh from the same links, over random adds, links and unlinks. Now and
+ * then a cycle goes in unchecked, so the index is also dropped and rebuilt,
+ * and queries between changes make later changes go through the overlay.
+ */
+class GenerationIndexTest {
+    private static final int STEPS = 10_000;
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void incrementalGenerationsMatchAFreshBuild(boolean compact) {
+        Random random = new Random(7);
+        ConcurrentFamilyTree tree = new ConcurrentFamilyTree(new FamilyTree(compact));
+        List<UUID> ids = new ArrayList<>();
+
+        for (int step = 0; step < STEPS; step++) {
+            int action = random.nextInt(20);
+            if (ids.size() < 10 || action == 0) {
+                Person p = new Person("P" + step, "Test", Sex.UNKNOWN);
+                tree.update(t -> t.addPerson(p));
+                ids.add(p.getId());
+            } else if (action < 4) {
+                UUID parent = ids.get(random.nextInt(ids.size()));
+                List<Person> children = tree.snapshot().getChildrenOf(parent);
+                if (children.isEmpty()) continue;
+                UUID child = children.get(random.nextInt(children.size())).getId();
+                tree.update(t -> t.unlinkParentChild(parent, child));
+            } else {
+                UUID parent = ids.get(random.nextInt(ids.size())), child = ids.get(random.nextInt(ids.size()));
+                if (random.nextInt(500) == 0) {
+                    tree.update(t -> t.tryLinkParentChild(parent, child, false));
+                } else {
+                    try {
+                        tree.update(t -> t.linkParentChild(parent, child, true));
+                    } catch (IllegalArgumentException rejected) {
+                        // would close a cycle
+                    }
+                }
+            }
+            if (step % 50 == 0) tree.snapshot().generationOf(ids.get(0));
+            if (step % 200 == 0) tree.snapshot().peopleInGeneration(1).count();
+            if (step % 500 == 0) assertMatchesFreshBuild(tree.snapshot(), ids, step);
+        }
+        assertMatchesFreshBuild(tree.snapshot(), ids, STEPS);
+    }
+
+    private static void assertMatchesFreshBuild(FamilyTree tree, List<UUID> ids, int step) {
+        FamilyTree fresh = new FamilyTree();
+        for (UUID id : ids) fresh.addPerson(tree.findPerson(id).orElseThrow());
+        for (UUID id : ids) {
+            for (Person child : tree.getChildrenOf(id)) fresh.tryLinkParentChild(id, child.getId(), false);
+        }
+
+        Map<Integer, Set<UUID>> byGeneration = new HashMap<>();
+        for (UUID id : ids) {
+            int generation = tree.generationOf(id);
+            assertEquals(fresh.generationOf(id), generation, "generation of " + id + " at step " + step);
+            if (generation >= 0) byGeneration.computeIfAbsent(generation, g -> new HashSet<>()).add(id);
+        }
+        assertEquals(fresh.generationCount(), tree.generationCount(), "generation count at step " + step);
+        for (int g = -1; g <= tree.generationCount(); g++) {
+            List<UUID> members = tree.peopleInGeneration(g).map(Person::getId).toList();
+            assertEquals(byGeneration.getOrDefault(g, Set.of()), new HashSet<>(members), "generation " + g + " at step " + step);
+            assertEquals(members.size(), new HashSet<>(members).size(), "generation " + g + " lists someone twice at step " + step);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Timeline queries three ways: the tree's interval indexes, a scan with
+ * {@link Person#isAliveBetween} and {@link UnionRecord#isActiveBetween}, and
+ * the repository's SQL over the windowed and long-span indexes. Dates are
+ * drawn so that open ends, spans either side of
+ * {@link Person#MAX_LIFESPAN_DAYS}, unions ending the day they start and
+ * spans ending before they begin all come up, and enough people and unions
+ * change between queries that the overlays fill and the indexes are rebuilt.
+ */
+class IntervalIndexTest {
+    private static final int PEOPLE = 2_000;
+    private static final int UNIONS = 2_000;
+    private static final int ROUNDS = 8;
+    private static final int QUERIES = 60;
+    private static final long BASE = LocalDate.of(1700, 1, 1).toEpochDay();
+    private static final int RANGE = 120_000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void overlappingMatchesAScan() {
+        Random random = new Random(11);
+        for (int round = 0; round < 200; round++) {
+            int size = random.nextInt(round < 10 ? 4 : 400);
+            int[] start = new int[size], end = new int[size], payload = new int[size];
+            for (int i = 0; i < size; i++) {
+                start[i] = random.nextInt(20) == 0 ? IntervalIndex.OPEN_START : random.nextInt(1_000);
+                end[i] = random.nextInt(20) == 0 ? IntervalIndex.OPEN_END
+                        : Math.max(start[i], 0) + random.nextInt(random.nextBoolean() ? 10 : 300);
+                payload[i] = i;
+            }
+            int[] s = start.clone(), e = end.clone();
+            IntervalIndex index = new IntervalIndex(start, end, payload, size);
+            for (int q = 0; q < 50; q++) {
+                int lo = random.nextInt(1_200) - 100, hi = lo + (q % 3 == 0 ? 0 : random.nextInt(200));
+                List<Integer> found = new ArrayList<>();
+                index.overlapping(lo, hi, found::add);
+                Set<Integer> expected = new HashSet<>();
+                for (int i = 0; i < size; i++) {
+                    if (s[i] <= hi && e[i] >= lo) expected.add(i);
+                }
+                assertEquals(expected, new HashSet<>(found), "[" + lo + ", " + hi + "] in round " + round);
+                assertEquals(expected.size(), found.size(), "[" + lo + ", " + hi + "] reported twice in round " + round);
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void treeScanAndSqlAgree(boolean compact) throws SQLException {
+        Random random = new Random(13);
+        try (Database db = new Database(dir.resolve("timeline-" + compact + ".db").toString())) {
+            db.connect();
+            db.runMigrations();
+            FamilyTreeRepository repo = new FamilyTreeRepository(db);
+            ConcurrentFamilyTree tree = new ConcurrentFamilyTree(new FamilyTree(compact));
+            List<Person> people = new ArrayList<>();
+            List<UnionRecord> unions = new ArrayList<>();
+
+            for (int i = 0; i < PEOPLE; i++) people.add(datedPerson(random, UUID.randomUUID()));
+            for (int i = 0; i < UNIONS; i++) unions.add(datedUnion(random, people));
+            repo.insertPersons(people);
+            repo.insertUnions(unions);
+            tree.update(t -> {
+                people.forEach(t::addPerson);
+                unions.forEach(t::addUnion);
+            });
+
+            for (int round = 0; round < ROUNDS; round++) {
+                for (int q = 0; q < QUERIES; q++) {
+                    LocalDate from = LocalDate.ofEpochDay(BASE - 20_000 + random.nextInt(RANGE + 40_000));
+                    LocalDate to = from.plusDays(q % 4 == 0 ? 0 : random.nextInt(q % 4 == 1 ? 30 : 20_000));
+                    assertAgree(tree.snapshot(), repo, people, unions, from, to, "round " + round);
+                }
+                assertAgree(tree.snapshot(), repo, people, unions, LocalDate.of(-9999, 1, 1), LocalDate.of(9999, 12, 31), "round " + round);
+
+                // Re-date some people and replace, add and remove some unions, in the tree and the database
+                Map<UUID, Person> redated = new LinkedHashMap<>();
+                for (int i = 0; i < 250; i++) {
+                    int at = random.nextInt(people.size());
+                    Person p = datedPerson(random, people.get(at).getId());
+                    people.set(at, p);
+                    redated.put(p.getId(), p);
+                }
+                Map<UUID, UnionRecord> changed = new LinkedHashMap<>(); // removed ones map to null
+                for (int i = 0; i < 150; i++) {
+                    UnionRecord u = datedUnion(random, people);
+                    int action = random.nextInt(3);
+                    if (action == 0) {
+                        u.setId(unions.set(random.nextInt(unions.size()), u).getId());
+                    } else if (action == 1) {
+                        u = unions.remove(random.nextInt(unions.size()));
+                        changed.put(u.getId(), null);
+                        continue;
+                    } else {
+                        unions.add(u);
+                    }
+                    changed.put(u.getId(), u);
+                }
+                delete(db, "Person", redated.keySet());
+                delete(db, "UnionRecord", changed.keySet());
+                repo.insertPersons(redated.values());
+                repo.insertUnions(changed.values().stream().filter(Objects::nonNull).toList());
+                tree.update(t -> {
+                    redated.values().forEach(t::addPerson);
+                    changed.forEach((id, u) -> {
+                        if (u == null) t.removeUnion(id);
+                        else t.addUnion(u);
+                    });
+                });
+            }
+        }
+    }
+
+    private static void assertAgree(FamilyTree tree, FamilyTreeRepository repo, List<Person> people, List<UnionRecord> unions,
+                                    LocalDate from, LocalDate to, String when) throws SQLException {
+        String what = "[" + from + ", " + to + "] in " + when;
+        Set<UUID> alive = new HashSet<>();
+        for (Person p : people) {
+            if (p.isAliveBetween(from, to)) alive.add(p.getId());
+        }
+        assertSame(alive, tree.aliveBetween(from, to), Person::getId, "alive in the tree " + what);
+        assertSame(alive, repo.findPersonsAliveBetween(from, to, Integer.MAX_VALUE), Person::getId, "alive in SQL " + what);
+
+        Set<UUID> active = new HashSet<>();
+        for (UnionRecord u : unions) {
+            if (u.isActiveBetween(from, to)) active.add(u.getId());
+        }
+        assertSame(active, tree.unionsActiveBetween(from, to), UnionRecord::getId, "active in the tree " + what);
+        assertSame(active, repo.findUnionsActiveBetween(from, to, Integer.MAX_VALUE), UnionRecord::getId, "active in SQL " + what);
+    }
+
+    private static <T> void assertSame(Set<UUID> expected, List<T> found, Function<T, UUID> id, String what) {
+        List<UUID> ids = found.stream().map(id).toList();
+        assertEquals(expected, new HashSet<>(ids), what);
+        assertEquals(expected.size(), ids.size(), what + " lists something twice");
+    }
+
+    private static void delete(Database db, String table, Set<UUID> ids) throws SQLException {
+        db.write(conn -> {
+            PreparedStatement ps = db.prepare(conn, "DELETE FROM " + table + " WHERE id = ?");
+            for (UUID id : ids) {
+                SqlCodec.setId(ps, 1, id);
+                ps.executeUpdate();
+            }
+            return null;
+        });
+    }
+
+    private static Person datedPerson(Random random, UUID id) {
+        Person p = new Person("P", "Test", Sex.UNKNOWN);
+        p.setId(id);
+        LocalDate birth = random.nextInt(6) == 0 ? null : day(random);
+        p.setBirthDate(birth);
+        LocalDate anchor = birth == null ? day(random) : birth;
+        switch (random.nextInt(8)) {
+            case 0, 1 -> { } // no death: MAX_LIFESPAN_DAYS after birth, or no dates at all
+            case 2 -> p.setDeathDate(anchor.plusDays(Person.MAX_LIFESPAN_DAYS + random.nextInt(3))); // just either side of the window
+            case 3 -> p.setDeathDate(anchor.plusDays(Person.MAX_LIFESPAN_DAYS + 1 + random.nextInt(60_000))); // long: the partial index
+            case 4 -> p.setDeathDate(anchor.minusDays(1 + random.nextInt(5_000))); // dies before birth
+            default -> p.setDeathDate(anchor.plusDays(random.nextInt(Person.MAX_LIFESPAN_DAYS)));
+        }
+        return p;
+    }
+
+    private static UnionRecord datedUnion(Random random, List<Person> people) {
+        UUID a = random.nextInt(4) == 0 ? null : people.get(random.nextInt(people.size())).getId();
+        UUID b = random.nextInt(4) == 0 ? null : people.get(random.nextInt(people.size())).getId();
+        LocalDate start = random.nextInt(5) == 0 ? null : day(random);
+        UnionRecord u = new UnionRecord(UnionType.MARRIAGE, a, b, start);
+        LocalDate anchor = start == null ? day(random) : start;
+        switch (random.nextInt(7)) {
+            case 0, 1 -> { } // still going
+            case 2 -> u.setEndDate(anchor); // ends the day it starts: never active
+            case 3 -> u.setEndDate(anchor.plusDays(1)); // active on its first day only
+            case 4 -> u.setEndDate(anchor.minusDays(1 + random.nextInt(1_000)));
+            case 5 -> u.setEndDate(anchor.plusDays(Person.MAX_LIFESPAN_DAYS - 1 + random.nextInt(4)));
+            default -> u.setEndDate(anchor.plusDays(random.nextInt(20_000)));
+        }
+        return u;
+    }
+
+    private static LocalDate day(Random random) {
+        return LocalDate.ofEpochDay(BASE + random.nextInt(RANGE));
+    }
+}
@@ -0,0 +1,92 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Checked links against a brute-force search of a plain adjacency list, over
+ * random adds, links and unlinks, so the maintained topological order is
+ * exercised through every kind of reordering and through copy-on-write.
+ */
+class TopologicalOrderTest {
+    private static final int STEPS = 20_000;
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void checkedLinksRejectExactlyTheCycles(boolean compact) {
+        Random random = new Random(5);
+        ConcurrentFamilyTree tree = new ConcurrentFamilyTree(new FamilyTree(compact));
+        List<UUID> ids = new ArrayList<>();
+        List<List<Integer>> children = new ArrayList<>();
+        int accepted = 0, rejected = 0;
+
+        for (int step = 0; step < STEPS; step++) {
+            if (ids.size() < 20 || random.nextInt(10) == 0) {
+                Person p = new Person("P" + step, "Test", Sex.UNKNOWN);
+                tree.update(t -> t.addPerson(p));
+                ids.add(p.getId());
+                children.add(new ArrayList<>());
+                continue;
+            }
+            int parent = random.nextInt(ids.size()), child = random.nextInt(ids.size());
+            if (random.nextInt(8) == 0) {
+                tree.update(t -> t.unlinkParentChild(ids.get(parent), ids.get(child)));
+                children.get(parent).removeIf(c -> c == child);
+                continue;
+            }
+            // Adoptive, so the two-biological-parents rule never gets in the way
+            boolean cycle = reaches(children, child, parent);
+            try {
+                tree.update(t -> t.linkParentChild(ids.get(parent), ids.get(child), true));
+                if (cycle) fail("Accepted a link closing a cycle at step " + step);
+                children.get(parent).add(child);
+                accepted++;
+            } catch (IllegalArgumentException ex) {
+                if (!cycle) fail("Rejected a safe link at step " + step + ": " + ex.getMessage());
+                rejected++;
+            }
+        }
+        assertTrue(accepted > 1_000 && rejected > 100, accepted + " accepted, " + rejected + " rejected");
+    }
+
+    @Test
+    void checkFallsBackToScanOnceLinksHoldACycle() {
+        FamilyTree tree = new FamilyTree();
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 4; i++) ids.add(tree.addPerson(new Person("P" + i, "Test", Sex.UNKNOWN)).getId());
+        tree.linkParentChild(ids.get(0), ids.get(1), false);
+        tree.linkParentChild(ids.get(1), ids.get(2), false);
+        tree.tryLinkParentChild(ids.get(2), ids.get(0), false);
+
+        assertThrows(IllegalArgumentException.class, () -> tree.checkLink(ids.get(2), ids.get(1), true));
+        tree.checkLink(ids.get(2), ids.get(3), true);
+        assertEquals(1, new IntegrityScanner(tree).scan().stream()
+                .filter(i -> i.kind() == IntegrityIssue.Kind.CYCLE).count());
+    }
+
+    private static boolean reaches(List<List<Integer>> children, int from, int to) {
+        Deque<Integer> stack = new ArrayDeque<>(List.of(from));
+        Set<Integer> seen = new HashSet<>(stack);
+        while (!stack.isEmpty()) {
+            int node = stack.pop();
+            if (node == to) return true;
+            for (int c : children.get(node)) {
+                if (seen.add(c)) stack.push(c);
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,188 @@
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Union queries against a brute-force search of plain lists, over random
+ * people, unions and links. Unions are replaced under the same id with other
+ * partners and dates, removed, and may name people who are only added later,
+ * so the partner index kept current union by union is checked against what
+ * a scan of every union finds, through copy-on-write.
+ */
+class UnionQueriesTest {
+    private static final int STEPS = 6_000;
+    private static final int POOL = 300;
+    private static final long BASE = LocalDate.of(1800, 1, 1).toEpochDay();
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void unionQueriesMatchAScan(boolean compact) {
+        Random random = new Random(17);
+        ConcurrentFamilyTree tree = new ConcurrentFamilyTree(new FamilyTree(compact));
+        // People are drawn from a pool of ids, so a union can name someone before they are added
+        List<UUID> pool = new ArrayList<>();
+        for (int i = 0; i < POOL; i++) pool.add(UUID.randomUUID());
+        Map<UUID, Person> people = new HashMap<>();
+        Map<UUID, UnionRecord> unions = new HashMap<>();
+        List<UUID> unionIds = new ArrayList<>();
+        List<UUID[]> links = new ArrayList<>(); // {parent, child}, repeats allowed as in the graph
+
+        for (int step = 0; step < STEPS; step++) {
+            int action = random.nextInt(20);
+            if (people.size() < 10 || action < 2) {
+                UUID id = pool.get(random.nextInt(POOL));
+                Person p = new Person("P" + step, "Test", Sex.UNKNOWN);
+                p.setId(id);
+                if (random.nextInt(3) == 0) p.setDeathDate(LocalDate.ofEpochDay(BASE + random.nextInt(60_000)));
+                tree.update(t -> t.addPerson(p));
+                people.put(id, p);
+            } else if (action < 7) {
+                UnionRecord u = randomUnion(random, pool, people);
+                if (!unionIds.isEmpty() && random.nextInt(3) == 0) {
+                    u.setId(unionIds.get(random.nextInt(unionIds.size()))); // replaced under the same id
+                } else {
+                    unionIds.add(u.getId());
+                }
+                tree.update(t -> t.addUnion(u));
+                unions.put(u.getId(), u);
+            } else if (action < 8 && !unionIds.isEmpty()) {
+                UUID id = unionIds.remove(random.nextInt(unionIds.size()));
+                tree.update(t -> t.removeUnion(id));
+                unions.remove(id);
+            } else if (action < 9 && !links.isEmpty()) {
+                UUID[] link = links.get(random.nextInt(links.size()));
+                tree.update(t -> t.unlinkParentChild(link[0], link[1]));
+                links.removeIf(l -> l[0].equals(link[0]) && l[1].equals(link[1]));
+            } else {
+                List<UUID> ids = new ArrayList<>(people.keySet());
+                UUID parent = ids.get(random.nextInt(ids.size())), child = ids.get(random.nextInt(ids.size()));
+                if (parent.equals(child)) continue;
+                tree.update(t -> t.tryLinkParentChild(parent, child, random.nextBoolean()));
+                links.add(new UUID[]{parent, child});
+            }
+            // Queries between changes build the partner index, so later changes go through it
+            if (step % 25 == 0) tree.snapshot().unionsOf(pool.get(random.nextInt(POOL)));
+            if (step % 500 == 0) assertMatchesScan(tree.snapshot(), pool, people, unions, links, random, step);
+        }
+        assertMatchesScan(tree.snapshot(), pool, people, unions, links, random, STEPS);
+    }
+
+    private static void assertMatchesScan(FamilyTree tree, List<UUID> pool, Map<UUID, Person> people,
+                                          Map<UUID, UnionRecord> unions, List<UUID[]> links, Random random, int step) {
+        for (UUID id : pool) {
+            String who = id + " at step " + step;
+            List<UnionRecord> found = tree.unionsOf(id);
+            Set<UUID> expected = new HashSet<>();
+            if (people.containsKey(id)) {
+                for (UnionRecord u : unions.values()) {
+                    if (id.equals(u.getPartnerA()) || id.equals(u.getPartnerB())) expected.add(u.getId());
+                }
+            }
+            assertEquals(expected, ids(found), "unions of " + who);
+            assertEquals(expected.size(), found.size(), "unions of " + who + " list one twice");
+            for (int i = 1; i < found.size(); i++) {
+                assertTrue(startKey(found.get(i - 1)) <= startKey(found.get(i)), "unions of " + who + " out of start order");
+            }
+
+            LocalDate date = random.nextBoolean() ? null : LocalDate.ofEpochDay(BASE + random.nextInt(60_000));
+            List<Person> partners = tree.partnersOf(id, date);
+            Set<UUID> expectedPartners = new HashSet<>();
+            if (people.containsKey(id) && !diedBefore(people.get(id), date)) {
+                for (UnionRecord u : unions.values()) {
+                    if (!id.equals(u.getPartnerA()) && !id.equals(u.getPartnerB())) continue;
+                    if (date != null && !u.isActiveOn(date)) continue;
+                    UUID other = id.equals(u.getPartnerA()) ? u.getPartnerB() : u.getPartnerA();
+                    if (other != null && !other.equals(id) && people.containsKey(other) && !diedBefore(people.get(other), date)) {
+                        expectedPartners.add(other);
+                    }
+                }
+            }
+            assertEquals(expectedPartners, personIds(partners), "partners of " + who + " on " + date);
+            assertEquals(expectedPartners.size(), partners.size(), "partners of " + who + " list one twice");
+
+            Optional<UnionRecord> parentsUnion = tree.parentsUnionOf(id);
+            Set<UUID> parents = new HashSet<>();
+            for (UUID[] l : links) {
+                if (l[1].equals(id)) parents.add(l[0]);
+            }
+            UnionRecord earliest = null;
+            for (UnionRecord u : unions.values()) {
+                boolean between = u.getPartnerA() != null && u.getPartnerB() != null && !u.getPartnerA().equals(u.getPartnerB())
+                        && parents.contains(u.getPartnerA()) && parents.contains(u.getPartnerB());
+                if (between && (earliest == null || startKey(u) < startKey(earliest))) earliest = u;
+            }
+            assertEquals(earliest == null, parentsUnion.isEmpty(), "parents' union of " + who);
+            if (earliest != null) {
+                UnionRecord u = parentsUnion.get();
+                assertTrue(parents.contains(u.getPartnerA()) && parents.contains(u.getPartnerB()) && !u.getPartnerA().equals(u.getPartnerB()),
+                        "parents' union of " + who + " is not between two parents");
+                assertEquals(startKey(earliest), startKey(u), "parents' union of " + who + " is not the earliest");
+            }
+        }
+
+        for (UnionRecord u : unions.values()) {
+            UUID a = people.containsKey(u.getPartnerA()) ? u.getPartnerA() : null;
+            UUID b = people.containsKey(u.getPartnerB()) ? u.getPartnerB() : null;
+            Set<UUID> expected = new HashSet<>();
+            for (UUID[] l : links) {
+                boolean ofA = a != null && l[0].equals(a), ofB = b != null && l[0].equals(b);
+                if (!ofA && !ofB) continue;
+                if (a == null || b == null || hasParent(links, l[1], ofA ? b : a)) expected.add(l[1]);
+            }
+            List<Person> children = tree.childrenOfUnion(u.getId());
+            assertEquals(expected, personIds(children), "children of union " + u.getId() + " at step " + step);
+            assertEquals(expected.size(), children.size(), "children of union " + u.getId() + " list one twice at step " + step);
+        }
+    }
+
+    private static UnionRecord randomUnion(Random random, List<UUID> pool, Map<UUID, Person> people) {
+        UUID a = random.nextInt(8) == 0 ? null : pool.get(random.nextInt(pool.size()));
+        UUID b = random.nextInt(8) == 0 ? null : random.nextInt(30) == 0 ? a : pool.get(random.nextInt(pool.size()));
+        LocalDate start = random.nextInt(4) == 0 ? null : LocalDate.ofEpochDay(BASE + random.nextInt(40_000));
+        UnionRecord u = new UnionRecord(UnionType.MARRIAGE, a, b, start);
+        if (random.nextBoolean()) u.setEndDate(LocalDate.ofEpochDay(BASE + random.nextInt(60_000)));
+        return u;
+    }
+
+    private static boolean hasParent(List<UUID[]> links, UUID child, UUID parent) {
+        for (UUID[] l : links) {
+            if (l[0].equals(parent) && l[1].equals(child)) return true;
+        }
+        return false;
+    }
+
+    private static boolean diedBefore(Person p, LocalDate date) {
+        return date != null && p.getDeathDate() != null && p.getDeathDate().isBefore(date);
+    }
+
+    // Unknown starts sort last
+    private static long startKey(UnionRecord u) {
+        return u.getStartDate() == null ? Long.MAX_VALUE : u.getStartDate().toEpochDay();
+    }
+
+    private static Set<UUID> ids(List<UnionRecord> unions) {
+        Set<UUID> res = new LinkedHashSet<>();
+        for (UnionRecord u : unions) res.add(u.getId());
+        return res;
+    }
+
+    private static Set<UUID> personIds(List<Person> people) {
+        Set<UUID> res = new LinkedHashSet<>();
+        for (Person p : people) res.add(p.getId());
+        return res;
+    }
+}